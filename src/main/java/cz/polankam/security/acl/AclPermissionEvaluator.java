@@ -1,20 +1,34 @@
 package cz.polankam.security.acl;
 
+import cz.polankam.security.acl.audit.AuditLog;
 import cz.polankam.security.acl.exceptions.PermissionException;
 import cz.polankam.security.acl.exceptions.ResourceNotFoundException;
+import cz.polankam.security.acl.exceptions.ResourceUnavailableException;
+import cz.polankam.security.acl.invalidation.InvalidationEvent;
+import cz.polankam.security.acl.invalidation.InvalidationListener;
+import cz.polankam.security.acl.jfr.ConditionEvaluationEvent;
+import cz.polankam.security.acl.jfr.PermissionCheckEvent;
+import cz.polankam.security.acl.jfr.ResourceLoadEvent;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Custom permission evaluator used for 'hasPermission' expressions within
@@ -24,12 +38,16 @@ import java.util.stream.Collectors;
  * <p>
  * Created by Martin Polanka
  */
-public class AclPermissionEvaluator implements PermissionEvaluator {
+public class AclPermissionEvaluator implements PermissionEvaluator, InvalidationListener {
 
     /**
      * Wildcard which can be used when specifying resource or action
      */
     public static final String WILDCARD = "*";
+    /**
+     * Maximal number of cached policies, cache is cleared when it is reached
+     */
+    private static final int MAX_CACHED_POLICIES = 1024;
 
 
     /**
@@ -41,6 +59,53 @@ public class AclPermissionEvaluator implements PermissionEvaluator {
      * Transaction template for this class.
      */
     private final TransactionTemplate transactionTemplate;
+    /**
+     * Audit log of the decisions, might be null.
+     */
+    private volatile AuditLog auditLog;
+    /**
+     * Algorithm which combines rules of all user roles.
+     */
+    private volatile CombiningAlgorithm combiningAlgorithm = CombiningAlgorithm.FIRST_APPLICABLE;
+    /**
+     * Algorithm for which the rules of the roles were pruned, null if they
+     * were not pruned.
+     */
+    private volatile CombiningAlgorithm prunedAlgorithm;
+    /**
+     * Compiled policies indexed by the sorted authorities of the users.
+     */
+    private final Map<List<String>, CompiledPolicy> policies = new ConcurrentHashMap<>();
+    /**
+     * Authorities of the compiled policies indexed by the names of the roles
+     * on which the policies depend, including ancestors.
+     */
+    private final Map<String, Set<List<String>>> dependentPolicies = new ConcurrentHashMap<>();
+    /**
+     * Number of invalidations, policies compiled while the roles were
+     * invalidated are not kept.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    /**
+     * Deny access if the resource is unavailable instead of throwing.
+     */
+    private volatile boolean denyOnUnavailable = true;
+    /**
+     * Publish loaded resources to {@link AuthorizedResources}.
+     */
+    private volatile boolean publishLoadedResources;
+    /**
+     * Registry of the domain object classes, might be null.
+     */
+    private volatile ResourceTypeRegistry resourceTypeRegistry;
+    /**
+     * Resolver of the users from the authentications.
+     */
+    private volatile PrincipalResolver principalResolver = PrincipalResolver.USER_DETAILS;
+    /**
+     * Collect statistics of the rules and order rules by them.
+     */
+    private volatile boolean ruleStatistics;
 
     /**
      * Constructor.
@@ -61,24 +126,239 @@ public class AclPermissionEvaluator implements PermissionEvaluator {
     }
 
 
+    /**
+     * Set audit log which records decisions of the permission checks.
+     *
+     * @param auditLog audit log, if null decisions are not recorded
+     */
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Set algorithm which combines rules of all user roles into the single
+     * decision, default is {@link CombiningAlgorithm#FIRST_APPLICABLE}. Roles
+     * are pruned at startup for the algorithm set at that time, therefore it
+     * cannot be changed afterwards.
+     *
+     * @param combiningAlgorithm combining algorithm
+     * @throws IllegalStateException if the rules were pruned for another algorithm
+     */
+    public void setCombiningAlgorithm(CombiningAlgorithm combiningAlgorithm) {
+        Objects.requireNonNull(combiningAlgorithm);
+        CombiningAlgorithm pruned = prunedAlgorithm;
+        if (pruned != null && pruned != combiningAlgorithm) {
+            throw new IllegalStateException("Rules were pruned for " + pruned + " algorithm, decisions of " +
+                    combiningAlgorithm + " algorithm would differ");
+        }
+        this.combiningAlgorithm = combiningAlgorithm;
+        invalidate();
+    }
+
+    /**
+     * Remember that the rules of the roles were pruned for the given
+     * algorithm, so that it is not changed afterwards.
+     *
+     * @param algorithm combining algorithm used by the pruning
+     */
+    void rulesPruned(CombiningAlgorithm algorithm) {
+        prunedAlgorithm = algorithm;
+    }
+
+    /**
+     * Get algorithm which combines rules of all user roles into the single
+     * decision.
+     *
+     * @return combining algorithm
+     */
+    public CombiningAlgorithm getCombiningAlgorithm() {
+        return combiningAlgorithm;
+    }
+
+    /**
+     * Set behaviour of the evaluator when the resource could not be loaded in
+     * time and {@link ResourceUnavailableException} was thrown by its
+     * repository. By default the access is denied, otherwise the exception
+     * is propagated.
+     *
+     * @param denyOnUnavailable true if access should be denied
+     */
+    public void setDenyOnUnavailable(boolean denyOnUnavailable) {
+        this.denyOnUnavailable = denyOnUnavailable;
+    }
+
+    /**
+     * Set if the resources loaded during evaluation should be published to
+     * the request scoped {@link AuthorizedResources}, so that they can be
+     * reused by the invoked method. Default is false.
+     *
+     * @param publishLoadedResources true if resources should be published
+     */
+    public void setPublishLoadedResources(boolean publishLoadedResources) {
+        this.publishLoadedResources = publishLoadedResources;
+    }
+
+    /**
+     * Set registry of the domain object classes, if set already loaded domain
+     * objects can be given to the permission check instead of the resource
+     * name and conditions are evaluated directly on them.
+     *
+     * @param resourceTypeRegistry registry, if null domain objects are not accepted
+     */
+    public void setResourceTypeRegistry(ResourceTypeRegistry resourceTypeRegistry) {
+        this.resourceTypeRegistry = resourceTypeRegistry;
+    }
+
+    /**
+     * Set resolver of the users from the authentications. By default only
+     * authentications with {@link UserDetails} principal are accepted.
+     *
+     * @param principalResolver resolver
+     */
+    public void setPrincipalResolver(PrincipalResolver principalResolver) {
+        this.principalResolver = Objects.requireNonNull(principalResolver);
+    }
+
+    /**
+     * Set if statistics of the rules should be collected, they are available
+     * through {@link Role#getStatistics()}. If enabled, conditional rules with
+     * the same effect which directly follow each other are also ordered by
+     * the number of their decisions whenever the policy is compiled, so that
+     * the most deciding rules are evaluated first. Default is false.
+     *
+     * @param ruleStatistics true if statistics should be collected
+     */
+    public void setRuleStatistics(boolean ruleStatistics) {
+        this.ruleStatistics = ruleStatistics;
+        invalidate();
+    }
+
+    /**
+     * Order rules of all compiled policies by the current statistics, by
+     * dropping them, they are compiled again with the next check. It has
+     * effect only if statistics are collected.
+     */
+    public void reorderRules() {
+        if (ruleStatistics) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Drop all compiled policies. Changes of the rules of the roles are
+     * detected automatically, it has to be called only if the roles of the
+     * permission service were replaced.
+     */
+    public void invalidate() {
+        invalidations.incrementAndGet();
+        policies.clear();
+        dependentPolicies.clear();
+    }
+
+    /**
+     * Drop compiled policies which depend on the role with given name, either
+     * directly or through one of the roles which descend from it. It has to
+     * be called when the role was replaced in the permission service.
+     *
+     * @param role name of the role
+     */
+    public void invalidate(String role) {
+        invalidations.incrementAndGet();
+        Set<List<String>> dependent = dependentPolicies.remove(role);
+        if (dependent != null) {
+            for (List<String> authorities : dependent) {
+                policies.remove(authorities);
+            }
+        }
+    }
+
+    /**
+     * Drop compiled policies of the roles concerned by the events, events of
+     * the resources do not change compiled rules.
+     *
+     * @param events invalidation events
+     */
+    @Override
+    public void invalidate(Collection<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            if (event.getKind() == InvalidationEvent.Kind.ALL) {
+                invalidate();
+                return;
+            }
+            if (event.getKind() == InvalidationEvent.Kind.ROLE) {
+                invalidate(event.getKey());
+            }
+        }
+    }
+
+    /**
+     * Get number of compiled policies which are cached.
+     *
+     * @return number of policies
+     */
+    int getCompiledPolicyCount() {
+        return policies.size();
+    }
+
+    /**
+     * Get masking plan of the fields of the given class for the user. Every
+     * field is a level of the hierarchical resource below the given resource,
+     * conditional rules of the resource itself are not applied, because they
+     * were evaluated by the check of the object. Plans are cached within the
+     * compiled policies, therefore they are dropped together with them.
+     *
+     * @param user     currently logged user
+     * @param type     class of the masked objects
+     * @param resource textual representation of the resource of the objects
+     * @param action   action which has to be allowed on the visible fields
+     * @return masking plan
+     */
+    FieldMaskingPlan getMaskingPlan(UserDetails user, Class<?> type, String resource, String action) {
+        CompiledPolicy policy = getPolicy(user);
+        return policy.getMaskingPlan(type, resource, action, () -> FieldMaskingPlan.compile(type, field -> {
+            String[] types = (resource + ResourcePath.SEPARATOR + field).split(ResourcePath.SEPARATOR);
+            List<PermissionRule> rules = new ArrayList<>();
+            for (LevelRule candidate : getPathRules(policy, types, action)) {
+                if (candidate.level == types.length - 1 || candidate.rule.getCondition() == null) {
+                    rules.add(candidate.rule);
+                }
+            }
+            return rules;
+        }));
+    }
+
+
     /**
      * Determine if the given user with defined roles can perform action on the
      * resource.
      *
      * @param authentication     authentication containing currently logged user
-     * @param targetDomainObject textual representation of the resource
+     * @param targetDomainObject textual representation of the resource,
+     *                           hierarchical {@link ResourcePath} or loaded
+     *                           domain object registered in {@link ResourceTypeRegistry}
      * @param permission         textual representation of the action on the resource
      * @return true if user can perform the action on the given resource
      */
     @Override
     public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
-        if (transactionTemplate == null) {
-            return hasPermissionInternal(authentication, targetDomainObject, permission);
-        } else {
-            Boolean result = transactionTemplate.<Boolean>execute(status ->
-                    hasPermissionInternal(authentication, targetDomainObject, permission));
-            return result != null && result;
+        PermissionCheckEvent event = new PermissionCheckEvent();
+        event.begin();
+
+        Object resource = targetDomainObject;
+        Object id = null;
+        if (targetDomainObject instanceof ResourcePath) {
+            resource = ((ResourcePath) targetDomainObject).getTypePath();
+            id = targetDomainObject;
+        } else if (targetDomainObject != null && !(targetDomainObject instanceof String)) {
+            resource = resolveType(targetDomainObject).orElse(null);
+            if (resource == null) {
+                resource = targetDomainObject;
+            }
         }
+
+        PermissionRule rule = unlessUnavailable(authentication, resource, id, permission,
+                () -> findDecidingRule(authentication, targetDomainObject, permission));
+        return recorded(event, authentication, resource, id, permission, rule);
     }
 
 
@@ -94,119 +374,704 @@ public class AclPermissionEvaluator implements PermissionEvaluator {
      */
     @Override
     public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission) {
-        if (transactionTemplate == null) {
-            return hasPermissionInternal(authentication, targetId, targetType, permission);
-        } else {
-            Boolean result = transactionTemplate.<Boolean>execute(status ->
-                    hasPermissionInternal(authentication, targetId, targetType, permission));
-            return result != null && result;
+        PermissionCheckEvent event = new PermissionCheckEvent();
+        event.begin();
+
+        PermissionRule rule = unlessUnavailable(authentication, targetType, targetId, permission,
+                () -> findDecidingRule(authentication, targetType, permission, () -> findResource(targetType, targetId)));
+        return recorded(event, authentication, targetType, targetId, permission, rule);
+    }
+
+    /**
+     * Determine if the given user with defined roles can perform action on the
+     * resource with given identification, which was already loaded together
+     * with resources of other checks, e.g. by
+     * {@link IResourceRepository#findAllById(Collection)}. Repository is not
+     * called at all.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param targetId       identification of the resource
+     * @param targetType     textual representation of the resource
+     * @param permission     textual representation of the action on the resource
+     * @param loaded         loaded resources indexed by their identifications,
+     *                       resources which are not present do not exist
+     * @return true if user can perform the action on the given resource
+     */
+    public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission,
+                                 Map<?, ?> loaded) {
+        PermissionCheckEvent event = new PermissionCheckEvent();
+        event.begin();
+
+        PermissionRule rule = unlessUnavailable(authentication, targetType, targetId, permission,
+                () -> findDecidingRule(authentication, targetType, permission, () -> {
+                    Object resource = loaded.get(targetId);
+                    if (resource == null) {
+                        throw new ResourceNotFoundException("Resource with identification '" + targetId + "' not found");
+                    }
+                    return resource;
+                }));
+        return recorded(event, authentication, targetType, targetId, permission, rule);
+    }
+
+    /**
+     * Filter given collection of already loaded resources and return only those
+     * on which the given user can perform the action. Matching permission rules
+     * are resolved only once for the whole collection and conditions are
+     * evaluated directly on the given objects without any repository calls.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param resources      loaded resource objects
+     * @param targetType     textual representation of the resource
+     * @param permission     textual representation of the action on the resource
+     * @param <T>            type of the resource objects
+     * @return new list with allowed resources in the original order
+     */
+    public <T> List<T> filter(Authentication authentication, Collection<T> resources, String targetType, Object permission) {
+        List<T> result = inTransaction(() -> filterInternal(authentication, resources, targetType, permission));
+        return result != null ? result : new ArrayList<>();
+    }
+
+    /**
+     * Take decision for the user of the given authentication, resource and
+     * action, if it does not depend on any condition or only on the user-only
+     * parts of the conditions. The decision is then the same for all resource
+     * objects, but it might differ for the users with the same authorities.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param resource       textual representation of the resource
+     * @param action         action on the resource
+     * @return true if allowed, false if denied, null if conditions have to be evaluated
+     */
+    public Boolean decideUnconditionally(Authentication authentication, String resource, Object action) {
+        UserDetails user = resolveUser(authentication);
+        if (user == null || !(action instanceof String)) {
+            return Boolean.FALSE;
         }
+        return decideUnconditionally(user, resource, (String) action, true);
+    }
+
+    /**
+     * Take decision for the given user, resource and action, if it does not
+     * depend on any condition. The decision is then the same for all resource
+     * objects and for all users with the same authorities, user-only parts of
+     * the conditions are therefore not evaluated.
+     *
+     * @param user     user
+     * @param resource textual representation of the resource
+     * @param action   action on the resource
+     * @return true if allowed, false if denied, null if conditions have to be evaluated
+     */
+    public Boolean decideUnconditionally(UserDetails user, String resource, String action) {
+        return decideUnconditionally(user, resource, action, false);
+    }
+
+    /**
+     * Execute given evaluation within read-only transaction, if transaction
+     * manager was given. If there is already active transaction, e.g. the one
+     * opened by {@link cz.polankam.security.acl.method.AuthorizationTransactionInterceptor},
+     * evaluation is executed directly within it. Callers which load the
+     * resources themselves, e.g. {@link cz.polankam.security.acl.bulk.AccessMatrixEngine},
+     * load and evaluate them within this transaction.
+     *
+     * @param evaluation evaluation
+     * @param <T>        type of the result
+     * @return result of the evaluation
+     */
+    public <T> T inTransaction(Supplier<T> evaluation) {
+        if (transactionTemplate == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return evaluation.get();
+        }
+        return transactionTemplate.execute(status -> evaluation.get());
     }
 
     ////////////////////////////////////////////////////////////////////////////
 
-    private boolean hasPermissionInternal(Authentication authentication, Object targetDomainObject, Object permission) {
-        if (authentication == null ||
-                !(authentication.getPrincipal() instanceof UserDetails) ||
-                !(targetDomainObject instanceof String) ||
+    /**
+     * Take decision without evaluation of the conditions on the resource.
+     *
+     * @param user     user
+     * @param resource textual representation of the resource
+     * @param action   action on the resource
+     * @param preCheck true if user-only parts of the conditions are evaluated
+     * @return true if allowed, false if denied, null if conditions have to be evaluated
+     */
+    private Boolean decideUnconditionally(UserDetails user, String resource, String action, boolean preCheck) {
+        for (PermissionRule rule : getPolicy(user).getRules(resource)) {
+            if (!matchesAction(rule, action)) {
+                continue;
+            }
+            Boolean applies = Boolean.TRUE;
+            if (rule.getCondition() != null) {
+                applies = preCheck ? rule.getCondition().preCheck(user) : null;
+            }
+            if (applies == null) {
+                return null;
+            }
+            if (applies) {
+                return rule.isAllowed();
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * Find deciding rule within transaction, if the resource is unavailable
+     * and the evaluator fails closed, no rule decides and access is denied.
+     * Checks which end with an exception, e.g. because the resource does not
+     * exist, are recorded in the audit log as denied.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param resource       checked resource
+     * @param id             identification of the resource, might be null
+     * @param permission     checked action
+     * @param evaluation     evaluation returning deciding rule
+     * @return deciding rule or null
+     */
+    private PermissionRule unlessUnavailable(Authentication authentication, Object resource, Object id, Object permission,
+                                             Supplier<PermissionRule> evaluation) {
+        try {
+            return inTransaction(evaluation);
+        } catch (ResourceUnavailableException e) {
+            if (denyOnUnavailable) {
+                return null;
+            }
+            decided(authentication, resource, id, permission, null);
+            throw e;
+        } catch (RuntimeException e) {
+            decided(authentication, resource, id, permission, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Finish the check with the given deciding rule, decision is recorded in
+     * the audit log if there is one.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param resource       checked resource
+     * @param id             identification of the resource, might be null
+     * @param permission     checked action
+     * @param rule           deciding rule, null if no rule was applicable
+     * @return true if the action is allowed
+     */
+    private boolean decided(Authentication authentication, Object resource, Object id, Object permission, PermissionRule rule) {
+        boolean allowed = rule != null && rule.isAllowed();
+        if (auditLog != null) {
+            auditLog.log(authentication, resource, id, permission, allowed, rule);
+        }
+        return allowed;
+    }
+
+    /**
+     * Finish the check and commit the flight recorder event of the check, if
+     * recording of the event is enabled.
+     *
+     * @param event          started flight recorder event
+     * @param authentication authentication containing currently logged user
+     * @param resource       checked resource
+     * @param id             identification of the resource, might be null
+     * @param permission     checked action
+     * @param rule           deciding rule, null if no rule was applicable
+     * @return true if the action is allowed
+     */
+    private boolean recorded(PermissionCheckEvent event, Authentication authentication, Object resource, Object id,
+                             Object permission, PermissionRule rule) {
+        boolean allowed = decided(authentication, resource, id, permission, rule);
+        if (event.shouldCommit()) {
+            event.setResource(String.valueOf(resource));
+            event.setAction(String.valueOf(permission));
+            event.setAllowed(allowed);
+            event.setRuleIndex(ruleIndex(authentication, resource, id, permission, rule));
+            event.commit();
+        }
+        return allowed;
+    }
+
+    /**
+     * Find index of the rule within the ordered rules of the resource, used
+     * only for the flight recorder events. For hierarchical resources it is
+     * the index within the ordered candidate rules of all levels, the same
+     * one which is used by the condition evaluation events.
+     *
+     * @return index or -1 if the rule is not among the ordered rules
+     */
+    private int ruleIndex(Authentication authentication, Object resource, Object id, Object permission,
+                          PermissionRule rule) {
+        UserDetails user = rule != null ? resolveUser(authentication) : null;
+        if (user == null) {
+            return -1;
+        }
+
+        if (id instanceof ResourcePath) {
+            if (!(permission instanceof String)) {
+                return -1;
+            }
+            List<LevelRule> candidates = getPathRules(getPolicy(user), ((ResourcePath) id).getTypes(), (String) permission);
+            for (int i = 0; i < candidates.size(); i++) {
+                if (candidates.get(i).rule == rule) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        if (!(resource instanceof String)) {
+            return -1;
+        }
+
+        PermissionRule[] rules = getPolicy(user).getRules((String) resource);
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i] == rule) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Evaluate condition of the rule, evaluation is recorded as the flight
+     * recorder event, if recording of the event is enabled.
+     *
+     * @param rule      rule with condition
+     * @param ruleIndex index of the rule within the ordered rules
+     * @param user      currently logged user
+     * @param resource  resource object
+     * @param type      textual representation of the resource
+     * @param action    checked action
+     * @return result of the condition
+     */
+    private static boolean test(PermissionRule rule, int ruleIndex, UserDetails user, Object resource,
+                                String type, String action) {
+        ConditionEvaluationEvent event = new ConditionEvaluationEvent();
+        event.begin();
+        boolean result = rule.getCondition().test(user, resource);
+        if (event.shouldCommit()) {
+            event.setResource(type);
+            event.setAction(action);
+            event.setRuleIndex(ruleIndex);
+            event.setCondition(String.valueOf(rule.getCondition()));
+            event.setResult(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    private PermissionRule findDecidingRule(Authentication authentication, Object targetDomainObject, Object permission) {
+        if (targetDomainObject instanceof ResourcePath) {
+            return findDecidingRule(authentication, (ResourcePath) targetDomainObject, permission);
+        }
+
+        UserDetails user = resolveUser(authentication);
+        if (user == null ||
+                targetDomainObject == null ||
                 !(permission instanceof String)) {
-            return false;
+            return null;
+        }
+
+        if (!(targetDomainObject instanceof String)) {
+            // already loaded domain object, conditions are evaluated on it
+            Optional<String> type = resolveType(targetDomainObject);
+            if (type.isEmpty()) {
+                return null;
+            }
+            return findDecidingRule(user, type.get(), (String) permission, () -> targetDomainObject);
         }
 
-        UserDetails user = (UserDetails) authentication.getPrincipal();
         String targetResource = (String) targetDomainObject;
         String permissionString = (String) permission;
 
-        // check the permissions against all user roles
-        for (GrantedAuthority authority : user.getAuthorities()) {
-            Role role = permissionsService.getRole(authority.getAuthority());
-            if (role == null) {
-                // not defined role in permission service, strange, but let us continue...
+        // rules of all user roles are ordered by the combining algorithm
+        CompiledPolicy policy = getPolicy(user);
+        PermissionRule[] rules = policy.getRules(targetResource);
+        RuleStatistics.Counter[] counters = policy.getCounters(targetResource);
+        for (int i = 0; i < rules.length; i++) {
+            PermissionRule rule = rules[i];
+            if (!matchesAction(rule, permissionString)) {
                 continue;
             }
 
-            List<PermissionRule> rules = findMatching(role.getPermissionRules(), targetResource, permissionString);
-            Optional<PermissionRule> firstRule = rules.stream().findFirst();
-            if (firstRule.isPresent()) {
-                if (firstRule.get().getCondition() != null) {
-                    throw new PermissionException("ABAC permission rule for resource '" + targetResource +
-                            "' and action '" + permissionString + "' was used in non-ABAC context");
+            if (rule.getCondition() != null) {
+                throw new PermissionException("ABAC permission rule for resource '" + targetResource +
+                        "' and action '" + permissionString + "' was used in non-ABAC context");
+            }
+
+            // matching rule was found, allow it or not
+            if (counters != null) {
+                counters[i].hit();
+                counters[i].decided();
+            }
+            return rule;
+        }
+        return null;
+    }
+
+    private PermissionRule findDecidingRule(Authentication authentication, String targetType, Object permission,
+                                            Supplier<Object> loader) {
+        UserDetails user = resolveUser(authentication);
+        if (user == null || !(permission instanceof String)) {
+            return null;
+        }
+
+        // we were given resource identification, resource is acquired by the
+        // loader and evaluated in specified condition
+        return findDecidingRule(user, targetType, (String) permission, loader);
+    }
+
+    /**
+     * Find deciding rule for the resource which is given by the supplier, it
+     * is called only once and only if some condition has to be evaluated.
+     *
+     * @param user       currently logged user
+     * @param targetType textual representation of the resource
+     * @param permission textual representation of the action on the resource
+     * @param loader     supplier of the resource object
+     * @return deciding rule or null
+     */
+    private PermissionRule findDecidingRule(UserDetails user, String targetType, String permission, Supplier<Object> loader) {
+        Object resource = null;
+
+        // rules of all user roles are ordered by the combining algorithm
+        CompiledPolicy policy = getPolicy(user);
+        PermissionRule[] rules = policy.getRules(targetType);
+        RuleStatistics.Counter[] counters = policy.getCounters(targetType);
+        for (int i = 0; i < rules.length; i++) {
+            PermissionRule rule = rules[i];
+            if (!matchesAction(rule, permission)) {
+                continue;
+            }
+
+            if (counters != null) {
+                counters[i].hit();
+            }
+            if (rule.getCondition() == null) {
+                // condition was not given, so the behaviour is the same
+                // as for regular id-less permission check, allow it or not
+                if (counters != null) {
+                    counters[i].decided();
+                }
+                return rule;
+            }
+
+            // condition was given, its user-only part might decide it
+            // without the resource
+            Boolean preCheck = rule.getCondition().preCheck(user);
+            if (preCheck == null) {
+                if (resource == null) {
+                    // resource is acquired only once for all rules
+                    resource = loader.get();
                 }
+                preCheck = test(rule, i, user, resource, targetType, permission);
+            }
 
-                // at least one matching rule was found, allow it or not
-                return firstRule.get().isAllowed();
+            if (preCheck) {
+                if (counters != null) {
+                    counters[i].decided();
+                }
+                return rule;
             }
+
+            // if condition was false, we have to continue
+            // evaluating another rules, because some of them might
+            // be truthy and grant access to resource
         }
-        return false;
+        return null;
     }
 
-    private boolean hasPermissionInternal(Authentication authentication, Serializable targetId, String targetType, Object permission) {
-        if (authentication == null ||
-                !(authentication.getPrincipal() instanceof UserDetails) ||
-                !(permission instanceof String)) {
-            return false;
+    /**
+     * Resolve user of the given authentication.
+     *
+     * @param authentication authentication, might be null
+     * @return user or null if there is none
+     */
+    UserDetails resolveUser(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        return principalResolver.resolve(authentication);
+    }
+
+    /**
+     * Find resource of the given domain object in the registry.
+     *
+     * @param domainObject domain object
+     * @return textual representation of the resource or empty optional
+     */
+    private Optional<String> resolveType(Object domainObject) {
+        ResourceTypeRegistry registry = resourceTypeRegistry;
+        return registry != null ? registry.resolve(domainObject) : Optional.empty();
+    }
+
+    private <T> List<T> filterInternal(Authentication authentication, Collection<T> resources, String targetType, Object permission) {
+        UserDetails user = resolveUser(authentication);
+        if (user == null || !(permission instanceof String)) {
+            return new ArrayList<>();
         }
 
-        UserDetails user = (UserDetails) authentication.getPrincipal();
         String permissionString = (String) permission;
 
-        // check the permissions against all user roles
-        for (GrantedAuthority authority : user.getAuthorities()) {
-            Role role = permissionsService.getRole(authority.getAuthority());
-            if (role == null) {
-                // not defined role in permission service, strange, but let us continue...
+        // matching rules are resolved only once for the whole collection, the
+        // first unconditional rule decides all resources which were not
+        // decided by the conditional rules preceding it, user-only parts of
+        // the conditions are evaluated only once as well
+        List<PermissionRule> conditional = new ArrayList<>();
+        List<Integer> conditionalIndices = new ArrayList<>();
+        PermissionRule fallback = null;
+        PermissionRule[] rules = getPolicy(user).getRules(targetType);
+        for (int i = 0; i < rules.length; i++) {
+            PermissionRule rule = rules[i];
+            if (!matchesAction(rule, permissionString)) {
                 continue;
             }
 
-            List<PermissionRule> rules = findMatching(role.getPermissionRules(), targetType, permissionString);
-            Optional<PermissionRule> firstRule = rules.stream().findFirst();
-            if (firstRule.isPresent()) {
-                // at least one matching rule was found
-                PermissionRule rule = firstRule.get();
-                if (rule.getCondition() != null) {
-                    // we have to find resource repository, because we were
-                    // given resource identification, after that resource is
-                    // acquired from the repository and evaluated in specified
-                    // condition
-                    IResourceRepository repository = permissionsService.getResource(rule.getResource());
-                    Optional<Object> resource = repository.findById(targetId);
-                    if (resource.isEmpty()) {
-                        throw new ResourceNotFoundException("Resource with identification '" + targetId + "' not found");
-                    }
+            Boolean preCheck = rule.getCondition() != null ? rule.getCondition().preCheck(user) : Boolean.TRUE;
+            if (preCheck == null) {
+                conditional.add(rule);
+                conditionalIndices.add(i);
+            } else if (preCheck) {
+                fallback = rule;
+                break;
+            }
+        }
 
-                    // condition was given, so evaluate it
-                    if (rule.getCondition().test(user, resource.get())) {
-                        return rule.isAllowed();
-                    }
+        if (conditional.isEmpty() && auditLog == null) {
+            // all resources share the same outcome
+            return fallback != null && fallback.isAllowed() ? new ArrayList<>(resources) : new ArrayList<>();
+        }
 
-                    // if condition was false, we have to continue
-                    // evaluating another rules, because some of them might
-                    // be truthy and grant access to resource
-                } else {
-                    // condition was not given, so the behaviour is the same
-                    // as for regular id-less permission check, allow it or not
-                    return rule.isAllowed();
+        List<T> result = new ArrayList<>();
+        for (T resource : resources) {
+            PermissionRule decidingRule = fallback;
+            for (int i = 0; i < conditional.size(); i++) {
+                PermissionRule rule = conditional.get(i);
+                if (test(rule, conditionalIndices.get(i), user, resource, targetType, permissionString)) {
+                    decidingRule = rule;
+                    break;
                 }
             }
+
+            if (decided(authentication, targetType, null, permission, decidingRule)) {
+                result.add(resource);
+            }
+        }
+        return result;
+    }
+
+    private PermissionRule findDecidingRule(Authentication authentication, ResourcePath path, Object permission) {
+        UserDetails user = resolveUser(authentication);
+        if (user == null || !(permission instanceof String)) {
+            return null;
+        }
+
+        String permissionString = (String) permission;
+        String[] types = path.getTypes();
+        PathResources resources = new PathResources(path);
+
+        List<LevelRule> candidates = getPathRules(getPolicy(user), types, permissionString);
+        for (int i = 0; i < candidates.size(); i++) {
+            LevelRule candidate = candidates.get(i);
+            PermissionRule rule = candidate.rule;
+            Boolean preCheck = rule.getCondition() != null ? rule.getCondition().preCheck(user) : Boolean.TRUE;
+            if (preCheck == null) {
+                preCheck = test(rule, i, user, resources.get(candidate.level), types[candidate.level], permissionString);
+            }
+            if (preCheck) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get rules applicable on the hierarchical resource with given types in
+     * the order of their evaluation. The most specific level goes first, rules
+     * defined on ancestors are applied only if they were not overridden by
+     * descendants.
+     *
+     * @param policy compiled policy of the user
+     * @param types  resource types ordered from the root to the leaf
+     * @param action checked action
+     * @return ordered rules together with their levels
+     */
+    private static List<LevelRule> getPathRules(CompiledPolicy policy, String[] types, String action) {
+        List<LevelRule> candidates = new ArrayList<>();
+        for (Role role : policy.getRoles()) {
+            List<List<PermissionRule>> levels = role.getPermissionRulesOnPath(types);
+            for (int level = levels.size() - 1; level >= 0; level--) {
+                for (PermissionRule rule : levels.get(level)) {
+                    if (matchesAction(rule, action)) {
+                        candidates.add(new LevelRule(rule, level));
+                    }
+                }
+            }
+        }
+        policy.getAlgorithm().order(candidates, candidate -> candidate.rule);
+        return candidates;
+    }
+
+    /**
+     * Find resource with given identification in its repository.
+     *
+     * @param resource textual representation of the resource
+     * @param id       identification of the resource
+     * @return resource object
+     */
+    private Object findResource(String resource, Object id) {
+        IResourceRepository repository = permissionsService.getResource(resource);
+        ResourceLoadEvent event = new ResourceLoadEvent();
+        event.begin();
+        Optional<Object> result = null;
+        try {
+            result = repository.findById(id);
+        } finally {
+            if (event.shouldCommit()) {
+                event.setResource(resource);
+                event.setId(String.valueOf(id));
+                event.setFound(result != null && result.isPresent());
+                event.setFailed(result == null);
+                event.commit();
+            }
+        }
+        if (result.isEmpty()) {
+            throw new ResourceNotFoundException("Resource with identification '" + id + "' not found");
+        }
+        if (publishLoadedResources) {
+            AuthorizedResources.publish(resource, id, result.get());
+        }
+        return result.get();
+    }
+
+    /**
+     * Determine if given rule is applicable on the action.
+     *
+     * @param rule   permission rule
+     * @param action action which should be found
+     * @return true if rule contains action or wildcard
+     */
+    private static boolean matchesAction(PermissionRule rule, String action) {
+        for (String ruleAction : rule.getActions()) {
+            if (Objects.equals(ruleAction, action) || Objects.equals(ruleAction, WILDCARD)) {
+                return true;
+            }
         }
         return false;
     }
 
     /**
-     * Find all matching rules with given resource and action.
+     * Get compiled policy of the roles of the given user, policies are cached
+     * for every distinct set of user authorities.
      *
-     * @param rules    source rules
-     * @param resource resource which should be found
-     * @param action   action which should be found
-     * @return filtered collection of matching rules
+     * @param user currently logged user
+     * @return compiled policy
+     */
+    private CompiledPolicy getPolicy(UserDetails user) {
+        List<String> authorities;
+        if (user instanceof ClaimsPrincipal) {
+            // already sorted when the principal was created
+            authorities = ((ClaimsPrincipal) user).getAuthorityNames();
+        } else {
+            authorities = new ArrayList<>();
+            for (GrantedAuthority authority : user.getAuthorities()) {
+                authorities.add(authority.getAuthority());
+            }
+            // roles are ordered by their names, so that the decision does not
+            // depend on the order of the authorities
+            Collections.sort(authorities);
+        }
+
+        CombiningAlgorithm algorithm = combiningAlgorithm;
+        CompiledPolicy policy = policies.get(authorities);
+        if (policy != null && policy.getAlgorithm() == algorithm && policy.isCurrent()) {
+            return policy;
+        }
+
+        long generation = invalidations.get();
+        List<Role> roles = new ArrayList<>();
+        for (String authority : authorities) {
+            Role role = permissionsService.getRole(authority);
+            if (role == null || roles.contains(role)) {
+                // not defined role in permission service, strange, but let us continue...
+                continue;
+            }
+            roles.add(role);
+        }
+
+        policy = CompiledPolicy.compile(roles, algorithm, ruleStatistics);
+        if (policies.size() >= MAX_CACHED_POLICIES) {
+            policies.clear();
+            dependentPolicies.clear();
+        }
+        // authorities without defined role are dependencies as well, so that
+        // the policy is dropped when the role is defined later
+        Set<String> dependencies = policy.getDependencyNames();
+        dependencies.addAll(authorities);
+        for (String name : dependencies) {
+            dependentPolicies.computeIfAbsent(name, ignored -> ConcurrentHashMap.newKeySet()).add(authorities);
+        }
+        policies.put(authorities, policy);
+        if (invalidations.get() != generation) {
+            // roles might have been replaced after they were read, the
+            // invalidation could miss the policy which was not yet cached
+            policies.remove(authorities, policy);
+        }
+        return policy;
+    }
+
+    /**
+     * Rule applicable on the level of the hierarchical resource.
      */
-    private List<PermissionRule> findMatching(Collection<PermissionRule> rules, String resource, String action) {
-        return rules.stream().filter(rule -> {
-            boolean resourceMatch = Objects.equals(rule.getResource(), resource) ||
-                    Objects.equals(rule.getResource(), WILDCARD);
-            boolean actionsMatch = rule.getActions().stream().anyMatch(ruleAction ->
-                    Objects.equals(ruleAction, action) || Objects.equals(ruleAction, WILDCARD));
-            return resourceMatch && actionsMatch;
-        }).collect(Collectors.toList());
+    private static final class LevelRule {
+        private final PermissionRule rule;
+        private final int level;
+
+        private LevelRule(PermissionRule rule, int level) {
+            this.rule = rule;
+            this.level = level;
+        }
+    }
+
+    /**
+     * Lazily loaded resources of all levels of the hierarchical path. When the
+     * resource on some level is requested, the repository of that level is
+     * asked for the whole chain of ancestors at once, if it does not support
+     * it, resources are loaded one by one.
+     */
+    private final class PathResources {
+
+        private final ResourcePath path;
+        private final Object[] loaded;
+
+        private PathResources(ResourcePath path) {
+            this.path = path;
+            this.loaded = new Object[path.getDepth()];
+        }
+
+        private Object get(int level) {
+            if (loaded[level] != null) {
+                return loaded[level];
+            }
+
+            ResourcePath prefix = path.prefix(level);
+            IResourceRepository repository = permissionsService.getResource(prefix.getResource());
+            Optional<List<Object>> chain = repository.findPath(prefix);
+            if (chain.isPresent() && chain.get().size() == level + 1) {
+                List<Object> entities = chain.get();
+                for (int i = 0; i <= level; i++) {
+                    if (loaded[i] == null) {
+                        loaded[i] = entities.get(i);
+                    }
+                }
+            } else {
+                loaded[level] = repository.findById(prefix.getId()).orElse(null);
+            }
+
+            if (loaded[level] == null) {
+                throw new ResourceNotFoundException("Resource with identification '" + prefix + "' not found");
+            }
+            if (publishLoadedResources) {
+                for (int i = 0; i <= level; i++) {
+                    AuthorizedResources.publish(path.getType(i), path.getId(i), loaded[i]);
+                }
+            }
+            return loaded[level];
+        }
     }
 }
@@ -4,6 +4,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Authorizator service, which can be used within whole application for custom
@@ -16,13 +19,28 @@ public class AuthorizatorService {
 
     /** Evaluates all permission related requests */
     private final AclPermissionEvaluator permissionEvaluator;
+    /** Evaluates asynchronous requests in batches, might be null */
+    private final BatchingPermissionEvaluator batchingEvaluator;
+    /** Hides fields of the objects */
+    private final FieldMasker fieldMasker;
 
     /**
      * Constructor.
      * @param permissionEvaluator evaluator
      */
     public AuthorizatorService(AclPermissionEvaluator permissionEvaluator) {
+        this(permissionEvaluator, null);
+    }
+
+    /**
+     * Constructor with the evaluator of asynchronous requests.
+     * @param permissionEvaluator evaluator
+     * @param batchingEvaluator evaluator of asynchronous requests, might be null
+     */
+    public AuthorizatorService(AclPermissionEvaluator permissionEvaluator, BatchingPermissionEvaluator batchingEvaluator) {
         this.permissionEvaluator = permissionEvaluator;
+        this.batchingEvaluator = batchingEvaluator;
+        this.fieldMasker = new FieldMasker(permissionEvaluator);
     }
 
 
@@ -50,4 +68,77 @@ public class AuthorizatorService {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         return permissionEvaluator.hasPermission(authentication, resourceId, resource, action);
     }
+
+    /**
+     * For the given resource, its identification and action determine
+     * asynchronously if currently logged user is allowed to perform the
+     * action. Concurrent requests are evaluated together and resources are
+     * loaded in batches, if batching evaluator was given, otherwise the
+     * request is evaluated immediately.
+     * @param resource resource which user wants to access
+     * @param resourceId identification of the resource
+     * @param action action which user wants to take
+     * @return future completed with true if the actions is allowed on given resource, false otherwise
+     */
+    public CompletableFuture<Boolean> isAllowedAsync(String resource, Serializable resourceId, String action) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (batchingEvaluator == null) {
+            return CompletableFuture.completedFuture(permissionEvaluator.hasPermission(authentication, resourceId, resource, action));
+        }
+        return batchingEvaluator.hasPermission(authentication, resourceId, resource, action);
+    }
+
+    /**
+     * For the given hierarchical resource path and action determine if
+     * currently logged user is allowed to perform the action. Permissions of
+     * the ancestors are applied if not overridden on more specific levels.
+     * @param path hierarchical path of the resource
+     * @param action action which user wants to take
+     * @return true if the actions is allowed on given resource, false otherwise
+     */
+    public boolean isAllowed(ResourcePath path, String action) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return permissionEvaluator.hasPermission(authentication, path, action);
+    }
+
+    /**
+     * For the given already loaded domain object and action determine if
+     * currently logged user is allowed to perform the action. Class of the
+     * object has to be registered in {@link ResourceTypeRegistry} of the
+     * evaluator, conditions are evaluated directly on the given object.
+     * @param domainObject loaded domain object
+     * @param action action which user wants to take
+     * @return true if the actions is allowed on given object, false otherwise
+     */
+    public boolean isAllowedOn(Object domainObject, String action) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return permissionEvaluator.hasPermission(authentication, domainObject, action);
+    }
+
+    /**
+     * For the given collection of loaded resources and action return only those
+     * resources on which currently logged user is allowed to perform the action.
+     * @param resource resource which user wants to access
+     * @param resources loaded resource objects
+     * @param action action which user wants to take
+     * @param <T> type of the resource objects
+     * @return new list of allowed resources
+     */
+    public <T> List<T> filterAllowed(String resource, Collection<T> resources, String action) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return permissionEvaluator.filter(authentication, resources, resource, action);
+    }
+
+    /**
+     * For the given collection of objects of the resource hide fields which
+     * currently logged user is not allowed to view, see {@link FieldMasker}.
+     * @param resource resource of the objects
+     * @param objects objects whose fields are masked
+     * @param <C> type of the collection
+     * @return given collection
+     */
+    public <C extends Collection<?>> C maskFields(String resource, C objects) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return fieldMasker.maskAll(authentication, resource, objects);
+    }
 }
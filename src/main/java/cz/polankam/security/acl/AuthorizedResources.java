@@ -0,0 +1,124 @@
+package cz.polankam.security.acl;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Request scoped holder of the resources which were loaded by the permission
+ * evaluator during authorization. If publishing is enabled on the evaluator,
+ * business code can take the already loaded resource from here instead of
+ * loading it again. Resources are held only within web requests, outside of
+ * them nothing is published and nothing is found.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class AuthorizedResources {
+
+    /**
+     * Name of the request attribute which holds the resources
+     */
+    private static final String ATTRIBUTE = AuthorizedResources.class.getName();
+    /**
+     * Spring web is optional dependency, holder is not used without it
+     */
+    private static final boolean WEB_PRESENT = ClassUtils.isPresent(
+            "org.springframework.web.context.request.RequestContextHolder", AuthorizedResources.class.getClassLoader());
+
+    private AuthorizedResources() {
+        // nothing to see here
+    }
+
+
+    /**
+     * Get resource with given identification which was loaded during
+     * authorization of the current request.
+     *
+     * @param resource textual representation of the resource
+     * @param id       identification of the resource
+     * @return resource object or empty optional if it was not loaded
+     */
+    public static Optional<Object> get(String resource, Object id) {
+        Map<String, Map<Object, Object>> resources = resources(false);
+        if (resources == null || !resources.containsKey(resource)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(resources.get(resource).get(id));
+    }
+
+    /**
+     * Get resource with given identification and type which was loaded during
+     * authorization of the current request.
+     *
+     * @param resource textual representation of the resource
+     * @param id       identification of the resource
+     * @param type     expected type of the resource object
+     * @param <T>      type of the resource object
+     * @return resource object or empty optional if it was not loaded
+     */
+    public static <T> Optional<T> get(String resource, Object id, Class<T> type) {
+        return get(resource, id).filter(type::isInstance).map(type::cast);
+    }
+
+    /**
+     * Remove all resources published within the current request.
+     */
+    public static void clear() {
+        if (WEB_PRESENT) {
+            RequestScope.remove();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Publish loaded resource, it is ignored outside of the web request.
+     *
+     * @param resource textual representation of the resource
+     * @param id       identification of the resource
+     * @param object   loaded resource object
+     */
+    static void publish(String resource, Object id, Object object) {
+        Map<String, Map<Object, Object>> resources = resources(true);
+        if (resources != null) {
+            resources.computeIfAbsent(resource, ignored -> new HashMap<>()).put(id, object);
+        }
+    }
+
+    private static Map<String, Map<Object, Object>> resources(boolean create) {
+        return WEB_PRESENT ? RequestScope.resources(create) : null;
+    }
+
+    /**
+     * Access to request attributes, separated so that spring web classes are
+     * loaded only if they are present.
+     */
+    private static final class RequestScope {
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, Map<Object, Object>> resources(boolean create) {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (attributes == null) {
+                return null;
+            }
+
+            Object resources = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (resources == null && create) {
+                resources = new HashMap<String, Map<Object, Object>>();
+                attributes.setAttribute(ATTRIBUTE, resources, RequestAttributes.SCOPE_REQUEST);
+            }
+            return (Map<String, Map<Object, Object>>) resources;
+        }
+
+        private static void remove() {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (attributes != null) {
+                attributes.removeAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package cz.polankam.security.acl;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous permission evaluator, which buffers checks of the resources
+ * given by their identifications and evaluates them together. Batch is
+ * evaluated when it reaches the maximal size, after the given delay since the
+ * first buffered check or when {@link #flush()} is called, e.g. at the end of
+ * the dispatch of the GraphQL request. Checks are grouped by the resource and
+ * resources needed by the conditions are loaded in one go by
+ * {@link IResourceRepository#findAllById(java.util.Collection)} for every
+ * group. Checks are then finished by the permission evaluator, including the
+ * audit log and flight recorder events.
+ * <p>
+ * Futures are completed by the thread which evaluates the batch. If the
+ * resource does not exist, the future is completed exceptionally with
+ * {@link cz.polankam.security.acl.exceptions.ResourceNotFoundException}, if
+ * the resources of the group could not be loaded, all checks of the group are
+ * completed exceptionally. Checks requested after the evaluator was closed
+ * are completed exceptionally with {@link IllegalStateException}.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class BatchingPermissionEvaluator implements AutoCloseable {
+
+    /**
+     * Permission evaluator which takes decisions
+     */
+    private final AclPermissionEvaluator permissionEvaluator;
+    /**
+     * Permission service with resource repositories
+     */
+    private final IPermissionsService permissionsService;
+    /**
+     * Template of the transaction in which the group is loaded and evaluated, might be null
+     */
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * Maximal number of buffered checks before evaluation
+     */
+    private final int maxBatchSize;
+    /**
+     * Maximal delay of the buffered check
+     */
+    private final Duration maxDelay;
+    /**
+     * Scheduler of delayed evaluations
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Buffered checks, guarded by this
+     */
+    private List<Check> buffer = new ArrayList<>();
+    /**
+     * Flag if the evaluator was closed, guarded by this
+     */
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param permissionEvaluator permission evaluator
+     * @param permissionsService  permission service
+     * @param transactionManager  transaction manager, might be null
+     * @param maxBatchSize        maximal number of buffered checks before evaluation
+     * @param maxDelay            maximal delay of the buffered check
+     */
+    public BatchingPermissionEvaluator(AclPermissionEvaluator permissionEvaluator, IPermissionsService permissionsService,
+                                       PlatformTransactionManager transactionManager, int maxBatchSize, Duration maxDelay) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Maximal batch size has to be positive");
+        }
+        this.permissionEvaluator = permissionEvaluator;
+        this.permissionsService = permissionsService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jaclp-permission-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (transactionManager != null) {
+            transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+        } else {
+            transactionTemplate = null;
+        }
+    }
+
+
+    /**
+     * Determine asynchronously if the given user with defined roles can
+     * perform action on the resource with given identification.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param targetId       identification of the resource which should be acquired
+     * @param targetType     textual representation of the resource
+     * @param permission     textual representation of the action on the resource
+     * @return future completed with true if user can perform the action on the given resource
+     */
+    public CompletableFuture<Boolean> hasPermission(Authentication authentication, Serializable targetId, String targetType,
+                                                    Object permission) {
+        Check check = new Check(authentication, targetId, targetType, permission);
+        boolean flushNow;
+        boolean schedule;
+        synchronized (this) {
+            if (closed) {
+                check.future.completeExceptionally(new IllegalStateException("Permission evaluator is closed"));
+                return check.future;
+            }
+            schedule = buffer.isEmpty();
+            buffer.add(check);
+            flushNow = buffer.size() >= maxBatchSize;
+        }
+
+        if (flushNow) {
+            flush();
+        } else if (schedule) {
+            try {
+                scheduler.schedule(this::flush, maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed concurrently, buffered checks are evaluated by the closing thread or now
+                flush();
+            }
+        }
+        return check.future;
+    }
+
+    /**
+     * Evaluate all buffered checks in the current thread.
+     */
+    public void flush() {
+        List<Check> batch;
+        synchronized (this) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = buffer;
+            buffer = new ArrayList<>();
+        }
+
+        Map<String, List<Check>> groups = new LinkedHashMap<>();
+        for (Check check : batch) {
+            groups.computeIfAbsent(check.targetType, ignored -> new ArrayList<>()).add(check);
+        }
+        for (Map.Entry<String, List<Check>> group : groups.entrySet()) {
+            try {
+                inTransaction(() -> evaluate(group.getKey(), group.getValue()));
+            } catch (RuntimeException e) {
+                for (Check check : group.getValue()) {
+                    check.future.completeExceptionally(e);
+                }
+            } catch (Error e) {
+                // remaining groups are not evaluated, none of the checks can be left pending
+                for (Check check : batch) {
+                    check.future.completeExceptionally(e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stop scheduling of the delayed evaluations and evaluate all buffered
+     * checks, new checks are not accepted anymore.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private void inTransaction(Runnable evaluation) {
+        if (transactionTemplate == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            evaluation.run();
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> evaluation.run());
+    }
+
+    /**
+     * Evaluate checks of the same resource, only resources of the checks
+     * which are not decided without conditions are loaded.
+     *
+     * @param targetType textual representation of the resource
+     * @param checks     checks of the resource
+     */
+    private void evaluate(String targetType, List<Check> checks) {
+        Set<Object> ids = new LinkedHashSet<>();
+        for (Check check : checks) {
+            if (permissionEvaluator.decideUnconditionally(check.authentication, targetType, check.permission) == null) {
+                ids.add(check.targetId);
+            }
+        }
+
+        Map<Object, Object> loaded = Collections.emptyMap();
+        if (!ids.isEmpty()) {
+            loaded = permissionsService.getResource(targetType).findAllById(ids);
+        }
+
+        for (Check check : checks) {
+            try {
+                check.future.complete(permissionEvaluator.hasPermission(check.authentication, check.targetId,
+                        targetType, check.permission, loaded));
+            } catch (RuntimeException e) {
+                check.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Buffered check.
+     */
+    private static final class Check {
+        private final Authentication authentication;
+        private final Serializable targetId;
+        private final String targetType;
+        private final Object permission;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private Check(Authentication authentication, Serializable targetId, String targetType, Object permission) {
+            this.authentication = authentication;
+            this.targetId = targetId;
+            this.targetType = targetType;
+            this.permission = permission;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package cz.polankam.security.acl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of the resource identifications. It answers
+ * whether the identification might exist, false positives are possible, but
+ * identification which was put into the filter is always reported. Equal
+ * identifications have to have equal hash codes.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class BloomFilter {
+
+    /**
+     * Bits of the filter
+     */
+    private final AtomicLongArray bits;
+    /**
+     * Number of bits of the filter
+     */
+    private final long bitCount;
+    /**
+     * Number of hash functions
+     */
+    private final int hashCount;
+
+    /**
+     * Constructor, size of the filter is computed from the expected number of
+     * identifications and the false positive probability.
+     *
+     * @param expectedIds       expected number of identifications
+     * @param falsePositiveRate probability of false positives, between 0 and 1
+     */
+    public BloomFilter(int expectedIds, double falsePositiveRate) {
+        if (expectedIds <= 0) {
+            throw new IllegalArgumentException("Expected number of identifications has to be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate has to be between 0 and 1");
+        }
+
+        long optimalBits = (long) Math.ceil(-expectedIds * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedIds * Math.log(2)));
+    }
+
+
+    /**
+     * Put identification into the filter.
+     *
+     * @param id identification of the resource
+     */
+    public void put(Object id) {
+        long hash1 = hash(id);
+        long hash2 = rehash(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.weakCompareAndSetVolatile(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * Put all given identifications into the filter.
+     *
+     * @param ids identifications of the resources
+     */
+    public void putAll(Iterable<?> ids) {
+        for (Object id : ids) {
+            put(id);
+        }
+    }
+
+    /**
+     * Determine if the identification might be in the filter.
+     *
+     * @param id identification of the resource
+     * @return false if identification was never put into the filter
+     */
+    public boolean mightContain(Object id) {
+        long hash1 = hash(id);
+        long hash2 = rehash(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static long hash(Object id) {
+        // spread bits of the hash code, murmur3 finalizer
+        long hash = id == null ? 0 : id.hashCode();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long rehash(long hash) {
+        // second hash has to be odd, so that all bits are visited
+        return (Long.rotateLeft(hash, 31) * 0x9e3779b97f4a7c15L) | 1;
+    }
+}
@@ -0,0 +1,129 @@
+package cz.polankam.security.acl;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lightweight immutable user built from the claims and authorities of the
+ * token, no user store has to be queried. Names of the authorities are
+ * extracted and sorted only once, when the principal is created.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class ClaimsPrincipal implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of the user, usually subject of the token
+     */
+    private final String username;
+    /**
+     * Authorities of the user
+     */
+    private final List<GrantedAuthority> authorities;
+    /**
+     * Sorted names of the authorities
+     */
+    private final List<String> authorityNames;
+    /**
+     * Claims of the token
+     */
+    private final Map<String, Object> claims;
+
+    /**
+     * Constructor.
+     *
+     * @param username    name of the user
+     * @param authorities authorities of the user
+     * @param claims      claims of the token
+     */
+    public ClaimsPrincipal(String username, Collection<? extends GrantedAuthority> authorities, Map<String, ?> claims) {
+        this.username = username;
+        this.authorities = Collections.unmodifiableList(new ArrayList<>(authorities));
+        this.claims = Collections.unmodifiableMap(new LinkedHashMap<>(claims));
+
+        List<String> names = new ArrayList<>(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            names.add(authority.getAuthority());
+        }
+        Collections.sort(names);
+        this.authorityNames = Collections.unmodifiableList(names);
+    }
+
+
+    /**
+     * Get claims of the token.
+     *
+     * @return unmodifiable map of claims
+     */
+    public Map<String, Object> getClaims() {
+        return claims;
+    }
+
+    /**
+     * Get claim of the token.
+     *
+     * @param name name of the claim
+     * @return value of the claim or null
+     */
+    public Object getClaim(String name) {
+        return claims.get(name);
+    }
+
+    /**
+     * Get sorted names of the authorities.
+     *
+     * @return unmodifiable list of names
+     */
+    List<String> getAuthorityNames() {
+        return authorityNames;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ClaimsPrincipal[" + username + ", " + authorityNames + "]";
+    }
+}
@@ -0,0 +1,111 @@
+package cz.polankam.security.acl;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Resolver which builds {@link ClaimsPrincipal} from the token
+ * authentication, e.g. JWT authentication of the resource server. Name of the
+ * user and authorities are taken from the authentication, claims are
+ * extracted by the given function. Principals are cached by the token
+ * together with the class of the authentication and the name of the user, so
+ * that authorities are extracted only once for every token and users sharing
+ * the same credentials never get each other's principal. Principals which are
+ * already user details are returned as they are.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class ClaimsPrincipalResolver implements PrincipalResolver {
+
+    /**
+     * Extractor of the claims from the authentication
+     */
+    private final Function<Authentication, Map<String, ?>> claimsExtractor;
+    /**
+     * Extractor of the key of the token, by which principals are cached
+     */
+    private final Function<Authentication, Object> tokenKey;
+    /**
+     * Maximal number of cached principals, cache is cleared when it is reached
+     */
+    private final int maxCached;
+    /**
+     * Cached principals indexed by the class of the authentication, the name
+     * of the user and the token key
+     */
+    private final Map<List<Object>, ClaimsPrincipal> principals = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, principals are cached by the credentials of the
+     * authentication, which is the token itself for the token authentications.
+     *
+     * @param claimsExtractor extractor of the claims from the authentication
+     * @param maxCached       maximal number of cached principals
+     */
+    public ClaimsPrincipalResolver(Function<Authentication, Map<String, ?>> claimsExtractor, int maxCached) {
+        this(claimsExtractor, Authentication::getCredentials, maxCached);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param claimsExtractor extractor of the claims from the authentication
+     * @param tokenKey        extractor of the key by which principals are cached,
+     *                        if it returns null principal is not cached
+     * @param maxCached       maximal number of cached principals
+     */
+    public ClaimsPrincipalResolver(Function<Authentication, Map<String, ?>> claimsExtractor,
+                                   Function<Authentication, Object> tokenKey, int maxCached) {
+        this.claimsExtractor = claimsExtractor;
+        this.tokenKey = tokenKey;
+        this.maxCached = maxCached;
+    }
+
+
+    @Override
+    public UserDetails resolve(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof UserDetails) {
+            return (UserDetails) authentication.getPrincipal();
+        }
+        if (!authentication.isAuthenticated()) {
+            return null;
+        }
+
+        Object key = tokenKey.apply(authentication);
+        if (key == null) {
+            return create(authentication);
+        }
+
+        List<Object> cacheKey = Arrays.asList(authentication.getClass(), authentication.getName(), key);
+        ClaimsPrincipal principal = principals.get(cacheKey);
+        if (principal == null) {
+            principal = create(authentication);
+            if (principals.size() >= maxCached) {
+                principals.clear();
+            }
+            principals.put(cacheKey, principal);
+        }
+        return principal;
+    }
+
+    /**
+     * Drop all cached principals.
+     */
+    public void clear() {
+        principals.clear();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private ClaimsPrincipal create(Authentication authentication) {
+        Map<String, ?> claims = claimsExtractor.apply(authentication);
+        return new ClaimsPrincipal(authentication.getName(), authentication.getAuthorities(),
+                claims != null ? claims : Map.of());
+    }
+}
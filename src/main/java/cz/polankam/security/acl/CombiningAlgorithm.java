@@ -0,0 +1,72 @@
+package cz.polankam.security.acl;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Algorithm which combines permission rules of all user roles into the single
+ * decision. Every algorithm is expressed as an order of the rules, evaluator
+ * then applies the first applicable rule in this order, which gives the
+ * earliest possible exit for every algorithm. Roles of the user are always
+ * ordered by their names, therefore the decision does not depend on the order
+ * of the user authorities.
+ * <p>
+ * Created by Martin Polanka
+ */
+public enum CombiningAlgorithm {
+
+    /**
+     * The first applicable rule decides, rules of the role precede the rules
+     * of its parent and roles are ordered by their names.
+     */
+    FIRST_APPLICABLE {
+        @Override
+        int rank(PermissionRule rule) {
+            return 0;
+        }
+    },
+    /**
+     * If any applicable rule denies the action, it is denied, unconditional
+     * deny rules are evaluated first.
+     */
+    DENY_OVERRIDES {
+        @Override
+        int rank(PermissionRule rule) {
+            return (rule.isAllowed() ? 2 : 0) + (rule.getCondition() != null ? 1 : 0);
+        }
+    },
+    /**
+     * If any applicable rule allows the action, it is allowed, unconditional
+     * allow rules are evaluated first.
+     */
+    PERMIT_OVERRIDES {
+        @Override
+        int rank(PermissionRule rule) {
+            return (rule.isAllowed() ? 0 : 2) + (rule.getCondition() != null ? 1 : 0);
+        }
+    };
+
+
+    /**
+     * Rank of the rule, rules with lower rank are evaluated first.
+     *
+     * @param rule permission rule
+     * @return rank of the rule
+     */
+    abstract int rank(PermissionRule rule);
+
+    /**
+     * Order given rules for this algorithm, the order is stable, therefore
+     * rules with the same rank keep their original order.
+     *
+     * @param rules entries in the order of the roles and rule declaration
+     * @param rule  extractor of the rule from the entry
+     * @param <T>   type of the entries
+     */
+    <T> void order(List<T> rules, Function<T, PermissionRule> rule) {
+        if (this != FIRST_APPLICABLE) {
+            rules.sort(Comparator.comparingInt(entry -> rank(rule.apply(entry))));
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package cz.polankam.security.acl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Permission rules of the set of roles compiled for the combining algorithm.
+ * Rules are ordered by the algorithm and indexed by the resource, so that the
+ * evaluator only walks the rules which match the checked resource.
+ * <p>
+ * Created by Martin Polanka
+ */
+final class CompiledPolicy {
+
+    private static final PermissionRule[] EMPTY = new PermissionRule[0];
+    private static final RuleStatistics.Counter[] NO_COUNTERS = new RuleStatistics.Counter[0];
+
+    /**
+     * Roles of the policy ordered by their names
+     */
+    private final List<Role> roles;
+    /**
+     * Algorithm for which the rules were ordered
+     */
+    private final CombiningAlgorithm algorithm;
+    /**
+     * Ordered rules applicable on the resource, including wildcard rules
+     */
+    private final Map<String, PermissionRule[]> rules;
+    /**
+     * Ordered wildcard rules, used for resources without any own rule
+     */
+    private final PermissionRule[] wildcardRules;
+    /**
+     * Counters of the ordered rules applicable on the resource, null if
+     * statistics are not collected
+     */
+    private final Map<String, RuleStatistics.Counter[]> counters;
+    /**
+     * Counters of the ordered wildcard rules, null if statistics are not collected
+     */
+    private final RuleStatistics.Counter[] wildcardCounters;
+    /**
+     * Roles and all their ancestors on which the policy depends
+     */
+    private final Role[] dependencies;
+    /**
+     * Revisions of the dependencies at the time of the compilation
+     */
+    private final int[] revisions;
+    /**
+     * Masking plans indexed by class of the objects, resource and action
+     */
+    private final Map<List<Object>, FieldMaskingPlan> maskingPlans = new ConcurrentHashMap<>();
+
+    private CompiledPolicy(List<Role> roles, CombiningAlgorithm algorithm, Map<String, PermissionRule[]> rules,
+                           PermissionRule[] wildcardRules, Map<String, RuleStatistics.Counter[]> counters,
+                           RuleStatistics.Counter[] wildcardCounters, Role[] dependencies, int[] revisions) {
+        this.roles = roles;
+        this.algorithm = algorithm;
+        this.rules = rules;
+        this.wildcardRules = wildcardRules;
+        this.counters = counters;
+        this.wildcardCounters = wildcardCounters;
+        this.dependencies = dependencies;
+        this.revisions = revisions;
+    }
+
+    /**
+     * Compile rules of the given roles for the given algorithm.
+     *
+     * @param roles     roles ordered by their names
+     * @param algorithm combining algorithm
+     * @return compiled policy
+     */
+    static CompiledPolicy compile(List<Role> roles, CombiningAlgorithm algorithm) {
+        return compile(roles, algorithm, false);
+    }
+
+    /**
+     * Compile rules of the given roles for the given algorithm. If statistics
+     * are collected, rules are bound to the counters of the roles which
+     * declare them and conditional rules with the same effect, which directly
+     * follow each other, are ordered by the number of their decisions. Such
+     * rules commute, the first one which is satisfied decides the same way as
+     * any other of them, therefore the order changes only the number of
+     * evaluated conditions.
+     *
+     * @param roles      roles ordered by their names
+     * @param algorithm  combining algorithm
+     * @param statistics true if statistics of the rules are collected
+     * @return compiled policy
+     */
+    static CompiledPolicy compile(List<Role> roles, CombiningAlgorithm algorithm, boolean statistics) {
+        // revisions are taken before the rules, roles are not changed while
+        // checks run, later changes of the rules make the policy outdated
+        List<Role> dependencies = new ArrayList<>();
+        for (Role role : roles) {
+            for (Role current = role; current != null; current = current.getParent()) {
+                if (!containsIdentical(dependencies, current)) {
+                    dependencies.add(current);
+                }
+            }
+        }
+        int[] revisions = new int[dependencies.size()];
+        for (int i = 0; i < revisions.length; i++) {
+            revisions[i] = dependencies.get(i).getRevision();
+        }
+
+        // rules of the role precede rules of its parent
+        List<Entry> ordered = new ArrayList<>();
+        for (Role role : roles) {
+            for (Role current = role; current != null; current = current.getParent()) {
+                for (PermissionRule rule : current.getOwnPermissionRules()) {
+                    ordered.add(new Entry(rule, statistics ? current.getStatistics().counter(rule) : null));
+                }
+            }
+        }
+        algorithm.order(ordered, entry -> entry.rule);
+        if (statistics) {
+            orderByDecisions(ordered);
+        }
+
+        Set<String> resources = new LinkedHashSet<>();
+        for (Entry entry : ordered) {
+            resources.add(entry.rule.getResource());
+        }
+        resources.remove(AclPermissionEvaluator.WILDCARD);
+
+        Map<String, PermissionRule[]> indexed = new HashMap<>();
+        Map<String, RuleStatistics.Counter[]> indexedCounters = statistics ? new HashMap<>() : null;
+        for (String resource : resources) {
+            List<Entry> selected = select(ordered, resource);
+            indexed.put(resource, rules(selected));
+            if (statistics) {
+                indexedCounters.put(resource, counters(selected));
+            }
+        }
+        List<Entry> wildcard = select(ordered, AclPermissionEvaluator.WILDCARD);
+        return new CompiledPolicy(Collections.unmodifiableList(new ArrayList<>(roles)), algorithm,
+                indexed, rules(wildcard), indexedCounters, statistics ? counters(wildcard) : null,
+                dependencies.toArray(new Role[0]), revisions);
+    }
+
+    /**
+     * Order runs of the conditional rules with the same effect by the number
+     * of their decisions, the most deciding rule goes first.
+     *
+     * @param ordered rules ordered by the combining algorithm
+     */
+    private static void orderByDecisions(List<Entry> ordered) {
+        int start = 0;
+        while (start < ordered.size()) {
+            int end = start + 1;
+            PermissionRule first = ordered.get(start).rule;
+            if (first.getCondition() != null) {
+                while (end < ordered.size() && ordered.get(end).rule.getCondition() != null &&
+                        ordered.get(end).rule.isAllowed() == first.isAllowed()) {
+                    end++;
+                }
+                if (end - start > 1) {
+                    // counters keep changing during the sort, which requires
+                    // consistent comparisons, therefore they are read once
+                    Map<Entry, Long> decisions = new IdentityHashMap<>();
+                    for (Entry entry : ordered.subList(start, end)) {
+                        decisions.put(entry, entry.counter.getDecisions());
+                    }
+                    // sort is stable, rules without difference keep their order
+                    ordered.subList(start, end).sort(
+                            Comparator.comparingLong((Entry entry) -> decisions.get(entry)).reversed());
+                }
+            }
+            start = end;
+        }
+    }
+
+    private static boolean containsIdentical(List<Role> roles, Role role) {
+        for (Role current : roles) {
+            if (current == role) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Entry> select(List<Entry> ordered, String resource) {
+        List<Entry> selected = new ArrayList<>();
+        for (Entry entry : ordered) {
+            if (entry.rule.getResource().equals(resource) ||
+                    entry.rule.getResource().equals(AclPermissionEvaluator.WILDCARD)) {
+                selected.add(entry);
+            }
+        }
+        return selected;
+    }
+
+    private static PermissionRule[] rules(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+        PermissionRule[] result = new PermissionRule[entries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = entries.get(i).rule;
+        }
+        return result;
+    }
+
+    private static RuleStatistics.Counter[] counters(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return NO_COUNTERS;
+        }
+        RuleStatistics.Counter[] result = new RuleStatistics.Counter[entries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = entries.get(i).counter;
+        }
+        return result;
+    }
+
+
+    /**
+     * Get roles of the policy ordered by their names.
+     *
+     * @return unmodifiable list of roles
+     */
+    List<Role> getRoles() {
+        return roles;
+    }
+
+    /**
+     * Get names of the roles and all their ancestors on which the policy
+     * depends.
+     *
+     * @return set of role names
+     */
+    Set<String> getDependencyNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Role dependency : dependencies) {
+            names.add(dependency.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Determine if rules of none of the roles and their ancestors were
+     * changed since the compilation.
+     *
+     * @return true if the policy is up to date
+     */
+    boolean isCurrent() {
+        for (int i = 0; i < dependencies.length; i++) {
+            if (dependencies[i].getRevision() != revisions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get algorithm for which the policy was compiled.
+     *
+     * @return combining algorithm
+     */
+    CombiningAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Get masking plan of the given class, resource and action, plan is
+     * compiled when it is needed for the first time.
+     *
+     * @param type     class of the masked objects
+     * @param resource textual representation of the resource
+     * @param action   action which has to be allowed on the visible fields
+     * @param compiler compiler of the plan
+     * @return masking plan
+     */
+    FieldMaskingPlan getMaskingPlan(Class<?> type, String resource, String action, Supplier<FieldMaskingPlan> compiler) {
+        return maskingPlans.computeIfAbsent(List.of(type, resource, action), ignored -> compiler.get());
+    }
+
+    /**
+     * Get ordered rules applicable on the given resource, the returned array
+     * must not be modified.
+     *
+     * @param resource textual representation of the resource
+     * @return ordered rules
+     */
+    PermissionRule[] getRules(String resource) {
+        PermissionRule[] result = rules.get(resource);
+        return result != null ? result : wildcardRules;
+    }
+
+    /**
+     * Get counters of the rules returned by {@link #getRules(String)}, the
+     * returned array must not be modified.
+     *
+     * @param resource textual representation of the resource
+     * @return counters with the same indices as rules, null if statistics are
+     * not collected
+     */
+    RuleStatistics.Counter[] getCounters(String resource) {
+        if (counters == null) {
+            return null;
+        }
+        RuleStatistics.Counter[] result = counters.get(resource);
+        return result != null ? result : wildcardCounters;
+    }
+
+    /**
+     * Rule together with the counter of its declaring role.
+     */
+    private static final class Entry {
+        private final PermissionRule rule;
+        private final RuleStatistics.Counter counter;
+
+        private Entry(PermissionRule rule, RuleStatistics.Counter counter) {
+            this.rule = rule;
+            this.counter = counter;
+        }
+    }
+}
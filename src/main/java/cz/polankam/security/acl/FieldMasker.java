@@ -0,0 +1,135 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+
+/**
+ * Masker of the fields of the objects, e.g. DTOs returned by the application,
+ * which hides the fields the user is not allowed to see. Every field is a
+ * level of the hierarchical resource below the resource of the object, e.g.
+ * field {@code email} of the {@code user} resource is the {@code user/email}
+ * resource, and it is visible if the action is allowed on it. Rules of the
+ * resource itself apply to all its fields unless they are overridden on the
+ * field, conditional rules of the resource are not applied, because the
+ * access to the object has to be checked separately. Fields which no rule
+ * allows or denies are hidden. Conditions of the field rules are evaluated on
+ * the masked object.
+ * <p>
+ * Masking plan is compiled only once for every class of the objects and set
+ * of the user roles, applying it to the whole collection then takes only one
+ * lookup. Hidden fields are set to null through their setters or directly,
+ * final fields without setters cannot be hidden, therefore records and other
+ * immutable types cannot be masked. Such classes are reported at startup by
+ * {@link #verify(Class[])}.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class FieldMasker {
+
+    /**
+     * Default action which has to be allowed on the visible fields
+     */
+    public static final String DEFAULT_ACTION = "view";
+
+    /**
+     * Permission evaluator which holds the compiled plans
+     */
+    private final AclPermissionEvaluator permissionEvaluator;
+    /**
+     * Action which has to be allowed on the visible fields
+     */
+    private final String action;
+
+    /**
+     * Constructor, fields are visible if the default action is allowed.
+     *
+     * @param permissionEvaluator permission evaluator
+     */
+    public FieldMasker(AclPermissionEvaluator permissionEvaluator) {
+        this(permissionEvaluator, DEFAULT_ACTION);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param permissionEvaluator permission evaluator
+     * @param action              action which has to be allowed on the visible fields
+     */
+    public FieldMasker(AclPermissionEvaluator permissionEvaluator, String action) {
+        this.permissionEvaluator = permissionEvaluator;
+        this.action = action;
+    }
+
+
+    /**
+     * Verify that all fields of the objects of the given classes can be
+     * hidden, it is meant to be called when the application is configured.
+     *
+     * @param types classes of the masked objects
+     * @return this
+     * @throws PermissionException if some field cannot be hidden
+     */
+    public FieldMasker verify(Class<?>... types) {
+        for (Class<?> type : types) {
+            FieldMaskingPlan.masked(type);
+        }
+        return this;
+    }
+
+    /**
+     * Hide fields of the given object which the user is not allowed to see.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param resource       textual representation of the resource of the object
+     * @param object         masked object, might be null
+     * @param <T>            type of the object
+     * @return given object
+     */
+    public <T> T mask(Authentication authentication, String resource, T object) {
+        if (object != null) {
+            UserDetails user = permissionEvaluator.resolveUser(authentication);
+            getPlan(user, object.getClass(), resource).apply(user, object);
+        }
+        return object;
+    }
+
+    /**
+     * Hide fields of all given objects which the user is not allowed to see,
+     * plan is looked up only once for all objects of the same class.
+     *
+     * @param authentication authentication containing currently logged user
+     * @param resource       textual representation of the resource of the objects
+     * @param objects        masked objects
+     * @param <C>            type of the collection
+     * @return given collection
+     */
+    public <C extends Collection<?>> C maskAll(Authentication authentication, String resource, C objects) {
+        UserDetails user = permissionEvaluator.resolveUser(authentication);
+        Class<?> type = null;
+        FieldMaskingPlan plan = null;
+        for (Object object : objects) {
+            if (object == null) {
+                continue;
+            }
+            if (object.getClass() != type) {
+                type = object.getClass();
+                plan = getPlan(user, type, resource);
+            }
+            plan.apply(user, object);
+        }
+        return objects;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private FieldMaskingPlan getPlan(UserDetails user, Class<?> type, String resource) {
+        if (user == null) {
+            // nobody is logged in, nothing can be seen
+            return FieldMaskingPlan.masked(type);
+        }
+        return permissionEvaluator.getMaskingPlan(user, type, resource, action);
+    }
+}
@@ -0,0 +1,255 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Plan of masking of the fields of the objects of one class for one set of
+ * roles. Fields which are always hidden and fields whose visibility depends
+ * on the conditions are resolved when the plan is compiled, together with
+ * method handles which clear them. Hidden fields are set to null, or to zero
+ * or false in case of primitives, through their setters or directly.
+ * <p>
+ * Created by Martin Polanka
+ */
+final class FieldMaskingPlan {
+
+    /**
+     * Type of all cached clearers, takes the object and clears the field
+     */
+    private static final MethodType CLEARER_TYPE = MethodType.methodType(void.class, Object.class);
+    /**
+     * Plans which hide all fields indexed by the class
+     */
+    private static final ClassValue<FieldMaskingPlan> MASKED = new ClassValue<>() {
+        @Override
+        protected FieldMaskingPlan computeValue(Class<?> type) {
+            return compile(type, field -> null);
+        }
+    };
+
+    /**
+     * Clearers of the fields which are always hidden
+     */
+    private final MethodHandle[] hidden;
+    /**
+     * Fields whose visibility depends on the conditions
+     */
+    private final ConditionalField[] conditional;
+
+
+    private FieldMaskingPlan(MethodHandle[] hidden, ConditionalField[] conditional) {
+        this.hidden = hidden;
+        this.conditional = conditional;
+    }
+
+
+    /**
+     * Compile plan of the given class. Field is visible only if the first
+     * rule which decides it allows it, field which no rule decides is hidden.
+     *
+     * @param type       class of the masked objects
+     * @param fieldRules ordered rules applicable on the field with given name,
+     *                   null if the field is always hidden
+     * @return compiled plan
+     * @throws PermissionException if some field which might be hidden cannot be cleared
+     */
+    static FieldMaskingPlan compile(Class<?> type, Function<String, List<PermissionRule>> fieldRules) {
+        List<MethodHandle> hidden = new ArrayList<>();
+        List<ConditionalField> conditional = new ArrayList<>();
+        List<String> immutable = new ArrayList<>();
+        for (Field field : fields(type)) {
+            List<PermissionRule> rules = fieldRules.apply(field.getName());
+            if (findSetter(type, field) == null && Modifier.isFinal(field.getModifiers()) &&
+                    (rules == null || !isAlwaysVisible(rules))) {
+                immutable.add(field.getName());
+                continue;
+            }
+            if (rules == null) {
+                hidden.add(clearer(type, field));
+                continue;
+            }
+
+            // conditional rules preceding the first unconditional rule have
+            // to be evaluated on every object
+            List<PermissionRule> conditions = new ArrayList<>();
+            boolean visible = false;
+            for (PermissionRule rule : rules) {
+                if (rule.getCondition() == null) {
+                    visible = rule.isAllowed();
+                    break;
+                }
+                conditions.add(rule);
+            }
+
+            if (!conditions.isEmpty()) {
+                conditional.add(new ConditionalField(clearer(type, field),
+                        conditions.toArray(new PermissionRule[0]), visible));
+            } else if (!visible) {
+                hidden.add(clearer(type, field));
+            }
+        }
+        if (!immutable.isEmpty()) {
+            throw new PermissionException("Fields " + immutable + " of '" + type.getName() +
+                    "' are final without setters and cannot be masked" +
+                    (type.isRecord() ? ", records cannot be masked" : ""));
+        }
+        return new FieldMaskingPlan(hidden.toArray(new MethodHandle[0]), conditional.toArray(new ConditionalField[0]));
+    }
+
+    /**
+     * Determine if the field with given rules is always visible, i.e. the
+     * first rule is unconditional and it allows the field.
+     */
+    private static boolean isAlwaysVisible(List<PermissionRule> rules) {
+        return !rules.isEmpty() && rules.get(0).getCondition() == null && rules.get(0).isAllowed();
+    }
+
+    /**
+     * Get plan which hides all fields of the given class.
+     *
+     * @param type class of the masked objects
+     * @return plan
+     */
+    static FieldMaskingPlan masked(Class<?> type) {
+        return MASKED.get(type);
+    }
+
+    /**
+     * Hide fields of the given object which the user is not allowed to see.
+     *
+     * @param user   currently logged user, null if there is none
+     * @param object masked object
+     */
+    void apply(UserDetails user, Object object) {
+        // conditions are evaluated on the object before any of its fields
+        // is cleared
+        boolean[] visible = new boolean[conditional.length];
+        for (int i = 0; i < conditional.length; i++) {
+            visible[i] = conditional[i].isVisible(user, object);
+        }
+
+        try {
+            for (MethodHandle clearer : hidden) {
+                clearer.invokeExact(object);
+            }
+            for (int i = 0; i < conditional.length; i++) {
+                if (!visible[i]) {
+                    conditional[i].clearer.invokeExact(object);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new PermissionException("Fields of '" + object.getClass().getName() +
+                    "' could not be masked: " + e.getMessage());
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static List<Field> fields(Class<?> type) {
+        List<Field> result = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    result.add(field);
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Resolve method handle which clears the field, setter is preferred.
+     *
+     * @param type  class of the masked objects
+     * @param field masked field
+     * @return method handle of the type {@link #CLEARER_TYPE}
+     */
+    private static MethodHandle clearer(Class<?> type, Field field) {
+        String name = field.getName();
+        Object empty = field.getType().isPrimitive() ? Array.get(Array.newInstance(field.getType(), 1), 0) : null;
+        Method method = findSetter(type, field);
+
+        try {
+            MethodHandle setter;
+            if (method != null) {
+                setter = MethodHandles.lookup().unreflect(method);
+            } else {
+                field.setAccessible(true);
+                setter = MethodHandles.lookup().unreflectSetter(field);
+            }
+            return MethodHandles.insertArguments(setter, 1, empty).asType(CLEARER_TYPE);
+        } catch (IllegalAccessException | InaccessibleObjectException e) {
+            throw new PermissionException("Field '" + name + "' of '" + type.getName() +
+                    "' is not accessible: " + e.getMessage());
+        }
+    }
+
+    private static Method findSetter(Class<?> type, Field field) {
+        String name = "set" + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        Method found;
+        try {
+            found = type.getMethod(name, field.getType());
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        if (Modifier.isStatic(found.getModifiers())) {
+            return null;
+        }
+
+        if (!Modifier.isPublic(found.getDeclaringClass().getModifiers())) {
+            // public method of not public class has to be made accessible
+            try {
+                found.setAccessible(true);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Field whose visibility depends on the conditions of the rules.
+     */
+    private static final class ConditionalField {
+        private final MethodHandle clearer;
+        private final PermissionRule[] rules;
+        private final boolean fallback;
+
+        private ConditionalField(MethodHandle clearer, PermissionRule[] rules, boolean fallback) {
+            this.clearer = clearer;
+            this.rules = rules;
+            this.fallback = fallback;
+        }
+
+        private boolean isVisible(UserDetails user, Object object) {
+            for (PermissionRule rule : rules) {
+                Boolean result = rule.getCondition().preCheck(user);
+                if (result == null) {
+                    result = rule.getCondition().test(user, object);
+                }
+                if (result) {
+                    return rule.isAllowed();
+                }
+            }
+            return fallback;
+        }
+    }
+}
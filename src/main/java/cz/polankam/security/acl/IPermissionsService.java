@@ -1,5 +1,8 @@
 package cz.polankam.security.acl;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * Used for management of user roles and privileges, should be the entry point
  * for adding or changing permission related stuff. It is the base for any other
@@ -33,4 +36,14 @@ public interface IPermissionsService {
      * @return repository from which resource object can be acquired
      */
     IResourceRepository getResource(String resource);
+
+    /**
+     * Get all roles defined within permission service, roles are analyzed by
+     * the {@link PolicyAnalyzer} at startup. Default implementation does not
+     * provide any roles, therefore no analysis is done.
+     * @return collection of all defined roles
+     */
+    default Collection<Role> getRoles() {
+        return Collections.emptyList();
+    }
 }
@@ -1,5 +1,9 @@
 package cz.polankam.security.acl;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -17,4 +21,36 @@ public interface IResourceRepository {
      * @return entity resource
      */
     Optional<Object> findById(Object id);
+
+    /**
+     * Find resource entities with given identifications in one go.
+     * Implementations might load all entities within one query, default
+     * implementation calls {@link #findById(Object)} for every identification.
+     *
+     * @param ids identifications of resources
+     * @return found entities indexed by their identifications, identifications
+     * of not existing resources are not present
+     */
+    default Map<Object, Object> findAllById(Collection<?> ids) {
+        Map<Object, Object> result = new HashMap<>();
+        for (Object id : ids) {
+            findById(id).ifPresent(entity -> result.put(id, entity));
+        }
+        return result;
+    }
+
+    /**
+     * Find resource entities of all levels of the given hierarchical resource
+     * path in one go, the path always ends with the resource of this
+     * repository. Implementations might load the whole chain of ancestors
+     * within one query. Default implementation does not support batch loading
+     * and returns empty optional, ancestors are then loaded one by one through
+     * their own repositories.
+     *
+     * @param path hierarchical resource path
+     * @return entities ordered from the root to the leaf of the path
+     */
+    default Optional<List<Object>> findPath(ResourcePath path) {
+        return Optional.empty();
+    }
 }
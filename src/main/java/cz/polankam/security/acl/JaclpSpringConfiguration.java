@@ -1,8 +1,18 @@
 package cz.polankam.security.acl;
 
+import cz.polankam.security.acl.method.AclPermissionAuthorizationManager;
+import cz.polankam.security.acl.method.AclPostFilterMethodInterceptor;
+import cz.polankam.security.acl.method.AuthorizedResourceMethodInterceptor;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Optional;
@@ -16,12 +26,71 @@ public class JaclpSpringConfiguration {
 
     @Bean
     @Autowired
-    public AclPermissionEvaluator aclPermissionEvaluator(IPermissionsService permissionsService, Optional<PlatformTransactionManager> transactionManager) {
-        return new AclPermissionEvaluator(permissionsService, transactionManager.orElse(null));
+    public AclPermissionEvaluator aclPermissionEvaluator(IPermissionsService permissionsService,
+                                                         Optional<PlatformTransactionManager> transactionManager,
+                                                         Optional<PrincipalResolver> principalResolver) {
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(permissionsService, transactionManager.orElse(null));
+        principalResolver.ifPresent(evaluator::setPrincipalResolver);
+        return evaluator;
     }
 
+    /**
+     * Analysis of the roles provided by the permission service, which is done
+     * after all singletons are initialized. Rules which can never decide with
+     * the combining algorithm of the evaluator are pruned and all findings are
+     * logged. Algorithm of the evaluator cannot be changed afterwards.
+     */
     @Bean
-    public AuthorizatorService authorizatorService(AclPermissionEvaluator permissionEvaluator) {
-        return new AuthorizatorService(permissionEvaluator);
+    public SmartInitializingSingleton aclPolicyAnalysis(IPermissionsService permissionsService,
+                                                        ObjectProvider<AclPermissionEvaluator> permissionEvaluator) {
+        return () -> {
+            AclPermissionEvaluator evaluator = permissionEvaluator.getObject();
+            CombiningAlgorithm algorithm = evaluator.getCombiningAlgorithm();
+            PolicyReport report = PolicyAnalyzer.prune(permissionsService.getRoles(), algorithm);
+            if (!report.getRemovable().isEmpty()) {
+                evaluator.rulesPruned(algorithm);
+            }
+            if (!report.isEmpty()) {
+                Log log = LogFactory.getLog(PolicyAnalyzer.class);
+                log.warn(report);
+            }
+        };
+    }
+
+    @Bean
+    public AuthorizatorService authorizatorService(AclPermissionEvaluator permissionEvaluator,
+                                                   Optional<BatchingPermissionEvaluator> batchingEvaluator) {
+        return new AuthorizatorService(permissionEvaluator, batchingEvaluator.orElse(null));
+    }
+
+    /**
+     * Advisor for methods annotated with {@link cz.polankam.security.acl.method.AclPermission},
+     * it is applied when method security is enabled. Evaluator is resolved
+     * lazily, so that it is not initialized before bean post processors.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor aclPermissionAuthorizationAdvisor(ObjectProvider<AclPermissionEvaluator> permissionEvaluator) {
+        return AclPermissionAuthorizationManager.interceptor(permissionEvaluator::getObject);
+    }
+
+    /**
+     * Advisor for methods annotated with {@link cz.polankam.security.acl.method.AclPostFilter},
+     * it is applied when method security is enabled.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor aclPostFilterAdvisor(ObjectProvider<AclPermissionEvaluator> permissionEvaluator) {
+        return new AclPostFilterMethodInterceptor(permissionEvaluator::getObject);
+    }
+
+    /**
+     * Advisor for method parameters annotated with {@link cz.polankam.security.acl.method.AuthorizedResource},
+     * it is applied when method security is enabled.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor authorizedResourceAdvisor(ObjectProvider<IPermissionsService> permissionsService) {
+        return new AuthorizedResourceMethodInterceptor(permissionsService::getObject);
     }
 }
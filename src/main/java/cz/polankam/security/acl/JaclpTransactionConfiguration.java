@@ -0,0 +1,34 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.method.AuthorizationTransactionInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Optional configuration which should be imported together with
+ * {@link JaclpSpringConfiguration}, all permission checks of the secured
+ * method invocation then share single read-only transaction instead of
+ * opening one transaction for every check.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Configuration
+public class JaclpTransactionConfiguration {
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static AuthorizationTransactionInterceptor aclAuthorizationTransactionAdvisor(ObjectProvider<PlatformTransactionManager> transactionManager) {
+        return new AuthorizationTransactionInterceptor(transactionManager::getObject);
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor aclAuthorizationTransactionSuspensionAdvisor(AuthorizationTransactionInterceptor interceptor) {
+        return interceptor.getSuspension();
+    }
+}
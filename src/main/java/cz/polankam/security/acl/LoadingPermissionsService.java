@@ -0,0 +1,538 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.conditions.PermissionCondition;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.invalidation.InvalidationEvent;
+import cz.polankam.security.acl.invalidation.InvalidationListener;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Permission service which loads roles from the backing store when they are
+ * needed for the first time. Loaded roles are kept in the bounded cache with
+ * the least recently used roles evicted first, parents of the cached roles are
+ * always used more recently than their descendants, so that they are never
+ * evicted before them. Concurrent requests for the same role wait for the
+ * single load.
+ * <p>
+ * Roles older than the refresh period are still returned, but they are
+ * reloaded in the background. Reloaded role which differs from the cached one
+ * replaces it together with all its cached descendants and compiled policies
+ * of the permission evaluator are compiled again. Conditions of the rules are
+ * compared structurally, lambdas created by the same expression with equal
+ * captured values and conditions combined from them are the same, so the
+ * loader does not have to reuse condition instances. Changes of the roles can be
+ * also published as role invalidation events, cached role is then dropped and
+ * loaded again with the next request. Loads which were in progress when the
+ * role was invalidated are not cached. Parents of the roles cannot form a
+ * cycle, load of such role fails.
+ * <p>
+ * Roles are not known in advance, therefore they are not analyzed at startup.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class LoadingPermissionsService implements IPermissionsService, InvalidationListener {
+
+    /**
+     * Loader of the roles from the backing store
+     */
+    private final RoleLoader loader;
+    /**
+     * Resource repositories indexed by resource textual representation
+     */
+    private final Map<String, IResourceRepository> resources;
+    /**
+     * Maximal number of cached roles, including not existing ones
+     */
+    private final int maxRoles;
+    /**
+     * Time after which the cached role is refreshed
+     */
+    private final long refreshNanos;
+    /**
+     * Executor of the background refreshes
+     */
+    private final Executor executor;
+    /**
+     * Source of the current time in nanoseconds
+     */
+    private final LongSupplier clock;
+    /**
+     * Cached roles in the access order, guarded by itself
+     */
+    private final LinkedHashMap<String, Entry> roles = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Loads and refreshes in progress indexed by role names
+     */
+    private final Map<String, CompletableFuture<Role>> loading = new ConcurrentHashMap<>();
+    /**
+     * Names of the roles loaded by the current thread, used to detect cycles
+     * of the parents
+     */
+    private final ThreadLocal<Set<String>> loadingNames = ThreadLocal.withInitial(HashSet::new);
+    /**
+     * Number of invalidations, roles loaded while the roles were invalidated
+     * are not cached
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Constructor, roles are refreshed in the dedicated background thread.
+     *
+     * @param loader        loader of the roles from the backing store
+     * @param resources     resource repositories indexed by resource textual representation
+     * @param maxRoles      maximal number of cached roles
+     * @param refreshPeriod time after which the cached role is refreshed
+     */
+    public LoadingPermissionsService(RoleLoader loader, Map<String, IResourceRepository> resources, int maxRoles,
+                                     Duration refreshPeriod) {
+        this(loader, resources, maxRoles, refreshPeriod, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jaclp-role-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param loader        loader of the roles from the backing store
+     * @param resources     resource repositories indexed by resource textual representation
+     * @param maxRoles      maximal number of cached roles
+     * @param refreshPeriod time after which the cached role is refreshed
+     * @param executor      executor of the background refreshes
+     */
+    public LoadingPermissionsService(RoleLoader loader, Map<String, IResourceRepository> resources, int maxRoles,
+                                     Duration refreshPeriod, Executor executor) {
+        this(loader, resources, maxRoles, refreshPeriod, executor, System::nanoTime);
+    }
+
+    LoadingPermissionsService(RoleLoader loader, Map<String, IResourceRepository> resources, int maxRoles,
+                              Duration refreshPeriod, Executor executor, LongSupplier clock) {
+        if (maxRoles <= 0) {
+            throw new IllegalArgumentException("Maximal number of roles has to be positive");
+        }
+        this.loader = loader;
+        this.resources = new HashMap<>(resources);
+        this.maxRoles = maxRoles;
+        this.refreshNanos = refreshPeriod.toNanos();
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+
+    @Override
+    public boolean roleExists(String role) {
+        return getRole(role) != null;
+    }
+
+    @Override
+    public Role getRole(String roleString) {
+        if (roleString == null) {
+            return null;
+        }
+
+        Entry entry;
+        synchronized (roles) {
+            entry = roles.get(roleString);
+            if (entry != null) {
+                touchParents(entry.role);
+            }
+        }
+        if (entry == null) {
+            return load(roleString);
+        }
+
+        if (clock.getAsLong() - entry.loaded > refreshNanos) {
+            refresh(roleString, entry);
+        }
+        return entry.role;
+    }
+
+    @Override
+    public IResourceRepository getResource(String resource) {
+        IResourceRepository repository = resources.get(resource);
+        if (repository == null) {
+            throw new PermissionException("Resource '" + resource + "' not found");
+        }
+
+        return repository;
+    }
+
+    /**
+     * Role events drop the cached role together with its descendants, events
+     * without the role drop all cached roles.
+     *
+     * @param events invalidation events
+     */
+    @Override
+    public void invalidate(Collection<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            if (event.getKind() == InvalidationEvent.Kind.ALL) {
+                clear();
+                return;
+            }
+            if (event.getKind() == InvalidationEvent.Kind.ROLE) {
+                invalidate(event.getKey());
+            }
+        }
+    }
+
+    /**
+     * Drop cached role with the given name together with all its cached
+     * descendants, the role is loaded again with the next request.
+     *
+     * @param role textual role representation
+     */
+    public void invalidate(String role) {
+        List<Role> retired = new ArrayList<>();
+        synchronized (roles) {
+            invalidations.incrementAndGet();
+            Entry entry = roles.remove(role);
+            if (entry != null) {
+                retire(entry.role, retired);
+            }
+        }
+        retired.forEach(Role::retire);
+    }
+
+    /**
+     * Drop all cached roles.
+     */
+    public void clear() {
+        List<Role> retired = new ArrayList<>();
+        synchronized (roles) {
+            invalidations.incrementAndGet();
+            for (Entry entry : roles.values()) {
+                if (entry.role != null) {
+                    retired.add(entry.role);
+                }
+            }
+            roles.clear();
+        }
+        retired.forEach(Role::retire);
+    }
+
+    /**
+     * Get number of cached roles.
+     *
+     * @return number of roles, including not existing ones
+     */
+    public int getRoleCount() {
+        synchronized (roles) {
+            return roles.size();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Load role which is not cached, only one thread loads the role and all
+     * the others wait for its result.
+     *
+     * @param name role name
+     * @return loaded role or null
+     * @throws PermissionException if the role is its own ancestor
+     */
+    private Role load(String name) {
+        if (loadingNames.get().contains(name)) {
+            // waiting for the own load would never finish
+            throw new PermissionException("Role '" + name + "' is its own ancestor");
+        }
+
+        CompletableFuture<Role> future = new CompletableFuture<>();
+        CompletableFuture<Role> existing = loading.putIfAbsent(name, future);
+        if (existing != null) {
+            return join(existing);
+        }
+
+        try {
+            Entry entry;
+            long generation;
+            synchronized (roles) {
+                entry = roles.get(name);
+                generation = invalidations.get();
+            }
+            // role might have been loaded before this load was registered
+            Role role = entry != null ? entry.role : install(name, loadFromStore(name), generation);
+            future.complete(role);
+            return role;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(name, future);
+        }
+    }
+
+    /**
+     * Reload cached role in the background, if the role is already being
+     * loaded, nothing is done.
+     *
+     * @param name  role name
+     * @param entry current cache entry of the role
+     */
+    private void refresh(String name, Entry entry) {
+        CompletableFuture<Role> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(name, future) != null) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    long generation = invalidations.get();
+                    future.complete(install(name, loadFromStore(name), generation));
+                } catch (RuntimeException e) {
+                    // keep serving the cached role and try again after the refresh period
+                    entry.loaded = clock.getAsLong();
+                    future.completeExceptionally(e);
+                } finally {
+                    loading.remove(name, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loading.remove(name, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Load role from the backing store, name of the role is remembered during
+     * the load, so that the cycles of the parents are detected.
+     *
+     * @param name role name
+     * @return loaded role or null
+     */
+    private Role loadFromStore(String name) {
+        Set<String> names = loadingNames.get();
+        names.add(name);
+        try {
+            return loader.load(name, this);
+        } finally {
+            names.remove(name);
+        }
+    }
+
+    /**
+     * Put loaded role into the cache. If the cached role has the same parent
+     * and rules, it is kept and only its load time is updated, otherwise it
+     * is replaced and retired together with its descendants. If any role was
+     * invalidated since the load started, the loaded role might be outdated
+     * and it is not cached.
+     *
+     * @param name       role name
+     * @param role       loaded role, might be null
+     * @param generation number of invalidations before the load started
+     * @return role which is cached or loaded role if it is not cached
+     */
+    private Role install(String name, Role role, long generation) {
+        long now = clock.getAsLong();
+        List<Role> retired = new ArrayList<>();
+        try {
+            synchronized (roles) {
+                if (invalidations.get() != generation) {
+                    return role;
+                }
+                Entry current = roles.get(name);
+                if (current != null && isSame(current.role, role)) {
+                    current.loaded = now;
+                    touchParents(current.role);
+                    return current.role;
+                }
+                if (current != null) {
+                    retire(current.role, retired);
+                }
+
+                roles.put(name, new Entry(role, now));
+                touchParents(role);
+                Iterator<Entry> iterator = roles.values().iterator();
+                while (roles.size() > maxRoles) {
+                    Entry eldest = iterator.next();
+                    iterator.remove();
+                    if (eldest.role != null) {
+                        retired.add(eldest.role);
+                    }
+                }
+                return role;
+            }
+        } finally {
+            retired.forEach(Role::retire);
+        }
+    }
+
+    /**
+     * Use all cached parents of the given role, so that they are more
+     * recently used than the role. Has to be called with the lock held.
+     *
+     * @param role role, might be null
+     */
+    private void touchParents(Role role) {
+        for (Role parent = role != null ? role.getParent() : null; parent != null; parent = parent.getParent()) {
+            roles.get(parent.getName());
+        }
+    }
+
+    /**
+     * Remove cached descendants of the given role and collect them together
+     * with the role for retirement. Has to be called with the lock held.
+     *
+     * @param role    replaced role, might be null
+     * @param retired collection of retired roles
+     */
+    private void retire(Role role, List<Role> retired) {
+        if (role == null) {
+            return;
+        }
+
+        retired.add(role);
+        Iterator<Entry> iterator = roles.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.role != null && isDescendant(entry.role, role)) {
+                iterator.remove();
+                retired.add(entry.role);
+            }
+        }
+    }
+
+    private static boolean isDescendant(Role role, Role ancestor) {
+        for (Role parent = role.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSame(Role cached, Role loaded) {
+        if (cached == null || loaded == null) {
+            return cached == loaded;
+        }
+        if (cached.getParent() != loaded.getParent()) {
+            return false;
+        }
+
+        List<PermissionRule> cachedRules = cached.getOwnPermissionRules();
+        List<PermissionRule> loadedRules = loaded.getOwnPermissionRules();
+        if (cachedRules.size() != loadedRules.size()) {
+            return false;
+        }
+        for (int i = 0; i < cachedRules.size(); i++) {
+            PermissionRule cachedRule = cachedRules.get(i);
+            PermissionRule loadedRule = loadedRules.get(i);
+            if (cachedRule.isAllowed() != loadedRule.isAllowed() ||
+                    !cachedRule.getResource().equals(loadedRule.getResource()) ||
+                    !cachedRule.getActions().equals(loadedRule.getActions()) ||
+                    !isSameValue(cachedRule.getCondition(), loadedRule.getCondition())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare values equal by their equals method, conditions and lambdas
+     * which do not define it are compared by the values of their fields, i.e.
+     * the values captured by the lambdas. If the fields cannot be read, the
+     * values are different.
+     *
+     * @param first  first value
+     * @param second second value
+     * @return true if the values are the same
+     */
+    private static boolean isSameValue(Object first, Object second) {
+        if (Objects.equals(first, second)) {
+            return true;
+        }
+        if (first == null || second == null || first.getClass() != second.getClass()) {
+            return false;
+        }
+
+        Class<?> type = first.getClass();
+        if (type.isArray()) {
+            if (type.getComponentType().isPrimitive()) {
+                return Objects.deepEquals(first, second);
+            }
+            Object[] firstArray = (Object[]) first;
+            Object[] secondArray = (Object[]) second;
+            if (firstArray.length != secondArray.length) {
+                return false;
+            }
+            for (int i = 0; i < firstArray.length; i++) {
+                if (!isSameValue(firstArray[i], secondArray[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (!(first instanceof PermissionCondition) && !type.isSynthetic()) {
+            return false;
+        }
+
+        try {
+            if (type.getMethod("equals", Object.class).getDeclaringClass() != Object.class) {
+                // own equals already said they differ
+                return false;
+            }
+            for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    if (!isSameValue(field.get(first), field.get(second))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static Role join(CompletableFuture<Role> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cached role, null if the role does not exist.
+     */
+    private static final class Entry {
+        private final Role role;
+        private volatile long loaded;
+
+        private Entry(Role role, long loaded) {
+            this.role = role;
+            this.loaded = loaded;
+        }
+    }
+}
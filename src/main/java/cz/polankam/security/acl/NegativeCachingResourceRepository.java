@@ -0,0 +1,267 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.invalidation.InvalidationEvent;
+import cz.polankam.security.acl.invalidation.InvalidationListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Resource repository decorator which remembers identifications of the
+ * resources which were not found for a short time. Repeated checks of not
+ * existing resources then fail fast without calling the delegate. Optionally
+ * identifications can be pre-screened by {@link BloomFilter} filled with all
+ * existing identifications, then identifications which were never put into
+ * the filter are not looked up at all.
+ * <p>
+ * Whenever new resource is created, {@link #created(Object)} has to be
+ * called, or the decorator has to be subscribed to the invalidation bus and
+ * resource invalidation event has to be published. Buses which deliver the
+ * events of other nodes as text, e.g.
+ * {@link cz.polankam.security.acl.invalidation.FileInvalidationBus}, need
+ * identification converter, see {@link #setIdConverter(Function)}.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class NegativeCachingResourceRepository implements IResourceRepository, InvalidationListener {
+
+    /**
+     * Decorated repository
+     */
+    private final IResourceRepository delegate;
+    /**
+     * Textual representation of the resource of the repository
+     */
+    private final String resource;
+    /**
+     * Time for which the missing identification is remembered
+     */
+    private final long ttlNanos;
+    /**
+     * Maximal number of remembered identifications
+     */
+    private final int maxEntries;
+    /**
+     * Source of the current time in nanoseconds
+     */
+    private final LongSupplier clock;
+    /**
+     * Expiration times of the missing identifications
+     */
+    private final Map<Object, Long> missing = new ConcurrentHashMap<>();
+    /**
+     * Number of creations, misses of the lookups which started before a
+     * creation are not remembered
+     */
+    private final AtomicLong creations = new AtomicLong();
+    /**
+     * Filter of existing identifications, might be null
+     */
+    private volatile BloomFilter bloomFilter;
+    /**
+     * Converter of the identifications of the invalidation events
+     */
+    private volatile Function<Object, ?> idConverter = Function.identity();
+
+    /**
+     * Constructor.
+     *
+     * @param delegate   decorated repository
+     * @param resource   textual representation of the resource, used for invalidation events
+     * @param ttl        time for which the missing identification is remembered
+     * @param maxEntries maximal number of remembered identifications
+     */
+    public NegativeCachingResourceRepository(IResourceRepository delegate, String resource, Duration ttl, int maxEntries) {
+        this(delegate, resource, ttl, maxEntries, System::nanoTime);
+    }
+
+    NegativeCachingResourceRepository(IResourceRepository delegate, String resource, Duration ttl, int maxEntries,
+                                      LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximal number of entries has to be positive");
+        }
+        this.delegate = delegate;
+        this.resource = resource;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+
+    /**
+     * Set filter of all existing identifications, identifications which are
+     * not in the filter are reported as not found without calling the
+     * delegate. Filter is given all created identifications.
+     *
+     * @param bloomFilter filter, if null pre-screening is not used
+     */
+    public void setBloomFilter(BloomFilter bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * Set converter of the identifications carried by the invalidation events
+     * to the identifications used by the repository, e.g.
+     * {@code id -> Long.valueOf(id.toString())}. Converter is given both
+     * identifications published locally and the ones received from the other
+     * nodes.
+     *
+     * @param idConverter converter of the identifications
+     */
+    public void setIdConverter(Function<Object, ?> idConverter) {
+        this.idConverter = Objects.requireNonNull(idConverter);
+    }
+
+    @Override
+    public Optional<Object> findById(Object id) {
+        BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(id)) {
+            return Optional.empty();
+        }
+
+        long now = clock.getAsLong();
+        Long expiration = missing.get(id);
+        if (expiration != null) {
+            if (expiration - now > 0) {
+                return Optional.empty();
+            }
+            missing.remove(id, expiration);
+        }
+
+        long creation = creations.get();
+        Optional<Object> result = delegate.findById(id);
+        if (result.isEmpty() && id != null) {
+            remember(id, now, creation);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Object, Object> findAllById(Collection<?> ids) {
+        BloomFilter filter = bloomFilter;
+        long now = clock.getAsLong();
+        List<Object> remaining = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            if (filter != null && !filter.mightContain(id)) {
+                continue;
+            }
+            Long expiration = id != null ? missing.get(id) : null;
+            if (expiration != null) {
+                if (expiration - now > 0) {
+                    continue;
+                }
+                missing.remove(id, expiration);
+            }
+            remaining.add(id);
+        }
+        if (remaining.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        long creation = creations.get();
+        Map<Object, Object> result = delegate.findAllById(remaining);
+        for (Object id : remaining) {
+            if (id != null && !result.containsKey(id)) {
+                remember(id, now, creation);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<List<Object>> findPath(ResourcePath path) {
+        return delegate.findPath(path);
+    }
+
+    /**
+     * Notify the repository that the resource with given identification was
+     * created, it is forgotten as missing and put into the filter.
+     *
+     * @param id identification of the created resource
+     */
+    public void created(Object id) {
+        BloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.put(id);
+        }
+        creations.incrementAndGet();
+        if (id != null) {
+            missing.remove(id);
+        }
+    }
+
+    /**
+     * Forget all missing identifications.
+     */
+    public void clear() {
+        creations.incrementAndGet();
+        missing.clear();
+    }
+
+    /**
+     * Events of the resource of this repository are treated as creations of
+     * the resources, events without identification forget all missing
+     * identifications.
+     *
+     * @param events invalidation events
+     */
+    @Override
+    public void invalidate(Collection<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            if (event.getKind() == InvalidationEvent.Kind.ALL ||
+                    (event.getKind() == InvalidationEvent.Kind.RESOURCE && event.getKey().equals(resource) &&
+                            event.getId() == null)) {
+                clear();
+            } else if (event.getKind() == InvalidationEvent.Kind.RESOURCE && event.getKey().equals(resource)) {
+                created(idConverter.apply(event.getId()));
+            }
+        }
+    }
+
+    /**
+     * Get number of remembered missing identifications.
+     *
+     * @return number of identifications, including expired ones
+     */
+    public int getMissingCount() {
+        return missing.size();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Remember missing identification. If a resource was created since the
+     * lookup started, it might be the one which was not found, so the
+     * identification is forgotten again. Creation increments the counter
+     * before it forgets the identification, so either the creation or this
+     * check removes it.
+     *
+     * @param id       missing identification
+     * @param now      time of the lookup
+     * @param creation number of creations before the lookup started
+     */
+    private void remember(Object id, long now, long creation) {
+        if (missing.size() >= maxEntries) {
+            missing.values().removeIf(expiration -> expiration - now <= 0);
+            if (missing.size() >= maxEntries) {
+                // still full, start from scratch rather than growing
+                missing.clear();
+            }
+        }
+        Long expiration = now + ttlNanos;
+        missing.put(id, expiration);
+        if (creations.get() != creation) {
+            missing.remove(id, expiration);
+        }
+    }
+}
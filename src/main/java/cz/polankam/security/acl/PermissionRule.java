@@ -4,6 +4,7 @@ import cz.polankam.security.acl.conditions.PermissionCondition;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Permission rule which should be applied for the given resource and action on
@@ -99,4 +100,44 @@ public class PermissionRule {
     public PermissionCondition<Object> getCondition() {
         return condition;
     }
+
+    /**
+     * Get shared immutable permission rule with given parameters, equal rules
+     * created by this method are represented by the same instance.
+     *
+     * @param isAllowed if the action on the resource is allowed or not
+     * @param resource  resource for which the rule should be applied
+     * @param actions   list of actions for which the rule should be applied
+     * @param condition condition applied to resource object, might be null
+     * @return shared permission rule
+     */
+    public static <T> PermissionRule intern(boolean isAllowed, String resource, List<String> actions, PermissionCondition<T> condition) {
+        return RuleInterner.intern(isAllowed, resource, actions, condition);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PermissionRule other = (PermissionRule) o;
+        return isAllowed == other.isAllowed &&
+                Objects.equals(resource, other.resource) &&
+                Objects.equals(actions, other.actions) &&
+                Objects.equals(condition, other.condition);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(isAllowed, resource, actions, condition);
+    }
+
+    @Override
+    public String toString() {
+        return (isAllowed ? "allow " : "deny ") + resource + " " + actions +
+                (condition != null ? " with condition" : "");
+    }
 }
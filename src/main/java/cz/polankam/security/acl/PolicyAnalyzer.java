@@ -0,0 +1,286 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.PolicyReport.Finding;
+import cz.polankam.security.acl.PolicyReport.Kind;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Static analysis of the roles and their permission rules. Rules of the role
+ * are checked in the order in which the evaluator with the given combining
+ * algorithm applies them and rules which can never decide any check are
+ * reported, these are the rules without actions, rules covered by an earlier
+ * rule and duplicates of the rules of the parents. Rules with the same
+ * condition which could be merged are reported as well. Rules which never
+ * decide can be pruned from the roles, so that the evaluator scans less rules
+ * on every check.
+ * <p>
+ * Only rules declared directly in the analyzed role are subject of findings,
+ * rules of the parents are reported when the parent itself is analyzed.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class PolicyAnalyzer {
+
+    private PolicyAnalyzer() {
+        // nothing to see here
+    }
+
+
+    /**
+     * Analyze given role and all its parents, rules are applied in the order
+     * of the first applicable algorithm.
+     *
+     * @param role analyzed role
+     * @return report with findings
+     */
+    public static PolicyReport analyze(Role role) {
+        return analyze(Collections.singletonList(role));
+    }
+
+    /**
+     * Analyze given roles and all their parents, every role is analyzed only
+     * once even if it is parent of multiple roles. Rules are applied in the
+     * order of the first applicable algorithm.
+     *
+     * @param roles analyzed roles
+     * @return report with findings
+     */
+    public static PolicyReport analyze(Collection<Role> roles) {
+        return analyze(roles, CombiningAlgorithm.FIRST_APPLICABLE);
+    }
+
+    /**
+     * Analyze given roles and all their parents, rules are applied in the
+     * order given by the combining algorithm.
+     *
+     * @param roles     analyzed roles
+     * @param algorithm combining algorithm of the evaluator
+     * @return report with findings
+     */
+    public static PolicyReport analyze(Collection<Role> roles, CombiningAlgorithm algorithm) {
+        List<Finding> findings = new ArrayList<>();
+        for (Role role : withAncestors(roles)) {
+            analyzeRole(role, algorithm, findings);
+        }
+        return new PolicyReport(findings);
+    }
+
+    /**
+     * Analyze given roles and remove all rules which can never decide any
+     * check under the first applicable algorithm from them.
+     *
+     * @param roles analyzed roles
+     * @return report with findings, removable ones were already removed
+     */
+    public static PolicyReport prune(Collection<Role> roles) {
+        return prune(roles, CombiningAlgorithm.FIRST_APPLICABLE);
+    }
+
+    /**
+     * Analyze given roles and remove all rules which can never decide any
+     * check under the given combining algorithm from them. Decisions of the
+     * evaluator with the same algorithm are not changed by the pruning, the
+     * algorithm must not be changed afterwards.
+     *
+     * @param roles     analyzed roles
+     * @param algorithm combining algorithm of the evaluator
+     * @return report with findings, removable ones were already removed
+     */
+    public static PolicyReport prune(Collection<Role> roles, CombiningAlgorithm algorithm) {
+        PolicyReport report = analyze(roles, algorithm);
+        for (Finding finding : report.getRemovable()) {
+            finding.getRole().removePermissionRule(finding.getRule());
+        }
+        return report;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static List<Role> withAncestors(Collection<Role> roles) {
+        Set<Role> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Role> result = new ArrayList<>();
+        for (Role role : roles) {
+            for (Role current = role; current != null && visited.add(current); current = current.getParent()) {
+                result.add(current);
+            }
+        }
+        return result;
+    }
+
+    private static void analyzeRole(Role role, CombiningAlgorithm algorithm, List<Finding> findings) {
+        List<PermissionRule> own = role.getOwnPermissionRules();
+        // own rules precede the rules of the parents, which is the order in
+        // which the evaluator applies them before the algorithm orders them,
+        // the algorithm keeps the relative order of the rules of the same rank
+        List<PermissionRule> declared = role.getPermissionRules();
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < declared.size(); i++) {
+            order.add(i);
+        }
+        algorithm.order(order, declared::get);
+
+        List<PermissionRule> effective = new ArrayList<>(declared.size());
+        boolean[] inherited = new boolean[declared.size()];
+        int[] positions = new int[own.size()];
+        for (int position = 0; position < order.size(); position++) {
+            int index = order.get(position);
+            effective.add(declared.get(index));
+            inherited[position] = index >= own.size();
+            if (index < own.size()) {
+                positions[index] = position;
+            }
+        }
+
+        for (int i = 0; i < own.size(); i++) {
+            PermissionRule rule = own.get(i);
+            if (rule.getActions().isEmpty()) {
+                findings.add(new Finding(Kind.UNREACHABLE, role, rule, null, true));
+                continue;
+            }
+
+            Finding finding = findShadowing(role, effective, positions[i]);
+            if (finding == null) {
+                finding = findInheritedDuplicate(role, effective, inherited, positions[i]);
+            }
+            if (finding == null) {
+                finding = findMergeable(role, own, i);
+            }
+            if (finding != null) {
+                findings.add(finding);
+            }
+        }
+    }
+
+    /**
+     * Find an earlier rule which decides every check which the rule at the
+     * given index could decide.
+     */
+    private static Finding findShadowing(Role role, List<PermissionRule> rules, int index) {
+        PermissionRule rule = rules.get(index);
+        for (int j = 0; j < index; j++) {
+            PermissionRule earlier = rules.get(j);
+            if (!covers(earlier, rule)) {
+                continue;
+            }
+
+            // unconditional rule always decides, the same condition
+            // is evaluated with the same result on the same resource
+            if (earlier.getCondition() == null || Objects.equals(earlier.getCondition(), rule.getCondition())) {
+                Kind kind = isSame(earlier, rule) ? Kind.DUPLICATE : Kind.SHADOWED;
+                return new Finding(kind, role, rule, earlier, true);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the same rule in the parents, the rule can be removed only if no
+     * rule in between could decide any check which the rule decides.
+     */
+    private static Finding findInheritedDuplicate(Role role, List<PermissionRule> rules, boolean[] inherited, int index) {
+        PermissionRule rule = rules.get(index);
+        for (int k = index + 1; k < rules.size(); k++) {
+            if (!inherited[k] || !isSame(rules.get(k), rule)) {
+                continue;
+            }
+
+            boolean removable = true;
+            for (int j = index + 1; j < k; j++) {
+                if (overlaps(rules.get(j), rule)) {
+                    removable = false;
+                    break;
+                }
+            }
+            return new Finding(Kind.DUPLICATE, role, rule, rules.get(k), removable);
+        }
+        return null;
+    }
+
+    /**
+     * Find an earlier rule with the same condition, resource and effect, but
+     * different actions, such rules can be merged into one.
+     */
+    private static Finding findMergeable(Role role, List<PermissionRule> own, int index) {
+        PermissionRule rule = own.get(index);
+        if (rule.getCondition() == null) {
+            return null;
+        }
+
+        for (int j = 0; j < index; j++) {
+            PermissionRule earlier = own.get(j);
+            if (Objects.equals(earlier.getCondition(), rule.getCondition()) &&
+                    earlier.isAllowed() == rule.isAllowed() &&
+                    Objects.equals(earlier.getResource(), rule.getResource())) {
+                return new Finding(Kind.MERGEABLE, role, rule, earlier, false);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determine if the first rule matches every check which the second rule
+     * matches. It has to hold for flat resources, where the wildcard matches
+     * any resource, and for hierarchical ones, where it matches one level.
+     */
+    private static boolean covers(PermissionRule first, PermissionRule second) {
+        boolean resourceCovered = Objects.equals(first.getResource(), second.getResource()) ||
+                (AclPermissionEvaluator.WILDCARD.equals(first.getResource()) &&
+                        !second.getResource().contains(ResourcePath.SEPARATOR));
+        if (!resourceCovered) {
+            return false;
+        }
+
+        return first.getActions().contains(AclPermissionEvaluator.WILDCARD) ||
+                first.getActions().containsAll(second.getActions());
+    }
+
+    /**
+     * Determine if there might be a check matched by both rules, the result
+     * is conservative and might be true even if there is no such check.
+     */
+    private static boolean overlaps(PermissionRule first, PermissionRule second) {
+        boolean actionsOverlap = first.getActions().contains(AclPermissionEvaluator.WILDCARD) ||
+                second.getActions().contains(AclPermissionEvaluator.WILDCARD) ||
+                !Collections.disjoint(first.getActions(), second.getActions());
+        if (!actionsOverlap) {
+            return false;
+        }
+
+        String firstResource = first.getResource();
+        String secondResource = second.getResource();
+        if (firstResource.equals(secondResource) ||
+                firstResource.equals(AclPermissionEvaluator.WILDCARD) ||
+                secondResource.equals(AclPermissionEvaluator.WILDCARD)) {
+            return true;
+        }
+
+        String[] firstLevels = firstResource.split(ResourcePath.SEPARATOR);
+        String[] secondLevels = secondResource.split(ResourcePath.SEPARATOR);
+        if (firstLevels.length != secondLevels.length) {
+            return false;
+        }
+        for (int i = 0; i < firstLevels.length; i++) {
+            if (!firstLevels[i].equals(secondLevels[i]) &&
+                    !firstLevels[i].equals(AclPermissionEvaluator.WILDCARD) &&
+                    !secondLevels[i].equals(AclPermissionEvaluator.WILDCARD)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSame(PermissionRule first, PermissionRule second) {
+        return first.isAllowed() == second.isAllowed() &&
+                Objects.equals(first.getCondition(), second.getCondition()) &&
+                Objects.equals(first.getResource(), second.getResource()) &&
+                new HashSet<>(first.getActions()).equals(new HashSet<>(second.getActions()));
+    }
+}
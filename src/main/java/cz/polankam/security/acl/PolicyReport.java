@@ -0,0 +1,185 @@
+package cz.polankam.security.acl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the analysis of roles done by the {@link PolicyAnalyzer}, it
+ * contains findings about rules which can never decide or which could be
+ * written in a simpler way.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class PolicyReport {
+
+    /**
+     * Kind of the analysis finding.
+     */
+    public enum Kind {
+        /**
+         * Rule has no actions, therefore it can never match any check
+         */
+        UNREACHABLE,
+        /**
+         * Rule is fully covered by an earlier rule which always decides first
+         */
+        SHADOWED,
+        /**
+         * Rule is the same as an earlier rule or as a rule of the parent
+         */
+        DUPLICATE,
+        /**
+         * Rule shares the resource, effect and condition with another rule
+         * and their actions can be merged
+         */
+        MERGEABLE
+    }
+
+    /**
+     * Single finding of the analysis.
+     */
+    public static final class Finding {
+
+        /**
+         * Kind of the finding
+         */
+        private final Kind kind;
+        /**
+         * Role which declares the rule
+         */
+        private final Role role;
+        /**
+         * Rule which is subject of the finding
+         */
+        private final PermissionRule rule;
+        /**
+         * Rule which caused the finding, might be null
+         */
+        private final PermissionRule cause;
+        /**
+         * True if the rule can be removed without changing any decision
+         */
+        private final boolean removable;
+
+        Finding(Kind kind, Role role, PermissionRule rule, PermissionRule cause, boolean removable) {
+            this.kind = kind;
+            this.role = role;
+            this.rule = rule;
+            this.cause = cause;
+            this.removable = removable;
+        }
+
+
+        /**
+         * Get kind of the finding.
+         *
+         * @return kind
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Get role which declares the rule.
+         *
+         * @return role
+         */
+        public Role getRole() {
+            return role;
+        }
+
+        /**
+         * Get rule which is subject of the finding.
+         *
+         * @return permission rule
+         */
+        public PermissionRule getRule() {
+            return rule;
+        }
+
+        /**
+         * Get rule which caused the finding, for example the shadowing rule.
+         *
+         * @return permission rule or null
+         */
+        public PermissionRule getCause() {
+            return cause;
+        }
+
+        /**
+         * Determine if the rule can be removed from the role without changing
+         * any decision of the evaluator.
+         *
+         * @return true if removable
+         */
+        public boolean isRemovable() {
+            return removable;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " in role '" + role.getName() + "': " + rule +
+                    (cause != null ? " (by " + cause + ")" : "") +
+                    (removable ? " [removable]" : "");
+        }
+    }
+
+    /**
+     * Findings of the analysis
+     */
+    private final List<Finding> findings;
+
+    /**
+     * Constructor.
+     *
+     * @param findings findings of the analysis
+     */
+    PolicyReport(List<Finding> findings) {
+        this.findings = Collections.unmodifiableList(new ArrayList<>(findings));
+    }
+
+
+    /**
+     * Determine if the analysis found anything.
+     *
+     * @return true if there are no findings
+     */
+    public boolean isEmpty() {
+        return findings.isEmpty();
+    }
+
+    /**
+     * Get all findings of the analysis.
+     *
+     * @return unmodifiable list of findings
+     */
+    public List<Finding> getFindings() {
+        return findings;
+    }
+
+    /**
+     * Get findings which rules can be removed from the roles.
+     *
+     * @return list of removable findings
+     */
+    public List<Finding> getRemovable() {
+        List<Finding> result = new ArrayList<>();
+        for (Finding finding : findings) {
+            if (finding.isRemovable()) {
+                result.add(finding);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Policy analysis found ")
+                .append(findings.size()).append(" issue(s)");
+        for (Finding finding : findings) {
+            builder.append(System.lineSeparator()).append("  ").append(finding);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package cz.polankam.security.acl;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Resolver of the user from the authentication, resolved user is given to
+ * the permission conditions. Default resolver accepts only authentications
+ * with {@link UserDetails} principal, stateless services can use
+ * {@link ClaimsPrincipalResolver} to build users from the token claims.
+ * <p>
+ * Created by Martin Polanka
+ */
+@FunctionalInterface
+public interface PrincipalResolver {
+
+    /**
+     * Resolver which returns principal of the authentication if it is user
+     * details.
+     */
+    PrincipalResolver USER_DETAILS = authentication ->
+            authentication.getPrincipal() instanceof UserDetails ? (UserDetails) authentication.getPrincipal() : null;
+
+    /**
+     * Resolve user of the given authentication.
+     *
+     * @param authentication authentication, never null
+     * @return user or null if the authentication is not supported
+     */
+    UserDetails resolve(Authentication authentication);
+}
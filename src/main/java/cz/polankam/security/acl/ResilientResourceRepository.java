@@ -0,0 +1,218 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.ResourceUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Resource repository decorator which protects the evaluator from slow
+ * repositories. Concurrent loads of the same identification share a single
+ * call of the delegate, number of concurrent calls of the delegate is limited
+ * and callers wait for the result only for the given time. If the resource
+ * cannot be loaded in time, {@link ResourceUnavailableException} is thrown.
+ * <p>
+ * Without executor, the delegate is called on the thread of the first caller,
+ * therefore it runs within its transaction, but the first caller itself is not
+ * interrupted by the timeout, only the callers waiting for its result are.
+ * With executor, the delegate is called on the executor thread and every
+ * caller waits at most the given time, but the delegate does not run within
+ * the transaction of the caller. In both cases the loaded entity is shared by
+ * all callers which were waiting for it.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class ResilientResourceRepository implements IResourceRepository {
+
+    /**
+     * Key of the loads without identification
+     */
+    private static final Object NULL_ID = new Object() {
+        @Override
+        public String toString() {
+            return "null";
+        }
+    };
+
+    /**
+     * Decorated repository
+     */
+    private final IResourceRepository delegate;
+    /**
+     * Maximal time for which callers wait for the resource
+     */
+    private final long timeoutNanos;
+    /**
+     * Bulkhead limiting the number of concurrent calls of the delegate
+     */
+    private final Semaphore bulkhead;
+    /**
+     * Executor of the delegate calls, might be null
+     */
+    private final Executor executor;
+    /**
+     * Loads by identification which are in progress
+     */
+    private final Map<Object, CompletableFuture<Optional<Object>>> inFlightById = new ConcurrentHashMap<>();
+    /**
+     * Loads by hierarchical path which are in progress
+     */
+    private final Map<ResourcePath, CompletableFuture<Optional<List<Object>>>> inFlightByPath = new ConcurrentHashMap<>();
+    /**
+     * Batch loads by identifications which are in progress
+     */
+    private final Map<List<Object>, CompletableFuture<Map<Object, Object>>> inFlightByIds = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, delegate is called on the thread of the caller.
+     *
+     * @param delegate      decorated repository
+     * @param timeout       maximal time for which callers wait for the resource
+     * @param maxConcurrent maximal number of concurrent calls of the delegate
+     */
+    public ResilientResourceRepository(IResourceRepository delegate, Duration timeout, int maxConcurrent) {
+        this(delegate, timeout, maxConcurrent, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      decorated repository
+     * @param timeout       maximal time for which callers wait for the resource
+     * @param maxConcurrent maximal number of concurrent calls of the delegate
+     * @param executor      executor of the delegate calls, if null the delegate
+     *                      is called on the thread of the caller
+     */
+    public ResilientResourceRepository(IResourceRepository delegate, Duration timeout, int maxConcurrent, Executor executor) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Maximal number of concurrent calls has to be positive");
+        }
+        this.delegate = delegate;
+        this.timeoutNanos = timeout.toNanos();
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.executor = executor;
+    }
+
+
+    @Override
+    public Optional<Object> findById(Object id) {
+        // concurrent map does not take null keys
+        return load(inFlightById, id != null ? id : NULL_ID, () -> delegate.findById(id));
+    }
+
+    @Override
+    public Optional<List<Object>> findPath(ResourcePath path) {
+        return load(inFlightByPath, path, () -> delegate.findPath(path));
+    }
+
+    @Override
+    public Map<Object, Object> findAllById(Collection<?> ids) {
+        return load(inFlightByIds, new ArrayList<>(ids), () -> delegate.findAllById(ids));
+    }
+
+    /**
+     * Get number of loads which are currently in progress.
+     *
+     * @return number of loads
+     */
+    public int getInFlightCount() {
+        return inFlightById.size() + inFlightByPath.size() + inFlightByIds.size();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private <K, T> T load(Map<K, CompletableFuture<T>> inFlight, K key, Supplier<T> loader) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // somebody else is already loading the resource, wait for it
+            return await(existing, key, deadline);
+        }
+
+        try {
+            if (!bulkhead.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ResourceUnavailableException("Too many concurrent loads, resource '" + key + "' is unavailable");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ResourceUnavailableException exception =
+                    new ResourceUnavailableException("Interrupted while loading resource '" + key + "'", e);
+            finish(inFlight, key, future, null, exception);
+            throw exception;
+        } catch (ResourceUnavailableException e) {
+            finish(inFlight, key, future, null, e);
+            throw e;
+        }
+
+        if (executor == null) {
+            // the first caller loads the resource on its own thread
+            try {
+                T result = loader.get();
+                finish(inFlight, key, future, result, null);
+                return result;
+            } catch (Throwable e) {
+                // errors have to complete the future as well, otherwise waiting callers would time out forever
+                finish(inFlight, key, future, null, e);
+                throw e;
+            } finally {
+                bulkhead.release();
+            }
+        }
+
+        try {
+            CompletableFuture.supplyAsync(loader, executor).whenComplete((result, error) -> {
+                bulkhead.release();
+                finish(inFlight, key, future, result, error instanceof CompletionException ? error.getCause() : error);
+            });
+        } catch (RuntimeException e) {
+            // executor rejected the task
+            bulkhead.release();
+            finish(inFlight, key, future, null, e);
+            throw new ResourceUnavailableException("Resource '" + key + "' could not be loaded", e);
+        }
+        return await(future, key, deadline);
+    }
+
+    private <K, T> void finish(Map<K, CompletableFuture<T>> inFlight, K key, CompletableFuture<T> future,
+                               T result, Throwable error) {
+        inFlight.remove(key, future);
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(result);
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future, Object key, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ResourceUnavailableException("Loading of resource '" + key + "' timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceUnavailableException("Interrupted while loading resource '" + key + "'", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new ResourceUnavailableException("Resource '" + key + "' could not be loaded", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Hierarchical resource path, which consists of levels made of resource type
+ * and identification of the resource on that level. Textual representation of
+ * the path alternates types and identifications, for example
+ * <code>org/42/project/7/document/3</code>. Permission rules defined on the
+ * ancestor resource (for example <code>org</code> or <code>org/project</code>)
+ * are applied also to its descendants unless they are overridden on more
+ * specific level.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class ResourcePath {
+
+    /**
+     * Separator of the levels in the textual representation of the path
+     */
+    public static final String SEPARATOR = "/";
+
+    /**
+     * Resource types of all levels, ordered from the root to the leaf
+     */
+    private final String[] types;
+    /**
+     * Resource identifications of all levels, ordered from the root to the leaf
+     */
+    private final Object[] ids;
+
+
+    private ResourcePath(String[] types, Object[] ids) {
+        this.types = types;
+        this.ids = ids;
+    }
+
+    /**
+     * Parse given textual representation of the path. Identifications in the
+     * parsed path are strings, therefore resource repositories have to be
+     * able to handle them.
+     *
+     * @param path textual path, like <code>org/42/project/7</code>
+     * @return parsed path
+     */
+    public static ResourcePath parse(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new PermissionException("Resource path cannot be empty");
+        }
+
+        String[] parts = path.split(SEPARATOR);
+        if (parts.length % 2 != 0) {
+            throw new PermissionException("Resource path '" + path + "' has to consist of type and identification pairs");
+        }
+
+        String[] types = new String[parts.length / 2];
+        Object[] ids = new Object[parts.length / 2];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = parts[2 * i];
+            ids[i] = parts[2 * i + 1];
+        }
+        return new ResourcePath(types, ids);
+    }
+
+    /**
+     * Create path with single root level.
+     *
+     * @param type resource type of the root
+     * @param id   identification of the root resource
+     * @return path
+     */
+    public static ResourcePath of(String type, Object id) {
+        return new ResourcePath(new String[]{type}, new Object[]{id});
+    }
+
+    /**
+     * Create new path which is extended by given child level.
+     *
+     * @param type resource type of the child
+     * @param id   identification of the child resource
+     * @return new path
+     */
+    public ResourcePath child(String type, Object id) {
+        String[] childTypes = Arrays.copyOf(types, types.length + 1);
+        Object[] childIds = Arrays.copyOf(ids, ids.length + 1);
+        childTypes[types.length] = type;
+        childIds[ids.length] = id;
+        return new ResourcePath(childTypes, childIds);
+    }
+
+    /**
+     * Get prefix of this path which ends with the given level.
+     *
+     * @param level index of the last level of the prefix, root has index 0
+     * @return ancestor path or this path if level is the leaf
+     */
+    public ResourcePath prefix(int level) {
+        if (level == types.length - 1) {
+            return this;
+        }
+        return new ResourcePath(Arrays.copyOf(types, level + 1), Arrays.copyOf(ids, level + 1));
+    }
+
+    /**
+     * Get number of levels in this path.
+     *
+     * @return depth of the path
+     */
+    public int getDepth() {
+        return types.length;
+    }
+
+    /**
+     * Get resource type of the given level.
+     *
+     * @param level index of the level, root has index 0
+     * @return textual representation of resource
+     */
+    public String getType(int level) {
+        return types[level];
+    }
+
+    /**
+     * Get resource identification of the given level.
+     *
+     * @param level index of the level, root has index 0
+     * @return identification of the resource
+     */
+    public Object getId(int level) {
+        return ids[level];
+    }
+
+    /**
+     * Get resource type of the leaf level.
+     *
+     * @return textual representation of resource
+     */
+    public String getResource() {
+        return types[types.length - 1];
+    }
+
+    /**
+     * Get resource identification of the leaf level.
+     *
+     * @return identification of the resource
+     */
+    public Object getId() {
+        return ids[ids.length - 1];
+    }
+
+    /**
+     * Get resource types of all levels ordered from the root to the leaf.
+     *
+     * @return copy of types array
+     */
+    public String[] getTypes() {
+        return types.clone();
+    }
+
+    /**
+     * Get resource type path without identifications, which is the form used
+     * in permission rules, for example <code>org/project/document</code>.
+     *
+     * @return textual type path
+     */
+    public String getTypePath() {
+        return String.join(SEPARATOR, types);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResourcePath)) {
+            return false;
+        }
+        ResourcePath that = (ResourcePath) o;
+        return Arrays.equals(types, that.types) && Arrays.equals(ids, that.ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(types) + Arrays.hashCode(ids);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(types[i]).append(SEPARATOR).append(Objects.toString(ids[i]));
+        }
+        return builder.toString();
+    }
+}
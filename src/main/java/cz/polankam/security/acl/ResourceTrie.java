@@ -0,0 +1,129 @@
+package cz.polankam.security.acl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of permission rules indexed by the levels of their resources. Resource
+ * of the rule is split by {@link ResourcePath#SEPARATOR} and every level of the
+ * resource is one node of the trie, wildcard can be used as a level and it
+ * matches any resource type on that level.
+ * <p>
+ * Created by Martin Polanka
+ */
+final class ResourceTrie {
+
+    /**
+     * Root of the trie, it never contains any rules
+     */
+    private final Node root = new Node();
+
+
+    /**
+     * Add given rule to the node which corresponds to its resource.
+     *
+     * @param rule  permission rule
+     * @param order declaration order of the rule within the role
+     */
+    void add(PermissionRule rule, int order) {
+        Node node = root;
+        for (String level : rule.getResource().split(ResourcePath.SEPARATOR)) {
+            node = node.child(level);
+        }
+        if (node.rules.isEmpty()) {
+            node.rules = new ArrayList<>(1);
+        }
+        node.rules.add(new Entry(order, rule));
+    }
+
+    /**
+     * Remove given rule from the node which corresponds to its resource, if
+     * the rule was added multiple times, the last added one is removed.
+     *
+     * @param rule permission rule
+     */
+    void remove(PermissionRule rule) {
+        Node node = root;
+        for (String level : rule.getResource().split(ResourcePath.SEPARATOR)) {
+            node = node.children.get(level);
+            if (node == null) {
+                return;
+            }
+        }
+        for (int i = node.rules.size() - 1; i >= 0; i--) {
+            if (node.rules.get(i).rule == rule) {
+                node.rules.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Walk the trie along given resource types and collect rules defined on
+     * every level. Rules defined exactly for the type of the level and rules
+     * defined by wildcard are merged in the order of their declaration.
+     *
+     * @param types  resource types ordered from the root to the leaf
+     * @param levels output list with one list of rules per level
+     */
+    void collect(String[] types, List<List<PermissionRule>> levels) {
+        List<Node> frontier = Collections.singletonList(root);
+        for (int level = 0; level < types.length && !frontier.isEmpty(); level++) {
+            List<Node> next = new ArrayList<>(2);
+            for (Node node : frontier) {
+                Node exact = node.children.get(types[level]);
+                if (exact != null) {
+                    next.add(exact);
+                }
+                Node wildcard = node.children.get(AclPermissionEvaluator.WILDCARD);
+                if (wildcard != null && wildcard != exact) {
+                    next.add(wildcard);
+                }
+            }
+
+            List<Entry> entries = new ArrayList<>();
+            for (Node node : next) {
+                entries.addAll(node.rules);
+            }
+            if (next.size() > 1) {
+                entries.sort(Comparator.comparingInt(entry -> entry.order));
+            }
+            for (Entry entry : entries) {
+                levels.get(level).add(entry.rule);
+            }
+            frontier = next;
+        }
+    }
+
+    /**
+     * Single level of the trie.
+     */
+    private static final class Node {
+        private Map<String, Node> children = Collections.emptyMap();
+        private List<Entry> rules = Collections.emptyList();
+
+        private Node child(String level) {
+            if (children.isEmpty()) {
+                children = new HashMap<>(2);
+            }
+            return children.computeIfAbsent(level, ignored -> new Node());
+        }
+    }
+
+    /**
+     * Rule stored in the node together with its declaration order.
+     */
+    private static final class Entry {
+        private final int order;
+        private final PermissionRule rule;
+
+        private Entry(int order, PermissionRule rule) {
+            this.order = order;
+            this.rule = rule;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cz.polankam.security.acl;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry which maps classes of the domain objects to the textual
+ * representation of their resources. It is used by the permission evaluator
+ * when the already loaded domain object is given instead of the resource name,
+ * conditions are then evaluated directly on the object. Subclasses and
+ * implementations of the registered classes are mapped to the same resource,
+ * which allows usage of proxies created by persistence frameworks.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class ResourceTypeRegistry {
+
+    /**
+     * Resources of the registered classes
+     */
+    private final Map<Class<?>, String> registered = new ConcurrentHashMap<>();
+    /**
+     * Resolved resources of all classes given to lookup, empty string if the
+     * class is not registered
+     */
+    private final Map<Class<?>, String> resolved = new ConcurrentHashMap<>();
+
+
+    /**
+     * Register class of the domain objects of the given resource.
+     *
+     * @param type     class of the domain objects
+     * @param resource textual representation of the resource
+     * @return this
+     */
+    public ResourceTypeRegistry register(Class<?> type, String resource) {
+        registered.put(type, resource);
+        resolved.clear();
+        return this;
+    }
+
+    /**
+     * Find resource of the given domain object.
+     *
+     * @param object domain object
+     * @return textual representation of the resource or empty optional
+     */
+    public Optional<String> resolve(Object object) {
+        if (object == null) {
+            return Optional.empty();
+        }
+        return resolve(object.getClass());
+    }
+
+    /**
+     * Find resource of the given class, superclasses and interfaces are
+     * searched if the class itself is not registered.
+     *
+     * @param type class of the domain objects
+     * @return textual representation of the resource or empty optional
+     */
+    public Optional<String> resolve(Class<?> type) {
+        String resource = resolved.computeIfAbsent(type, this::lookup);
+        return resource.isEmpty() ? Optional.empty() : Optional.of(resource);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private String lookup(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            String resource = registered.get(current);
+            if (resource != null) {
+                return resource;
+            }
+        }
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Class<?> implemented : current.getInterfaces()) {
+                String resource = lookup(implemented);
+                if (!resource.isEmpty()) {
+                    return resource;
+                }
+            }
+        }
+        return "";
+    }
+}
@@ -3,15 +3,27 @@ package cz.polankam.security.acl;
 import cz.polankam.security.acl.conditions.PermissionCondition;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Representation of the role which contains its name and permission rules which
  * should be applied for the role.
  * <p>
+ * Role is not thread-safe, its rules must not be changed while the permission
+ * checks run. Changes made before the checks are detected by the permission
+ * evaluator, rules of the running application are changed by replacing the
+ * role in the permission service and invalidating it.
+ * <p>
  * Created by Martin Polanka
  */
 public final class Role {
 
+    /**
+     * Updater of the revision, roles might be retired concurrently
+     */
+    private static final AtomicIntegerFieldUpdater<Role> REVISION =
+            AtomicIntegerFieldUpdater.newUpdater(Role.class, "revision");
+
     /**
      * Name of the role
      */
@@ -21,9 +33,33 @@ public final class Role {
      */
     private final Role parent;
     /**
-     * Associative array of permission rules indexed by resource textual representation
+     * Permission rules of this role in the order of their declaration, all
+     * structures of the rules are allocated with the first rule, so that
+     * roles which only overlay their parent are cheap
+     */
+    private List<PermissionRule> declaredRules = Collections.emptyList();
+    /**
+     * Associative array of permission rules indexed by resource textual
+     * representation, null if there are no rules
+     */
+    private Map<String, List<PermissionRule>> permissionRules;
+    /**
+     * Trie of permission rules indexed by levels of hierarchical resources,
+     * null if there are no rules
      */
-    private final Map<String, List<PermissionRule>> permissionRules = new HashMap<>();
+    private ResourceTrie resourceTrie;
+    /**
+     * Declaration order of the next added rule
+     */
+    private int nextOrder;
+    /**
+     * Revision of the own rules, changed with every change of the rules
+     */
+    private volatile int revision;
+    /**
+     * Statistics of the own rules, created when they are first needed
+     */
+    private volatile RuleStatistics statistics;
 
 
     /**
@@ -54,7 +90,105 @@ public final class Role {
      * @param resource to be initialized
      */
     private void initializeResource(String resource) {
-        permissionRules.computeIfAbsent(resource, ignored -> new ArrayList<>());
+        if (permissionRules == null) {
+            permissionRules = new HashMap<>(4);
+            declaredRules = new ArrayList<>(4);
+            resourceTrie = new ResourceTrie();
+        }
+        permissionRules.computeIfAbsent(resource, ignored -> new ArrayList<>(1));
+    }
+
+    /**
+     * Add single permission rule to all internal structures.
+     *
+     * @param rule permission rule
+     */
+    private void addPermissionRule(PermissionRule rule) {
+        initializeResource(rule.getResource());
+        permissionRules.get(rule.getResource()).add(rule);
+        declaredRules.add(rule);
+        resourceTrie.add(rule, nextOrder++);
+        REVISION.incrementAndGet(this);
+    }
+
+    /**
+     * Remove given permission rule from all internal structures of this role,
+     * rules are compared by identity. If the same rule was added multiple
+     * times, only its last occurrence is removed.
+     *
+     * @param rule permission rule
+     */
+    void removePermissionRule(PermissionRule rule) {
+        List<PermissionRule> resourceRules = permissionRules != null ? permissionRules.get(rule.getResource()) : null;
+        if (resourceRules == null || !removeLast(resourceRules, rule)) {
+            return;
+        }
+
+        if (resourceRules.isEmpty()) {
+            permissionRules.remove(rule.getResource());
+        }
+        removeLast(declaredRules, rule);
+        resourceTrie.remove(rule);
+        REVISION.incrementAndGet(this);
+    }
+
+    private static boolean removeLast(List<PermissionRule> rules, PermissionRule rule) {
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            if (rules.get(i) == rule) {
+                rules.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get revision of the own rules of this role, it is changed whenever a
+     * rule is added or removed. Rules of the parents have their own revisions.
+     *
+     * @return revision
+     */
+    int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Mark this role as replaced by another instance in the permission
+     * service. Revision is changed, so that compiled policies which depend on
+     * this role are compiled again with the current roles of the service.
+     */
+    void retire() {
+        REVISION.incrementAndGet(this);
+    }
+
+    /**
+     * Get statistics of the rules declared directly in this role. Statistics
+     * are collected only if it is enabled on the permission evaluator.
+     *
+     * @return statistics of the rules
+     */
+    public RuleStatistics getStatistics() {
+        RuleStatistics result = statistics;
+        if (result == null) {
+            synchronized (this) {
+                result = statistics;
+                if (result == null) {
+                    result = new RuleStatistics();
+                    statistics = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get permission rules declared directly in this role, without rules of
+     * the parents.
+     *
+     * @return unmodifiable list of permissions in the declaration order
+     */
+    List<PermissionRule> getOwnPermissionRules() {
+        return Collections.unmodifiableList(declaredRules);
     }
 
     /**
@@ -76,7 +210,8 @@ public final class Role {
     }
 
     /**
-     * Add given permission rules structures to this role.
+     * Add given permission rules structures to this role. Role must not be
+     * changed while the permission checks run.
      *
      * @param rules array of rules
      * @return this
@@ -86,22 +221,23 @@ public final class Role {
     }
 
     /**
-     * Add given permission rules structures to this role.
+     * Add given permission rules structures to this role. Role must not be
+     * changed while the permission checks run.
      *
      * @param rules list of rules
      * @return this
      */
     public Role addPermissionRules(List<PermissionRule> rules) {
         for (PermissionRule rule : rules) {
-            initializeResource(rule.getResource());
-            permissionRules.get(rule.getResource()).add(rule);
+            addPermissionRule(rule);
         }
         return this;
     }
 
     /**
      * Add permission rules for the given resource, which is either allowed or
-     * not for the given actions.
+     * not for the given actions. Role must not be changed while the permission
+     * checks run.
      *
      * @param isAllowed determine if the rule should be allowed for the role or not
      * @param resource  resource for which the rule should be applied
@@ -109,15 +245,15 @@ public final class Role {
      * @return this
      */
     public Role addPermissionRules(boolean isAllowed, String resource, String... actions) {
-        initializeResource(resource);
-        permissionRules.get(resource).add(new PermissionRule(isAllowed, resource, Arrays.asList(actions), null));
+        addPermissionRule(PermissionRule.intern(isAllowed, resource, Arrays.asList(actions), null));
         return this;
     }
 
     /**
      * Add permission rules for the given resource, which is either allowed or
      * not for the given actions. Condition should be used on the acquired
-     * resource object.
+     * resource object. Role must not be changed while the permission checks
+     * run.
      *
      * @param isAllowed determine if the rule should be allowed for the user or not
      * @param resource  resource for which the rule should be applied
@@ -126,15 +262,15 @@ public final class Role {
      * @return this
      */
     public <T> Role addPermissionRules(boolean isAllowed, String resource, String[] actions, PermissionCondition<T> condition) {
-        initializeResource(resource);
-        permissionRules.get(resource).add(new PermissionRule(isAllowed, resource, Arrays.asList(actions), condition));
+        addPermissionRule(PermissionRule.intern(isAllowed, resource, Arrays.asList(actions), condition));
         return this;
     }
 
     /**
      * Add permission rules for the given resource, which is either allowed or
      * not for the given actions. Condition should be used on the acquired
-     * resource object.
+     * resource object. Role must not be changed while the permission checks
+     * run.
      *
      * @param isAllowed determine if the rule should be allowed for the user or not
      * @param resource  resource for which the rule should be applied
@@ -143,20 +279,19 @@ public final class Role {
      * @return this
      */
     public <T> Role addPermissionRules(boolean isAllowed, String resource, PermissionCondition<T> condition, String... actions) {
-        initializeResource(resource);
-        permissionRules.get(resource).add(new PermissionRule(isAllowed, resource, Arrays.asList(actions), condition));
+        addPermissionRule(PermissionRule.intern(isAllowed, resource, Arrays.asList(actions), condition));
         return this;
     }
 
     /**
-     * Get the list of permission rules for this role and its parents.
+     * Get the list of permission rules for this role and its parents. Rules of
+     * this role are in the order of their declaration and they precede the
+     * rules of the parent.
      *
      * @return unmodifiable list of permissions
      */
     public List<PermissionRule> getPermissionRules() {
-        List<PermissionRule> rules = new ArrayList<>();
-        // add all permission rules from map
-        permissionRules.values().forEach(rules::addAll);
+        List<PermissionRule> rules = new ArrayList<>(declaredRules);
 
         if (this.parent != null) {
             // if there is parent add also its permission rules
@@ -176,7 +311,7 @@ public final class Role {
      */
     public List<PermissionRule> getPermissionRules(String resource) {
         List<PermissionRule> rules = new ArrayList<>();
-        if (permissionRules.containsKey(resource)) {
+        if (permissionRules != null && permissionRules.containsKey(resource)) {
             // if current role contains resource, add it to resulting collection
             rules.addAll(permissionRules.get(resource));
         }
@@ -189,4 +324,32 @@ public final class Role {
         // return unmodifiable list, just to be sure
         return Collections.unmodifiableList(rules);
     }
+
+    /**
+     * Get permission rules for every level of the hierarchical resource with
+     * given types. Trie of resources is walked only once for the whole path,
+     * rules are taken also from parent role of this role. Rules on the same
+     * level keep the order of their declaration.
+     *
+     * @param types resource types ordered from the root to the leaf
+     * @return list of unmodifiable rule lists, one for each level of the path
+     */
+    public List<List<PermissionRule>> getPermissionRulesOnPath(String[] types) {
+        List<List<PermissionRule>> levels = new ArrayList<>(types.length);
+        for (int i = 0; i < types.length; i++) {
+            levels.add(new ArrayList<>());
+        }
+
+        for (Role role = this; role != null; role = role.parent) {
+            // rules of this role precede the rules of its parents
+            if (role.resourceTrie != null) {
+                role.resourceTrie.collect(types, levels);
+            }
+        }
+
+        // return unmodifiable lists, just to be sure
+        List<List<PermissionRule>> result = new ArrayList<>(types.length);
+        levels.forEach(level -> result.add(Collections.unmodifiableList(level)));
+        return Collections.unmodifiableList(result);
+    }
 }
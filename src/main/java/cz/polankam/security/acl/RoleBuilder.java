@@ -65,7 +65,7 @@ public final class RoleBuilder {
      * Add allowed rule to the role.
      */
     public RoleBuilder addAllowedRule(String resource, String... actions) {
-        rules.add(new PermissionRule(true, resource, Arrays.asList(actions), null));
+        rules.add(PermissionRule.intern(true, resource, Arrays.asList(actions), null));
         return this;
     }
 
@@ -73,7 +73,7 @@ public final class RoleBuilder {
      * Add denied rule to the role.
      */
     public RoleBuilder addDeniedRule(String resource, String... actions) {
-        rules.add(new PermissionRule(false, resource, Arrays.asList(actions), null));
+        rules.add(PermissionRule.intern(false, resource, Arrays.asList(actions), null));
         return this;
     }
 
@@ -83,7 +83,7 @@ public final class RoleBuilder {
     public RoleBuilder addRule(boolean allowed,
                                String resource,
                                String... actions) {
-        rules.add(new PermissionRule(allowed, resource, Arrays.asList(actions), null));
+        rules.add(PermissionRule.intern(allowed, resource, Arrays.asList(actions), null));
         return this;
     }
 
@@ -93,7 +93,7 @@ public final class RoleBuilder {
     public <T> RoleBuilder addAllowedRule(String resource,
                                           PermissionCondition<T> condition,
                                           String... actions) {
-        rules.add(new PermissionRule(true, resource, Arrays.asList(actions), condition));
+        rules.add(PermissionRule.intern(true, resource, Arrays.asList(actions), condition));
         return this;
     }
 
@@ -103,7 +103,7 @@ public final class RoleBuilder {
     public <T> RoleBuilder addDeniedRule(String resource,
                                          PermissionCondition<T> condition,
                                          String... actions) {
-        rules.add(new PermissionRule(false, resource, Arrays.asList(actions), condition));
+        rules.add(PermissionRule.intern(false, resource, Arrays.asList(actions), condition));
         return this;
     }
 
@@ -114,7 +114,7 @@ public final class RoleBuilder {
                                              String resource,
                                              PermissionCondition<T> condition,
                                              String... actions) {
-        rules.add(new PermissionRule(allowed, resource, Arrays.asList(actions), condition));
+        rules.add(PermissionRule.intern(allowed, resource, Arrays.asList(actions), condition));
         return this;
     }
 
@@ -181,7 +181,7 @@ public final class RoleBuilder {
          * Add permission rule to the role and continue with role building.
          */
         public RoleBuilder endRule() {
-            PermissionRule rule = new PermissionRule(isAllowed, resource, actions, condition);
+            PermissionRule rule = PermissionRule.intern(isAllowed, resource, actions, condition);
             roleBuilder.rules.add(rule);
             return roleBuilder;
         }
@@ -0,0 +1,23 @@
+package cz.polankam.security.acl;
+
+/**
+ * Loader of the roles from the backing store, used by
+ * {@link LoadingPermissionsService} when the role is needed for the first
+ * time or when it is refreshed.
+ * <p>
+ * Created by Martin Polanka
+ */
+@FunctionalInterface
+public interface RoleLoader {
+
+    /**
+     * Load role with the given name together with all its permission rules.
+     * Parent of the role has to be obtained from the given service, so that
+     * loaded roles share their parents.
+     *
+     * @param name    textual role representation
+     * @param service permission service which loads the role
+     * @return loaded role or null if the role does not exist
+     */
+    Role load(String name, IPermissionsService service);
+}
@@ -0,0 +1,69 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.conditions.PermissionCondition;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-consing table of the permission rules and their action lists. Rules
+ * created through the table are immutable and equal rules are represented by
+ * the single shared instance, therefore thousands of roles with the same
+ * rules do not hold their own copies. Entries are held weakly and they are
+ * released when no role uses them.
+ * <p>
+ * Created by Martin Polanka
+ */
+final class RuleInterner {
+
+    /**
+     * Shared rules
+     */
+    private static final Map<PermissionRule, WeakReference<PermissionRule>> RULES = new WeakHashMap<>();
+    /**
+     * Shared immutable action lists
+     */
+    private static final Map<List<String>, WeakReference<List<String>>> ACTIONS = new WeakHashMap<>();
+
+    private RuleInterner() {
+        // nothing to see here
+    }
+
+
+    /**
+     * Get shared rule with given parameters.
+     *
+     * @param isAllowed if the action on the resource is allowed or not
+     * @param resource  resource for which the rule should be applied
+     * @param actions   actions for which the rule should be applied, list is copied
+     * @param condition condition applied to resource object, might be null
+     * @return shared immutable rule
+     */
+    static PermissionRule intern(boolean isAllowed, String resource, List<String> actions, PermissionCondition<?> condition) {
+        synchronized (RULES) {
+            PermissionRule rule = new PermissionRule(isAllowed, resource.intern(), internActions(actions), condition);
+            WeakReference<PermissionRule> existing = RULES.get(rule);
+            PermissionRule shared = existing != null ? existing.get() : null;
+            if (shared != null) {
+                return shared;
+            }
+
+            RULES.put(rule, new WeakReference<>(rule));
+            return rule;
+        }
+    }
+
+    private static List<String> internActions(List<String> actions) {
+        List<String> copy = List.copyOf(actions);
+        WeakReference<List<String>> existing = ACTIONS.get(copy);
+        List<String> shared = existing != null ? existing.get() : null;
+        if (shared != null) {
+            return shared;
+        }
+
+        ACTIONS.put(copy, new WeakReference<>(copy));
+        return copy;
+    }
+}
@@ -0,0 +1,109 @@
+package cz.polankam.security.acl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the permission rules declared in the role. Every rule has
+ * its counter of hits, which is the number of checks in which the rule was
+ * applicable on the checked action, and decisions, which is the number of
+ * checks decided by the rule. Counters are striped, so that concurrent checks
+ * do not contend on them. Equal rules of the role share the counter.
+ * <p>
+ * Statistics are collected only if it is enabled on the permission evaluator.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class RuleStatistics {
+
+    /**
+     * Counters of the rules
+     */
+    private final Map<PermissionRule, Counter> counters = new ConcurrentHashMap<>();
+
+
+    /**
+     * Get counter of the given rule.
+     *
+     * @param rule permission rule
+     * @return counter, empty counter if the rule was never evaluated
+     */
+    public Counter getCounter(PermissionRule rule) {
+        Counter counter = counters.get(rule);
+        return counter != null ? counter : new Counter();
+    }
+
+    /**
+     * Get counters of all evaluated rules.
+     *
+     * @return unmodifiable map of counters indexed by rules
+     */
+    public Map<PermissionRule, Counter> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * Reset counters of all rules.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.hits.reset();
+            counter.decisions.reset();
+        }
+    }
+
+    /**
+     * Get counter of the given rule, create it if it does not exist.
+     *
+     * @param rule permission rule
+     * @return counter
+     */
+    Counter counter(PermissionRule rule) {
+        return counters.computeIfAbsent(rule, ignored -> new Counter());
+    }
+
+    /**
+     * Hit and decision counter of the single rule.
+     */
+    public static final class Counter {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder decisions = new LongAdder();
+
+        private Counter() {
+        }
+
+        /**
+         * Get number of checks in which the rule was applicable.
+         *
+         * @return number of hits
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        /**
+         * Get number of checks decided by the rule.
+         *
+         * @return number of decisions
+         */
+        public long getDecisions() {
+            return decisions.sum();
+        }
+
+        void hit() {
+            hits.increment();
+        }
+
+        void decided() {
+            decisions.increment();
+        }
+
+        @Override
+        public String toString() {
+            return getDecisions() + "/" + getHits();
+        }
+    }
+}
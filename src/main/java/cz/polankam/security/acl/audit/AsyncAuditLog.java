@@ -0,0 +1,186 @@
+package cz.polankam.security.acl.audit;
+
+import cz.polankam.security.acl.PermissionRule;
+import org.springframework.security.core.Authentication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-blocking audit log, which records all denied decisions and a sample of
+ * allowed decisions. Calling thread only publishes the record to the bounded
+ * lock-free ring buffer, records are written to the sink in batches by the
+ * background writer thread. If the buffer is full, the record is either
+ * dropped or the calling thread waits for the free slot, based on the
+ * overflow policy. Records logged after the log was closed are dropped.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class AsyncAuditLog implements AuditLog, AutoCloseable {
+
+    /**
+     * Behaviour of the log when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Record is dropped and counted */
+        DROP,
+        /** Calling thread waits until there is free slot */
+        BLOCK
+    }
+
+    private static final int BATCH_SIZE = 512;
+    private static final long WRITER_IDLE_NANOS = 1_000_000;
+    private static final long PRODUCER_WAIT_NANOS = 10_000;
+
+    private final AuditRingBuffer buffer;
+    private final AuditSink sink;
+    private final OverflowPolicy overflowPolicy;
+    private final double allowedSampleRate;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread writer;
+    /**
+     * Number of threads currently publishing the record
+     */
+    private final AtomicInteger producers = new AtomicInteger();
+    /**
+     * Flag if new records are accepted
+     */
+    private volatile boolean running = true;
+    /**
+     * Flag if the writer should stop once the buffer is empty
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Constructor, background writer is started immediately.
+     *
+     * @param sink              destination of the records
+     * @param capacity          capacity of the buffer
+     * @param overflowPolicy    behaviour when the buffer is full
+     * @param allowedSampleRate probability of recording allowed decision, between 0 and 1
+     */
+    public AsyncAuditLog(AuditSink sink, int capacity, OverflowPolicy overflowPolicy, double allowedSampleRate) {
+        this.buffer = new AuditRingBuffer(capacity);
+        this.sink = sink;
+        this.overflowPolicy = overflowPolicy;
+        this.allowedSampleRate = allowedSampleRate;
+        this.writer = new Thread(this::writeLoop, "jaclp-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+
+    @Override
+    public void log(Authentication authentication, Object resource, Object id, Object action, boolean allowed, PermissionRule rule) {
+        if (allowed && !sampled()) {
+            return;
+        }
+
+        producers.incrementAndGet();
+        try {
+            if (running && publish(new AuditRecord(System.currentTimeMillis(),
+                    authentication != null ? authentication.getName() : null, resource, id, action, allowed, rule))) {
+                return;
+            }
+            dropped.increment();
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private boolean publish(AuditRecord record) {
+        if (buffer.offer(record)) {
+            return true;
+        }
+
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            while (running) {
+                LockSupport.parkNanos(PRODUCER_WAIT_NANOS);
+                if (buffer.offer(record)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean sampled() {
+        if (allowedSampleRate >= 1) {
+            return true;
+        }
+        return allowedSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < allowedSampleRate;
+    }
+
+    private void writeLoop() {
+        List<AuditRecord> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            // read the flag before draining, so that nothing is left behind
+            boolean stopping = stopped;
+            if (buffer.drainTo(batch, BATCH_SIZE) == 0) {
+                if (stopping) {
+                    return;
+                }
+                LockSupport.parkNanos(WRITER_IDLE_NANOS);
+                continue;
+            }
+
+            try {
+                sink.write(batch);
+            } catch (IOException | RuntimeException e) {
+                failed.add(batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Get number of records dropped because of full buffer or closed log.
+     *
+     * @return number of dropped records
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Get number of records which could not be written to the sink.
+     *
+     * @return number of failed records
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Stop accepting new records, write all buffered records and close the
+     * sink. Writer is awaited even if the calling thread is interrupted, the
+     * interrupt status is restored afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        // records being published are written as well
+        while (producers.get() > 0) {
+            Thread.onSpinWait();
+        }
+        stopped = true;
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+}
@@ -0,0 +1,27 @@
+package cz.polankam.security.acl.audit;
+
+import cz.polankam.security.acl.PermissionRule;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Audit log of the permission check decisions. It is called synchronously on
+ * every check, therefore implementations should not perform any I/O within the
+ * calling thread.
+ * <p>
+ * Created by Martin Polanka
+ */
+@FunctionalInterface
+public interface AuditLog {
+
+    /**
+     * Record decision of the permission check.
+     *
+     * @param authentication authentication of the user, might be null
+     * @param resource       checked resource
+     * @param id             identification of the resource, might be null
+     * @param action         checked action
+     * @param allowed        true if the action was allowed
+     * @param rule           deciding permission rule, null if no rule was applicable
+     */
+    void log(Authentication authentication, Object resource, Object id, Object action, boolean allowed, PermissionRule rule);
+}
@@ -0,0 +1,125 @@
+package cz.polankam.security.acl.audit;
+
+import cz.polankam.security.acl.PermissionRule;
+
+import java.time.Instant;
+
+/**
+ * Single recorded decision of the permission check.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class AuditRecord {
+
+    private final long timestamp;
+    private final String principal;
+    private final Object resource;
+    private final Object id;
+    private final Object action;
+    private final boolean allowed;
+    private final PermissionRule rule;
+
+    /**
+     * Constructor.
+     *
+     * @param timestamp time of the decision in milliseconds since epoch
+     * @param principal name of the user, might be null
+     * @param resource  checked resource
+     * @param id        identification of the resource, might be null
+     * @param action    checked action
+     * @param allowed   true if the action was allowed
+     * @param rule      deciding rule, might be null
+     */
+    public AuditRecord(long timestamp, String principal, Object resource, Object id, Object action,
+                       boolean allowed, PermissionRule rule) {
+        this.timestamp = timestamp;
+        this.principal = principal;
+        this.resource = resource;
+        this.id = id;
+        this.action = action;
+        this.allowed = allowed;
+        this.rule = rule;
+    }
+
+
+    /**
+     * Get time of the decision.
+     *
+     * @return milliseconds since epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get name of the user.
+     *
+     * @return principal name, might be null
+     */
+    public String getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * Get checked resource.
+     *
+     * @return resource
+     */
+    public Object getResource() {
+        return resource;
+    }
+
+    /**
+     * Get identification of the checked resource.
+     *
+     * @return identification, might be null
+     */
+    public Object getId() {
+        return id;
+    }
+
+    /**
+     * Get checked action.
+     *
+     * @return action
+     */
+    public Object getAction() {
+        return action;
+    }
+
+    /**
+     * Determine if the action was allowed.
+     *
+     * @return true if allowed
+     */
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    /**
+     * Get rule which decided the check.
+     *
+     * @return deciding rule, null if no rule was applicable
+     */
+    public PermissionRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Format the record as single tab separated line without line terminator.
+     * Backslashes, tabs and line terminators within the fields are escaped.
+     *
+     * @return textual representation of the record
+     */
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(timestamp) + "\t" + (allowed ? "ALLOW" : "DENY") + "\t" + escape(principal) + "\t" +
+                escape(resource) + "\t" + (id != null ? escape(id) : "-") + "\t" + escape(action) + "\t" +
+                (rule != null ? escape(rule) : "-");
+    }
+
+    private static String escape(Object value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\t", "\\t")
+                .replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,100 @@
+package cz.polankam.security.acl.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer with multiple producers and single consumer.
+ * Every slot has its own sequence number, which tells producers if the slot
+ * is free and consumer if the slot was already published.
+ * <p>
+ * Created by Martin Polanka
+ */
+final class AuditRingBuffer {
+
+    private final int mask;
+    private final AuditRecord[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Position of the consumer, accessed only by the consumer thread
+     */
+    private long head;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity minimal capacity, rounded up to the power of two
+     */
+    AuditRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AuditRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+
+    /**
+     * Try to publish given record, might be called from any thread.
+     *
+     * @param record audit record
+     * @return false if the buffer is full
+     */
+    boolean offer(AuditRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = record;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Move published records to the given list, might be called only from the
+     * consumer thread.
+     *
+     * @param target target list
+     * @param limit  maximal number of moved records
+     * @return number of moved records
+     */
+    int drainTo(List<AuditRecord> target, int limit) {
+        int count = 0;
+        while (count < limit) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+
+            target.add(slots[index]);
+            slots[index] = null;
+            sequences.lazySet(index, head + slots.length);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get capacity of the buffer.
+     *
+     * @return number of slots
+     */
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,26 @@
+package cz.polankam.security.acl.audit;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the audit records, it is called only from the background
+ * writer of {@link AsyncAuditLog}.
+ * <p>
+ * Created by Martin Polanka
+ */
+public interface AuditSink extends AutoCloseable {
+
+    /**
+     * Write batch of records.
+     *
+     * @param records records ordered by their publication
+     * @throws IOException in case of write failure
+     */
+    void write(List<AuditRecord> records) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+        // nothing to release by default
+    }
+}
@@ -0,0 +1,88 @@
+package cz.polankam.security.acl.audit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Audit sink which appends records as lines to the local file. When the file
+ * exceeds maximal size, it is rolled to <code>file.1</code>, older files are
+ * shifted and only given number of them is kept.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class RollingFileAuditSink implements AuditSink {
+
+    private final Path file;
+    private final long maxFileSize;
+    private final int maxBackups;
+    private Writer writer;
+    private long size;
+
+    /**
+     * Constructor.
+     *
+     * @param file        path of the active file
+     * @param maxFileSize maximal size of the file in bytes before rolling
+     * @param maxBackups  number of kept rolled files
+     * @throws IOException if the file cannot be opened
+     */
+    public RollingFileAuditSink(Path file, long maxFileSize, int maxBackups) throws IOException {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxBackups = maxBackups;
+        open();
+    }
+
+
+    private void open() throws IOException {
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        size = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        for (int i = maxBackups - 1; i >= 1; i--) {
+            Path source = backup(i);
+            if (Files.exists(source)) {
+                Files.move(source, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxBackups > 0) {
+            Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        open();
+    }
+
+    private Path backup(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    @Override
+    public synchronized void write(List<AuditRecord> records) throws IOException {
+        for (AuditRecord record : records) {
+            String line = record + "\n";
+            long length = line.getBytes(StandardCharsets.UTF_8).length;
+            if (size > 0 && size + length > maxFileSize) {
+                writer.flush();
+                roll();
+            }
+            writer.write(line);
+            size += length;
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,240 @@
+package cz.polankam.security.acl.bulk;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.IPermissionsService;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Offline engine which evaluates the complete access matrix of users,
+ * resources and actions, e.g. for security reviews. Users are grouped by
+ * their authorities and decisions which do not depend on any condition are
+ * taken only once for the whole group. Resources are loaded in batches
+ * through {@link cz.polankam.security.acl.IResourceRepository#findAllById(Collection)}
+ * within the read-only transaction of the permission evaluator and batches are
+ * evaluated in parallel on the fork/join pool. Decisions are
+ * streamed to the sink as soon as they are taken, the matrix itself is never
+ * held in memory.
+ * <p>
+ * Checks are done through the permission evaluator, therefore if it has audit
+ * log, all evaluated conditional decisions are recorded there as well.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class AccessMatrixEngine {
+
+    /**
+     * Permission evaluator which takes decisions
+     */
+    private final AclPermissionEvaluator permissionEvaluator;
+    /**
+     * Permission service with resource repositories
+     */
+    private final IPermissionsService permissionsService;
+    /**
+     * Pool in which the matrix is evaluated
+     */
+    private final ForkJoinPool pool;
+
+    private int batchSize = 500;
+
+    /**
+     * Constructor, matrix is evaluated in the own pool of the engine, so
+     * that the blocking loads of the resources do not starve the common pool.
+     * Idle threads of the pool are terminated automatically.
+     *
+     * @param permissionEvaluator permission evaluator
+     * @param permissionsService  permission service
+     */
+    public AccessMatrixEngine(AclPermissionEvaluator permissionEvaluator, IPermissionsService permissionsService) {
+        this(permissionEvaluator, permissionsService, new ForkJoinPool());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param permissionEvaluator permission evaluator
+     * @param permissionsService  permission service
+     * @param pool                pool in which the matrix is evaluated
+     */
+    public AccessMatrixEngine(AclPermissionEvaluator permissionEvaluator, IPermissionsService permissionsService,
+                              ForkJoinPool pool) {
+        this.permissionEvaluator = permissionEvaluator;
+        this.permissionsService = permissionsService;
+        this.pool = pool;
+    }
+
+
+    /**
+     * Set number of resources which are loaded and evaluated together,
+     * default is 500.
+     *
+     * @param batchSize number of resources in the batch
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size has to be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Evaluate access of all users to all given resources and actions and
+     * give decisions to the sink. Method returns when all decisions were
+     * given to the sink. Resources which do not exist are allowed only if the
+     * decision does not depend on any condition.
+     *
+     * @param users    users
+     * @param resource textual representation of the resource
+     * @param ids      identifications of the resources
+     * @param actions  actions on the resource
+     * @param sink     receiver of the decisions
+     */
+    public void evaluate(Collection<? extends UserDetails> users, String resource, Collection<?> ids,
+                         Collection<String> actions, AccessMatrixSink sink) {
+        List<List<UserDetails>> groups = groupByAuthorities(users);
+        List<Object> idList = new ArrayList<>(ids);
+        List<String> actionList = new ArrayList<>(actions);
+
+        List<BatchTask> batches = new ArrayList<>();
+        for (int from = 0; from < idList.size(); from += batchSize) {
+            List<Object> batch = idList.subList(from, Math.min(idList.size(), from + batchSize));
+            batches.add(new BatchTask(groups, resource, batch, actionList, sink));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(batches);
+            }
+        });
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static List<List<UserDetails>> groupByAuthorities(Collection<? extends UserDetails> users) {
+        Map<List<String>, List<UserDetails>> groups = new LinkedHashMap<>();
+        for (UserDetails user : users) {
+            List<String> authorities = new ArrayList<>();
+            for (GrantedAuthority authority : user.getAuthorities()) {
+                authorities.add(authority.getAuthority());
+            }
+            Collections.sort(authorities);
+            groups.computeIfAbsent(authorities, ignored -> new ArrayList<>()).add(user);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * Evaluation of the single batch of resources, entities of the batch are
+     * loaded and all groups which need them are evaluated within one
+     * read-only transaction of the permission evaluator.
+     */
+    private final class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<UserDetails>> groups;
+        private final String resource;
+        private final List<Object> ids;
+        private final List<String> actions;
+        private final AccessMatrixSink sink;
+
+        private BatchTask(List<List<UserDetails>> groups, String resource, List<Object> ids,
+                          List<String> actions, AccessMatrixSink sink) {
+            this.groups = groups;
+            this.resource = resource;
+            this.ids = ids;
+            this.actions = actions;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            // entities are loaded only if some group needs them
+            List<List<UserDetails>> conditional = new ArrayList<>();
+            for (List<UserDetails> group : groups) {
+                boolean decided = true;
+                for (String action : actions) {
+                    if (permissionEvaluator.decideUnconditionally(group.get(0), resource, action) == null) {
+                        decided = false;
+                        break;
+                    }
+                }
+                if (decided) {
+                    emitUnconditional(group);
+                } else {
+                    conditional.add(group);
+                }
+            }
+            if (conditional.isEmpty()) {
+                return;
+            }
+
+            // entities are bound to the transaction in which they were
+            // loaded, therefore the groups are evaluated on this thread
+            permissionEvaluator.inTransaction(() -> {
+                Map<Object, Object> loaded = permissionsService.getResource(resource).findAllById(ids);
+                for (List<UserDetails> group : conditional) {
+                    evaluateGroup(group, loaded);
+                }
+                return null;
+            });
+        }
+
+        private void emitUnconditional(List<UserDetails> group) {
+            for (String action : actions) {
+                boolean allowed = Boolean.TRUE.equals(
+                        permissionEvaluator.decideUnconditionally(group.get(0), resource, action));
+                for (UserDetails user : group) {
+                    for (Object id : ids) {
+                        sink.accept(user, resource, id, action, allowed);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Evaluate the batch of resources for the single group of users which
+         * share authorities.
+         *
+         * @param group    users with the same authorities
+         * @param entities loaded entities indexed by their identifications
+         */
+        private void evaluateGroup(List<UserDetails> group, Map<Object, Object> entities) {
+            for (String action : actions) {
+                Boolean unconditional = permissionEvaluator.decideUnconditionally(group.get(0), resource, action);
+                for (UserDetails user : group) {
+                    if (unconditional != null) {
+                        for (Object id : ids) {
+                            sink.accept(user, resource, id, action, unconditional);
+                        }
+                        continue;
+                    }
+
+                    Authentication authentication =
+                            UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+                    Set<Object> allowed = Collections.newSetFromMap(new IdentityHashMap<>());
+                    allowed.addAll(permissionEvaluator.filter(authentication, entities.values(), resource, action));
+                    for (Object id : ids) {
+                        Object entity = entities.get(id);
+                        sink.accept(user, resource, id, action, entity != null && allowed.contains(entity));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package cz.polankam.security.acl.bulk;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Receiver of the decisions of the access matrix. It is called concurrently
+ * from the worker threads of the engine, therefore implementations have to be
+ * thread-safe.
+ * <p>
+ * Created by Martin Polanka
+ */
+@FunctionalInterface
+public interface AccessMatrixSink {
+
+    /**
+     * Accept single decision of the matrix.
+     *
+     * @param user     user
+     * @param resource textual representation of the resource
+     * @param id       identification of the resource
+     * @param action   action on the resource
+     * @param allowed  true if the action is allowed
+     */
+    void accept(UserDetails user, String resource, Object id, String action, boolean allowed);
+}
@@ -33,4 +33,23 @@ final class AndCondition<T> implements PermissionCondition<T> {
     public boolean test(UserDetails user, T resource) {
         return Arrays.stream(conditions).allMatch(condition -> condition.test(user, resource));
     }
+
+    /**
+     * False if any of the conditions is false without the resource, true if
+     * all of them are true without the resource.
+     */
+    @Override
+    public Boolean preCheck(UserDetails user) {
+        Boolean result = Boolean.TRUE;
+        for (PermissionCondition<T> condition : conditions) {
+            Boolean partial = condition.preCheck(user);
+            if (Boolean.FALSE.equals(partial)) {
+                return Boolean.FALSE;
+            }
+            if (partial == null) {
+                result = null;
+            }
+        }
+        return result;
+    }
 }
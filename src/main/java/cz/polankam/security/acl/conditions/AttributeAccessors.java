@@ -0,0 +1,132 @@
+package cz.polankam.security.acl.conditions;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accessors of the attributes of the objects. Attribute is read by getter,
+ * boolean getter, record-style accessor or public field, method handle of the
+ * accessor is resolved only once for every class and attribute.
+ * <p>
+ * Created by Martin Polanka
+ */
+final class AttributeAccessors {
+
+    /**
+     * Type of all cached accessors, takes the object and returns the value
+     */
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+    /**
+     * Accessors indexed by class and attribute name
+     */
+    private static final ClassValue<Map<String, MethodHandle>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private AttributeAccessors() {
+        // nothing to see here
+    }
+
+
+    /**
+     * Read value of the given attribute, nested attributes are separated by
+     * dot. If any object on the way is null, null is returned.
+     *
+     * @param object    object from which attribute is read
+     * @param attribute name of the attribute
+     * @return value of the attribute
+     */
+    static Object get(Object object, String attribute) {
+        Object current = object;
+        int start = 0;
+        while (current != null) {
+            int end = attribute.indexOf('.', start);
+            String name = end < 0 ? attribute.substring(start) : attribute.substring(start, end);
+            current = read(current, name);
+            if (end < 0) {
+                return current;
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static Object read(Object object, String name) {
+        Map<String, MethodHandle> accessors = ACCESSORS.get(object.getClass());
+        MethodHandle accessor = accessors.get(name);
+        if (accessor == null) {
+            accessor = resolve(object.getClass(), name);
+            accessors.put(name, accessor);
+        }
+
+        try {
+            return (Object) accessor.invokeExact(object);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new PermissionException("Attribute '" + name + "' of '" + object.getClass().getName() +
+                    "' could not be read: " + e.getMessage());
+        }
+    }
+
+    private static MethodHandle resolve(Class<?> type, String name) {
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        try {
+            for (String methodName : new String[]{"get" + capitalized, "is" + capitalized, name}) {
+                Method method = findMethod(type, methodName);
+                if (method != null) {
+                    return MethodHandles.lookup().unreflect(method).asType(ACCESSOR_TYPE);
+                }
+            }
+
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (field.getName().equals(name) && Modifier.isPublic(field.getModifiers()) &&
+                            !Modifier.isStatic(field.getModifiers())) {
+                        return MethodHandles.lookup().unreflectGetter(field).asType(ACCESSOR_TYPE);
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new PermissionException("Attribute '" + name + "' of '" + type.getName() +
+                    "' is not accessible: " + e.getMessage());
+        }
+        throw new PermissionException("Attribute '" + name + "' not found in '" + type.getName() + "'");
+    }
+
+    private static Method findMethod(Class<?> type, String name) {
+        Method found;
+        try {
+            found = type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        if (found.getReturnType() == void.class || Modifier.isStatic(found.getModifiers())) {
+            return null;
+        }
+
+        if (!Modifier.isPublic(found.getDeclaringClass().getModifiers())) {
+            // public method of not public class, e.g. anonymous class or
+            // lambda, has to be made accessible
+            try {
+                found.setAccessible(true);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return found;
+    }
+}
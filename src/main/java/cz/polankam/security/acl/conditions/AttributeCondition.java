@@ -0,0 +1,161 @@
+package cz.polankam.security.acl.conditions;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Declarative condition which compares attribute of the resource with the
+ * operand. Attributes are read through method handles resolved only once for
+ * every class of the resource. Conditions are comparable and they can be
+ * inspected, therefore they can be used in caching keys or translated into
+ * queries.
+ * Creation is done by provided factory {@link ConditionsFactory}.
+ *
+ * Created by Martin Polanka
+ */
+public final class AttributeCondition implements PermissionCondition<Object> {
+
+    /**
+     * Comparison of the attribute with the operand.
+     */
+    public enum Operator {
+        /**
+         * Attribute equals to the operand
+         */
+        EQUALS,
+        /**
+         * Attribute is contained in the collection given by the operand
+         */
+        IN,
+        /**
+         * Attribute is true, operand is not used
+         */
+        IS_TRUE
+    }
+
+    /**
+     * Name of the resource attribute, nested attributes are separated by dot
+     */
+    private final String attribute;
+    /**
+     * Comparison operator
+     */
+    private final Operator operator;
+    /**
+     * Operand compared with the attribute, might be null
+     */
+    private final AttributeOperand operand;
+
+    /**
+     * Constructor.
+     * @param attribute name of the resource attribute
+     * @param operator comparison operator
+     * @param operand operand compared with the attribute, required by all
+     *                operators except {@link Operator#IS_TRUE}
+     */
+    AttributeCondition(String attribute, Operator operator, AttributeOperand operand) {
+        this.attribute = Objects.requireNonNull(attribute);
+        this.operator = Objects.requireNonNull(operator);
+        this.operand = operator == Operator.IS_TRUE ? operand : Objects.requireNonNull(operand);
+    }
+
+
+    /**
+     * Get name of the resource attribute.
+     * @return attribute name
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Get comparison operator.
+     * @return operator
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Get operand compared with the attribute.
+     * @return operand or null
+     */
+    public AttributeOperand getOperand() {
+        return operand;
+    }
+
+    @Override
+    public boolean test(UserDetails user, Object resource) {
+        if (resource == null) {
+            return false;
+        }
+
+        Object value = AttributeAccessors.get(resource, attribute);
+        switch (operator) {
+            case IS_TRUE:
+                return Boolean.TRUE.equals(value);
+            case EQUALS:
+                return value != null && valueEquals(value, operand.resolve(user));
+            case IN:
+                Object collection = operand.resolve(user);
+                if (value == null || !(collection instanceof Collection)) {
+                    return false;
+                }
+                for (Object element : (Collection<?>) collection) {
+                    if (valueEquals(value, element)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Compare two values, integral numbers of different types are compared
+     * by their values.
+     */
+    private static boolean valueEquals(Object first, Object second) {
+        if (isIntegral(first) && isIntegral(second)) {
+            return ((Number) first).longValue() == ((Number) second).longValue();
+        }
+        return Objects.equals(first, second);
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AttributeCondition)) {
+            return false;
+        }
+        AttributeCondition other = (AttributeCondition) o;
+        return attribute.equals(other.attribute) && operator == other.operator &&
+                Objects.equals(operand, other.operand);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(attribute, operator, operand);
+    }
+
+    @Override
+    public String toString() {
+        switch (operator) {
+            case IS_TRUE:
+                return attribute + " is true";
+            case IN:
+                return attribute + " in " + operand;
+            default:
+                return attribute + " == " + operand;
+        }
+    }
+}
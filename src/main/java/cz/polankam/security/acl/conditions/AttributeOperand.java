@@ -0,0 +1,101 @@
+package cz.polankam.security.acl.conditions;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Objects;
+
+/**
+ * Operand of the declarative attribute condition, which is compared with the
+ * attribute of the resource. Operand is either constant value, or attribute
+ * of the currently logged user. Operands are comparable, therefore they can
+ * be used in caching keys or translated into queries.
+ * Creation is done by provided factory {@link ConditionsFactory}.
+ *
+ * Created by Martin Polanka
+ */
+public final class AttributeOperand {
+
+    /**
+     * Kind of the operand.
+     */
+    public enum Kind {
+        /**
+         * Constant value
+         */
+        CONSTANT,
+        /**
+         * Attribute of the currently logged user
+         */
+        PRINCIPAL
+    }
+
+    /**
+     * Kind of this operand
+     */
+    private final Kind kind;
+    /**
+     * Constant value or name of the user attribute
+     */
+    private final Object value;
+
+    /**
+     * Constructor.
+     * @param kind kind of the operand
+     * @param value constant value or name of the user attribute
+     */
+    AttributeOperand(Kind kind, Object value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+
+    /**
+     * Get kind of the operand.
+     * @return kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get constant value or name of the user attribute.
+     * @return value of the operand
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Resolve value of the operand for the given user.
+     * @param user currently logged user
+     * @return resolved value
+     */
+    Object resolve(UserDetails user) {
+        if (kind == Kind.CONSTANT) {
+            return value;
+        }
+        return AttributeAccessors.get(user, (String) value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AttributeOperand)) {
+            return false;
+        }
+        AttributeOperand other = (AttributeOperand) o;
+        return kind == other.kind && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, value);
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.PRINCIPAL ? "principal." + value : String.valueOf(value);
+    }
+}
@@ -1,5 +1,9 @@
 package cz.polankam.security.acl.conditions;
 
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.function.Predicate;
+
 /**
  * Public factory for common permission conditions.
  *
@@ -39,4 +43,72 @@ public class ConditionsFactory {
     public static <T> PermissionCondition<T> truthy() {
         return new TrueCondition<>();
     }
+
+    /**
+     * Create condition which depends only on the currently logged user, it is
+     * evaluated before the resource is loaded.
+     * @param predicate predicate evaluated on the user
+     * @param <T> type of resource given in testing method
+     * @return created condition
+     */
+    public static <T> PermissionCondition<T> user(Predicate<UserDetails> predicate) {
+        return new UserCondition<>(predicate);
+    }
+
+    /**
+     * Create declarative condition which is true if the attribute of the
+     * resource equals to the operand. Nested attributes are separated by dot.
+     * @param attribute name of the resource attribute
+     * @param operand operand created by {@link #principalAttr(String)} or {@link #value(Object)}
+     * @param <T> type of resource given in testing method
+     * @return created condition
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PermissionCondition<T> attributeEquals(String attribute, AttributeOperand operand) {
+        return (PermissionCondition<T>) new AttributeCondition(attribute, AttributeCondition.Operator.EQUALS, operand);
+    }
+
+    /**
+     * Create declarative condition which is true if the attribute of the
+     * resource is contained in the collection given by the operand.
+     * @param attribute name of the resource attribute
+     * @param operand operand created by {@link #principalAttr(String)} or {@link #value(Object)}
+     * @param <T> type of resource given in testing method
+     * @return created condition
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PermissionCondition<T> attributeIn(String attribute, AttributeOperand operand) {
+        return (PermissionCondition<T>) new AttributeCondition(attribute, AttributeCondition.Operator.IN, operand);
+    }
+
+    /**
+     * Create declarative condition which is true if the boolean attribute of
+     * the resource is true.
+     * @param attribute name of the resource attribute
+     * @param <T> type of resource given in testing method
+     * @return created condition
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PermissionCondition<T> attributeTrue(String attribute) {
+        return (PermissionCondition<T>) new AttributeCondition(attribute, AttributeCondition.Operator.IS_TRUE, null);
+    }
+
+    /**
+     * Create operand which is resolved to the attribute of currently logged
+     * user. Nested attributes are separated by dot.
+     * @param attribute name of the user attribute
+     * @return created operand
+     */
+    public static AttributeOperand principalAttr(String attribute) {
+        return new AttributeOperand(AttributeOperand.Kind.PRINCIPAL, attribute);
+    }
+
+    /**
+     * Create operand with the constant value.
+     * @param value constant value
+     * @return created operand
+     */
+    public static AttributeOperand value(Object value) {
+        return new AttributeOperand(AttributeOperand.Kind.CONSTANT, value);
+    }
 }
@@ -33,4 +33,23 @@ final class OrCondition<T> implements PermissionCondition<T> {
     public boolean test(UserDetails user, T resource) {
         return Arrays.stream(conditions).anyMatch(condition -> condition.test(user, resource));
     }
+
+    /**
+     * True if any of the conditions is true without the resource, false if
+     * all of them are false without the resource.
+     */
+    @Override
+    public Boolean preCheck(UserDetails user) {
+        Boolean result = Boolean.FALSE;
+        for (PermissionCondition<T> condition : conditions) {
+            Boolean partial = condition.preCheck(user);
+            if (Boolean.TRUE.equals(partial)) {
+                return Boolean.TRUE;
+            }
+            if (partial == null) {
+                result = null;
+            }
+        }
+        return result;
+    }
 }
@@ -19,4 +19,21 @@ public interface PermissionCondition<T> {
      * @return true if condition is truthy, false otherwise
      */
     boolean test(UserDetails user, T resource);
+
+    /**
+     * Evaluate the part of the condition which depends only on the user, it
+     * is called before the resource is loaded. If the result is known, the
+     * resource is not loaded at all, therefore the result has to be the same
+     * as the result of {@link #test(UserDetails, Object)} for any resource.
+     * Note that the resource which is not loaded is not checked for existence
+     * either, so the access is decided even for unknown identifications.
+     * Default implementation needs the resource, only the conditions created
+     * by {@link ConditionsFactory#user(java.util.function.Predicate)} and their
+     * combinations are pre-checked.
+     * @param user user against which condition is evaluated
+     * @return result of the condition or null if it depends on the resource
+     */
+    default Boolean preCheck(UserDetails user) {
+        return null;
+    }
 }
@@ -0,0 +1,42 @@
+package cz.polankam.security.acl.conditions;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Condition which depends only on the user, the resource is ignored. Result
+ * is known before the resource is loaded, therefore the resource does not
+ * have to be loaded at all.
+ * Creation is done by provided factory {@link ConditionsFactory}.
+ * @param <T> type of resource given in testing method
+ *
+ * Created by Martin Polanka
+ */
+final class UserCondition<T> implements PermissionCondition<T> {
+
+    /**
+     * Predicate evaluated on the user.
+     */
+    private final Predicate<UserDetails> predicate;
+
+    /**
+     * Constructor.
+     * @param predicate predicate evaluated on the user
+     */
+    UserCondition(Predicate<UserDetails> predicate) {
+        this.predicate = Objects.requireNonNull(predicate);
+    }
+
+
+    @Override
+    public boolean test(UserDetails user, T resource) {
+        return predicate.test(user);
+    }
+
+    @Override
+    public Boolean preCheck(UserDetails user) {
+        return predicate.test(user);
+    }
+}
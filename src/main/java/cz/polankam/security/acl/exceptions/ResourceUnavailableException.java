@@ -0,0 +1,31 @@
+package cz.polankam.security.acl.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception which is thrown in case the resource could not be loaded in time,
+ * because its repository is slow or overloaded.
+ *
+ * Created by Martin Polanka
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ResourceUnavailableException extends RuntimeException {
+
+    /**
+     * Construct exception with given cause message.
+     * @param message description of error
+     */
+    public ResourceUnavailableException(String message) {
+        super(message);
+    }
+
+    /**
+     * Construct exception with given cause message and cause.
+     * @param message description of error
+     * @param cause cause of the error
+     */
+    public ResourceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
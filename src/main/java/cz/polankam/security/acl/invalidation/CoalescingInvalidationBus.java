@@ -0,0 +1,104 @@
+package cz.polankam.security.acl.invalidation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator of the invalidation bus, which buffers published events and
+ * delivers them to the underlying bus coalesced in batches. Batch is flushed
+ * when it reaches the maximal size or after the given delay since the first
+ * buffered event.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class CoalescingInvalidationBus implements InvalidationBus {
+
+    /**
+     * Underlying bus which receives coalesced batches
+     */
+    private final InvalidationBus delegate;
+    /**
+     * Maximal number of buffered events before flush
+     */
+    private final int maxBatchSize;
+    /**
+     * Maximal delay of the buffered event
+     */
+    private final Duration maxDelay;
+    /**
+     * Scheduler of delayed flushes
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Buffered events, guarded by this
+     */
+    private List<InvalidationEvent> buffer = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param delegate     underlying bus
+     * @param maxBatchSize maximal number of buffered events before flush
+     * @param maxDelay     maximal delay of the buffered event
+     */
+    public CoalescingInvalidationBus(InvalidationBus delegate, int maxBatchSize, Duration maxDelay) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jaclp-invalidation-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    @Override
+    public void publish(Collection<InvalidationEvent> events) {
+        boolean flushNow;
+        boolean schedule;
+        synchronized (this) {
+            schedule = buffer.isEmpty();
+            buffer.addAll(events);
+            flushNow = buffer.size() >= maxBatchSize;
+        }
+
+        if (flushNow) {
+            flush();
+        } else if (schedule) {
+            scheduler.schedule(this::flush, maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Deliver all buffered events to the underlying bus.
+     */
+    public void flush() {
+        List<InvalidationEvent> batch;
+        synchronized (this) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = buffer;
+            buffer = new ArrayList<>();
+        }
+        delegate.publish(InvalidationEvent.coalesce(batch));
+    }
+
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        delegate.subscribe(listener);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        flush();
+        delegate.close();
+    }
+}
@@ -0,0 +1,294 @@
+package cz.polankam.security.acl.invalidation;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidation bus shared by several nodes through the append-only file.
+ * Published events are delivered to the local listeners immediately and
+ * appended to the file, other nodes periodically read the new part of the
+ * file and deliver events published by others. It is meant as stand-in for
+ * real message brokers in tests and simple deployments on shared storage.
+ * Identifications of the resources are delivered to other nodes as strings.
+ * Failures of the polling, malformed lines and failures of the listeners are
+ * logged and skipped, so that they do not stop delivery of later events.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class FileInvalidationBus implements InvalidationBus {
+
+    private static final Log LOG = LogFactory.getLog(FileInvalidationBus.class);
+    private static final String FIELD_SEPARATOR = "\t";
+    /**
+     * Maximal number of bytes read from the file at once
+     */
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+    /**
+     * File locks are held on behalf of the whole JVM, therefore access of the
+     * buses within one JVM has to be serialized
+     */
+    private static final Object FILE_ACCESS = new Object();
+
+    /**
+     * Shared file with events
+     */
+    private final Path file;
+    /**
+     * Identification of this node
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+    /**
+     * Subscribed listeners
+     */
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Scheduler of the polling, null if polling is manual
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Position in the file up to which events were read, guarded by this
+     */
+    private long position;
+
+    /**
+     * Constructor, events already present in the file are skipped.
+     *
+     * @param file         shared file with events
+     * @param pollInterval interval of file polling, if null {@link #poll()} has to be called manually
+     */
+    public FileInvalidationBus(Path file, Duration pollInterval) {
+        this.file = file;
+        try (FileChannel channel = openChannel()) {
+            this.position = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (pollInterval != null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "jaclp-invalidation-poll");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = pollInterval.toNanos();
+            this.scheduler.scheduleWithFixedDelay(this::pollQuietly, interval, interval, TimeUnit.NANOSECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+
+    private FileChannel openChannel() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void publish(Collection<InvalidationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Collection<InvalidationEvent> coalesced = InvalidationEvent.coalesce(events);
+        StringBuilder builder = new StringBuilder();
+        for (InvalidationEvent event : coalesced) {
+            builder.append(nodeId).append(FIELD_SEPARATOR)
+                    .append(event.getKind()).append(FIELD_SEPARATOR)
+                    .append(encode(event.getKey())).append(FIELD_SEPARATOR)
+                    .append(encode(event.getId())).append('\n');
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+        synchronized (FILE_ACCESS) {
+            try (FileChannel channel = openChannel()) {
+                FileLock lock = channel.lock();
+                try {
+                    channel.position(channel.size());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        deliver(coalesced);
+    }
+
+    /**
+     * Read events appended to the file by other nodes since the last poll and
+     * deliver them to the local listeners.
+     */
+    public synchronized void poll() {
+        List<InvalidationEvent> events = new ArrayList<>();
+        synchronized (FILE_ACCESS) {
+            readEvents(events);
+        }
+        deliver(events);
+    }
+
+    /**
+     * Poll scheduled periodically, failure would cancel all later polls,
+     * therefore it is only logged.
+     */
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOG.error("Invalidation events could not be read from '" + file + "'", e);
+        }
+    }
+
+    private void readEvents(List<InvalidationEvent> events) {
+        try (FileChannel channel = openChannel()) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                long size = channel.size();
+                while (position < size && readChunk(channel, size, events)) {
+                    // read until the end of the file or the incomplete line
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read complete lines from the current position, at most
+     * {@link #MAX_CHUNK_SIZE} bytes at once.
+     *
+     * @param channel channel of the shared file
+     * @param size    size of the file
+     * @param events  read events
+     * @return true if some lines were read or skipped
+     * @throws IOException if the file could not be read
+     */
+    private boolean readChunk(FileChannel channel, long size, List<InvalidationEvent> events) throws IOException {
+        int length = (int) Math.min(size - position, MAX_CHUNK_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // read the whole chunk
+        }
+
+        byte[] bytes = buffer.array();
+        int end = buffer.position() - 1;
+        while (end >= 0 && bytes[end] != '\n') {
+            end--;
+        }
+        if (end < 0) {
+            if (length < MAX_CHUNK_SIZE) {
+                return false;
+            }
+            // line does not fit into the chunk, its rest is skipped as malformed line
+            LOG.warn("Invalidation event at position " + position + " longer than " + MAX_CHUNK_SIZE + " bytes skipped");
+            position += length;
+            return true;
+        }
+
+        String content = new String(bytes, 0, end, StandardCharsets.UTF_8);
+        for (String line : content.split("\n")) {
+            String[] fields = line.split(FIELD_SEPARATOR, -1);
+            if (fields.length != 4 || fields[0].equals(nodeId)) {
+                continue;
+            }
+            try {
+                events.add(parse(fields));
+            } catch (RuntimeException e) {
+                LOG.warn("Malformed invalidation event '" + line + "' skipped", e);
+            }
+        }
+        position += end + 1;
+        return true;
+    }
+
+    private void deliver(Collection<InvalidationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Collection<InvalidationEvent> coalesced = InvalidationEvent.coalesce(events);
+        for (InvalidationListener listener : listeners) {
+            try {
+                listener.invalidate(coalesced);
+            } catch (RuntimeException e) {
+                LOG.error("Invalidation listener failed", e);
+            }
+        }
+    }
+
+    private static InvalidationEvent parse(String[] fields) {
+        InvalidationEvent.Kind kind = InvalidationEvent.Kind.valueOf(fields[1]);
+        String key = decode(fields[2]);
+        String id = decode(fields[3]);
+        switch (kind) {
+            case ALL:
+                return InvalidationEvent.all();
+            case ROLE:
+                return InvalidationEvent.role(key);
+            case RESOURCE:
+                return id == null ? InvalidationEvent.resource(key) : InvalidationEvent.resource(key, id);
+            default:
+                throw new PermissionException("Unknown invalidation event kind '" + kind + "'");
+        }
+    }
+
+    private static String encode(Object value) {
+        if (value == null) {
+            return "";
+        }
+        return "=" + value.toString().replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String decode(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cz.polankam.security.acl.invalidation;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Bus which distributes invalidation events to all subscribed listeners,
+ * implementations might deliver the events also to other nodes of the
+ * application. Delivery happens outside of the permission checks, therefore
+ * caches are consulted locally without any remote calls.
+ * <p>
+ * Created by Martin Polanka
+ */
+public interface InvalidationBus extends AutoCloseable {
+
+    /**
+     * Publish batch of invalidation events.
+     *
+     * @param events invalidation events
+     */
+    void publish(Collection<InvalidationEvent> events);
+
+    /**
+     * Publish single invalidation event.
+     *
+     * @param event invalidation event
+     */
+    default void publish(InvalidationEvent event) {
+        publish(Collections.singletonList(event));
+    }
+
+    /**
+     * Subscribe listener which will receive all published events.
+     *
+     * @param listener listener
+     */
+    void subscribe(InvalidationListener listener);
+
+    /**
+     * Release resources held by the bus.
+     */
+    @Override
+    default void close() {
+        // nothing to release by default
+    }
+}
@@ -0,0 +1,174 @@
+package cz.polankam.security.acl.invalidation;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Event which tells caches that some permission related data were changed and
+ * should not be used anymore. Event might target single role, single resource
+ * object, all objects of the resource or everything.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class InvalidationEvent {
+
+    /**
+     * Kind of the invalidated data.
+     */
+    public enum Kind {
+        /** Everything should be invalidated */
+        ALL,
+        /** Definition of the role was changed */
+        ROLE,
+        /** Resource object or all objects of the resource were changed */
+        RESOURCE
+    }
+
+    private static final InvalidationEvent ALL = new InvalidationEvent(Kind.ALL, null, null);
+
+    private final Kind kind;
+    private final String key;
+    private final Object id;
+
+
+    private InvalidationEvent(Kind kind, String key, Object id) {
+        this.kind = kind;
+        this.key = key;
+        this.id = id;
+    }
+
+    /**
+     * Event which invalidates everything.
+     *
+     * @return event
+     */
+    public static InvalidationEvent all() {
+        return ALL;
+    }
+
+    /**
+     * Event which invalidates given role.
+     *
+     * @param role textual role representation
+     * @return event
+     */
+    public static InvalidationEvent role(String role) {
+        return new InvalidationEvent(Kind.ROLE, Objects.requireNonNull(role), null);
+    }
+
+    /**
+     * Event which invalidates all objects of the given resource.
+     *
+     * @param resource textual resource representation
+     * @return event
+     */
+    public static InvalidationEvent resource(String resource) {
+        return new InvalidationEvent(Kind.RESOURCE, Objects.requireNonNull(resource), null);
+    }
+
+    /**
+     * Event which invalidates single object of the given resource.
+     *
+     * @param resource textual resource representation
+     * @param id       identification of the resource object
+     * @return event
+     */
+    public static InvalidationEvent resource(String resource, Object id) {
+        return new InvalidationEvent(Kind.RESOURCE, Objects.requireNonNull(resource), id);
+    }
+
+    /**
+     * Get kind of the event.
+     *
+     * @return kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get role or resource targeted by the event, null for {@link Kind#ALL}.
+     *
+     * @return textual representation of role or resource
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Get identification of the resource object, null if the event targets
+     * all objects of the resource or it is not resource event.
+     *
+     * @return identification of the resource object
+     */
+    public Object getId() {
+        return id;
+    }
+
+    /**
+     * Determine if this event invalidates also everything the given event does.
+     *
+     * @param other other event
+     * @return true if other event is redundant next to this event
+     */
+    public boolean covers(InvalidationEvent other) {
+        if (kind == Kind.ALL || this.equals(other)) {
+            return true;
+        }
+        return kind == Kind.RESOURCE && id == null &&
+                other.kind == Kind.RESOURCE && key.equals(other.key);
+    }
+
+    /**
+     * Coalesce given events into the smallest set of events which has the same
+     * invalidation effect, duplicates and events covered by broader events are
+     * removed. Order of the events is preserved.
+     *
+     * @param events events to coalesce
+     * @return coalesced events
+     */
+    public static Set<InvalidationEvent> coalesce(Collection<InvalidationEvent> events) {
+        Set<InvalidationEvent> result = new LinkedHashSet<>();
+        Set<String> wholeResources = new HashSet<>();
+        for (InvalidationEvent event : events) {
+            if (event.kind == Kind.ALL) {
+                result.clear();
+                result.add(ALL);
+                return result;
+            }
+            if (event.kind == Kind.RESOURCE && event.id == null) {
+                wholeResources.add(event.key);
+            }
+            result.add(event);
+        }
+
+        result.removeIf(event -> event.kind == Kind.RESOURCE && event.id != null &&
+                wholeResources.contains(event.key));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InvalidationEvent)) {
+            return false;
+        }
+        InvalidationEvent that = (InvalidationEvent) o;
+        return kind == that.kind && Objects.equals(key, that.key) && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, key, id);
+    }
+
+    @Override
+    public String toString() {
+        return kind + (key != null ? " " + key : "") + (id != null ? " " + id : "");
+    }
+}
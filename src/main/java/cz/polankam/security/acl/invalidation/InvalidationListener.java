@@ -0,0 +1,20 @@
+package cz.polankam.security.acl.invalidation;
+
+import java.util.Collection;
+
+/**
+ * Listener of invalidation events, implemented by the caches which hold
+ * permission related data.
+ * <p>
+ * Created by Martin Polanka
+ */
+@FunctionalInterface
+public interface InvalidationListener {
+
+    /**
+     * Invalidate cached data targeted by the given batch of events.
+     *
+     * @param events coalesced invalidation events
+     */
+    void invalidate(Collection<InvalidationEvent> events);
+}
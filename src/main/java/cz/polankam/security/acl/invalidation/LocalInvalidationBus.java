@@ -0,0 +1,37 @@
+package cz.polankam.security.acl.invalidation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-JVM invalidation bus, which synchronously delivers coalesced events to
+ * all subscribed listeners.
+ * <p>
+ * Created by Martin Polanka
+ */
+public class LocalInvalidationBus implements InvalidationBus {
+
+    /**
+     * Subscribed listeners
+     */
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+
+    @Override
+    public void publish(Collection<InvalidationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Collection<InvalidationEvent> coalesced = InvalidationEvent.coalesce(events);
+        for (InvalidationListener listener : listeners) {
+            listener.invalidate(coalesced);
+        }
+    }
+
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+}
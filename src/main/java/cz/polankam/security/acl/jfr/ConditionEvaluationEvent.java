@@ -0,0 +1,83 @@
+package cz.polankam.security.acl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the single evaluation of the rule condition.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Name("jaclp.ConditionEvaluation")
+@Label("Condition Evaluation")
+@Category("jaclp")
+@Description("Evaluation of the condition of the permission rule")
+@StackTrace(false)
+public class ConditionEvaluationEvent extends Event {
+
+    @Label("Resource")
+    private String resource;
+
+    @Label("Action")
+    private String action;
+
+    @Label("Rule Index")
+    @Description("Index of the rule within the ordered rules of the resource or within the ordered candidate rules of all levels of the hierarchical resource")
+    private int ruleIndex;
+
+    @Label("Condition")
+    private String condition;
+
+    @Label("Result")
+    private boolean result;
+
+
+    /**
+     * Set resource on which the condition was evaluated.
+     *
+     * @param resource textual representation of the resource
+     */
+    public void setResource(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Set checked action.
+     *
+     * @param action action on the resource
+     */
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    /**
+     * Set index of the rule.
+     *
+     * @param ruleIndex index within the ordered rules
+     */
+    public void setRuleIndex(int ruleIndex) {
+        this.ruleIndex = ruleIndex;
+    }
+
+    /**
+     * Set description of the condition.
+     *
+     * @param condition textual representation of the condition
+     */
+    public void setCondition(String condition) {
+        this.condition = condition;
+    }
+
+    /**
+     * Set result of the condition.
+     *
+     * @param result result of the condition
+     */
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+}
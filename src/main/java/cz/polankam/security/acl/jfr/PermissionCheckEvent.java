@@ -0,0 +1,73 @@
+package cz.polankam.security.acl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the single permission check of the evaluator,
+ * duration of the event covers the whole check including loading of the
+ * resource and evaluation of the conditions.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Name("jaclp.PermissionCheck")
+@Label("Permission Check")
+@Category("jaclp")
+@Description("Permission check of the ACL permission evaluator")
+@StackTrace(false)
+public class PermissionCheckEvent extends Event {
+
+    @Label("Resource")
+    private String resource;
+
+    @Label("Action")
+    private String action;
+
+    @Label("Allowed")
+    private boolean allowed;
+
+    @Label("Rule Index")
+    @Description("Index of the deciding rule within the ordered rules of the resource or within the ordered candidate rules of all levels of the hierarchical resource, -1 if no rule decided")
+    private int ruleIndex = -1;
+
+
+    /**
+     * Set checked resource.
+     *
+     * @param resource textual representation of the resource
+     */
+    public void setResource(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Set checked action.
+     *
+     * @param action action on the resource
+     */
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    /**
+     * Set decision of the check.
+     *
+     * @param allowed true if the action was allowed
+     */
+    public void setAllowed(boolean allowed) {
+        this.allowed = allowed;
+    }
+
+    /**
+     * Set index of the deciding rule.
+     *
+     * @param ruleIndex index within the ordered rules, -1 if no rule decided
+     */
+    public void setRuleIndex(int ruleIndex) {
+        this.ruleIndex = ruleIndex;
+    }
+}
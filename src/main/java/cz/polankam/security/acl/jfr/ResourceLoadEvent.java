@@ -0,0 +1,72 @@
+package cz.polankam.security.acl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the resource loaded from its repository during
+ * the permission check.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Name("jaclp.ResourceLoad")
+@Label("Resource Load")
+@Category("jaclp")
+@Description("Resource loaded from the repository during the permission check")
+@StackTrace(false)
+public class ResourceLoadEvent extends Event {
+
+    @Label("Resource")
+    private String resource;
+
+    @Label("Identification")
+    private String id;
+
+    @Label("Found")
+    private boolean found;
+
+    @Label("Failed")
+    @Description("True if the repository threw an exception")
+    private boolean failed;
+
+
+    /**
+     * Set loaded resource.
+     *
+     * @param resource textual representation of the resource
+     */
+    public void setResource(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Set identification of the loaded resource.
+     *
+     * @param id textual representation of the identification
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Set if the resource was found in the repository.
+     *
+     * @param found true if found
+     */
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    /**
+     * Set if loading of the resource failed with an exception.
+     *
+     * @param failed true if the repository threw
+     */
+    public void setFailed(boolean failed) {
+        this.failed = failed;
+    }
+}
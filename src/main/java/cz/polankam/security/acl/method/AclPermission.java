@@ -0,0 +1,42 @@
+package cz.polankam.security.acl.method;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for method authorization which checks permission of currently
+ * logged user for given resource and action without evaluation of any
+ * expression. It is equivalent of
+ * <code>@PreAuthorize("hasPermission(#id, 'group', 'view')")</code> or
+ * <code>@PreAuthorize("hasPermission('group', 'view')")</code> if id parameter
+ * is not given. Parameter names are resolved from the compiled classes,
+ * therefore code has to be compiled with <code>-parameters</code> flag.
+ * <p>
+ * Handled by {@link AclPermissionAuthorizationManager}.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AclPermission {
+
+    /**
+     * Textual representation of the resource.
+     */
+    String resource();
+
+    /**
+     * Textual representation of the action on the resource.
+     */
+    String action();
+
+    /**
+     * Name of the method parameter which contains resource identification,
+     * if empty permission is checked without identification.
+     */
+    String idParam() default "";
+}
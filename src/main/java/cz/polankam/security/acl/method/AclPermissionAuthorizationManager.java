@@ -0,0 +1,194 @@
+package cz.polankam.security.acl.method;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.method.AuthorizationInterceptorsOrder;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.core.Authentication;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Authorization manager for methods annotated with {@link AclPermission}.
+ * Resource, action and index of the identification parameter are resolved
+ * only once for every method, when the pointcut is matched during proxy
+ * creation, invocation then directly calls the permission evaluator without
+ * any expression parsing or evaluation.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class AclPermissionAuthorizationManager implements AuthorizationManager<MethodInvocation> {
+
+    /**
+     * Supplier of the evaluator, which allows lazy initialization
+     */
+    private final Supplier<AclPermissionEvaluator> permissionEvaluator;
+    /**
+     * Resolved bindings of the annotated methods indexed by the method and
+     * the target class
+     */
+    private final Map<MethodClassKey, Binding> bindings = new ConcurrentHashMap<>();
+    /**
+     * Discoverer of the parameter names
+     */
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    /**
+     * Constructor.
+     *
+     * @param permissionEvaluator supplier of permission evaluator
+     */
+    public AclPermissionAuthorizationManager(Supplier<AclPermissionEvaluator> permissionEvaluator) {
+        this.permissionEvaluator = permissionEvaluator;
+    }
+
+    /**
+     * Create method interceptor which authorizes methods annotated with
+     * {@link AclPermission}, it is ordered at the same place as pre-authorize
+     * interceptor.
+     *
+     * @param permissionEvaluator supplier of permission evaluator
+     * @return method interceptor
+     */
+    public static AuthorizationManagerBeforeMethodInterceptor interceptor(Supplier<AclPermissionEvaluator> permissionEvaluator) {
+        AclPermissionAuthorizationManager manager = new AclPermissionAuthorizationManager(permissionEvaluator);
+        AuthorizationManagerBeforeMethodInterceptor interceptor =
+                new AuthorizationManagerBeforeMethodInterceptor(manager.pointcut(), manager);
+        interceptor.setOrder(AuthorizationInterceptorsOrder.PRE_AUTHORIZE.getOrder());
+        return interceptor;
+    }
+
+
+    /**
+     * Pointcut matching methods annotated with {@link AclPermission}, bindings
+     * of the methods are resolved during matching.
+     *
+     * @return pointcut
+     */
+    public Pointcut pointcut() {
+        return new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return resolve(method, targetClass) != null;
+            }
+        };
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        Method method = invocation.getMethod();
+        Object target = invocation.getThis();
+        Binding binding = resolve(method, target != null ? AopUtils.getTargetClass(target) : method.getDeclaringClass());
+        if (binding == null) {
+            // not annotated method, abstain
+            return null;
+        }
+
+        AclPermissionEvaluator evaluator = permissionEvaluator.get();
+        boolean granted;
+        if (binding.idIndex < 0) {
+            granted = evaluator.hasPermission(authentication.get(), binding.resource, binding.action);
+        } else {
+            Object id = invocation.getArguments()[binding.idIndex];
+            // null cannot identify any resource, parameter type is checked
+            // to be serializable when the binding is resolved
+            granted = id != null &&
+                    evaluator.hasPermission(authentication.get(), (Serializable) id, binding.resource, binding.action);
+        }
+        return new AuthorizationDecision(granted);
+    }
+
+    /**
+     * Find annotation on the given method and resolve its binding.
+     *
+     * @param method      invoked method
+     * @param targetClass class of the target object
+     * @return binding or null if the method is not annotated
+     */
+    private Binding resolve(Method method, Class<?> targetClass) {
+        MethodClassKey key = new MethodClassKey(method, targetClass);
+        Binding binding = bindings.get(key);
+        if (binding != null) {
+            return binding;
+        }
+
+        Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        AclPermission annotation = AnnotationUtils.findAnnotation(specificMethod, AclPermission.class);
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(method, AclPermission.class);
+        }
+        if (annotation == null) {
+            return null;
+        }
+
+        binding = new Binding(annotation.resource(), annotation.action(), resolveIdIndex(specificMethod, annotation));
+        bindings.put(key, binding);
+        return binding;
+    }
+
+    private int resolveIdIndex(Method method, AclPermission annotation) {
+        if (annotation.idParam().isEmpty()) {
+            return -1;
+        }
+        return resolveIdIndex(method, annotation.idParam());
+    }
+
+    /**
+     * Find index of the method parameter with given name, which contains
+     * serializable identification of the resource.
+     *
+     * @param method  method
+     * @param idParam name of the parameter
+     * @return index of the parameter
+     */
+    static int resolveIdIndex(Method method, String idParam) {
+        String[] names = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+        if (names == null) {
+            throw new PermissionException("Parameter names of method '" + method +
+                    "' are not available, compile it with -parameters flag");
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (!names[i].equals(idParam)) {
+                continue;
+            }
+
+            Class<?> type = method.getParameterTypes()[i];
+            if (!type.isPrimitive() && !Serializable.class.isAssignableFrom(type)) {
+                throw new PermissionException("Parameter '" + names[i] + "' of method '" + method +
+                        "' is not serializable identification");
+            }
+            return i;
+        }
+        throw new PermissionException("Parameter '" + idParam + "' not found in method '" + method + "'");
+    }
+
+    /**
+     * Resolved annotation of the method.
+     */
+    private static final class Binding {
+        private final String resource;
+        private final String action;
+        private final int idIndex;
+
+        private Binding(String resource, String action, int idIndex) {
+            this.resource = resource;
+            this.action = action;
+            this.idIndex = idIndex;
+        }
+    }
+}
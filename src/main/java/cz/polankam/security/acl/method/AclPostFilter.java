@@ -0,0 +1,35 @@
+package cz.polankam.security.acl.method;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for filtering of collections or arrays returned from the method,
+ * only elements on which currently logged user can perform given action are
+ * kept. It is batched equivalent of
+ * <code>@PostFilter("hasPermission(filterObject, 'group', 'view')")</code>,
+ * whole returned collection is given to the permission evaluator at once and
+ * conditions are evaluated directly on the returned objects.
+ * <p>
+ * Handled by {@link AclPostFilterMethodInterceptor}.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AclPostFilter {
+
+    /**
+     * Textual representation of the resource of the returned elements.
+     */
+    String resource();
+
+    /**
+     * Textual representation of the action on the resource.
+     */
+    String action();
+}
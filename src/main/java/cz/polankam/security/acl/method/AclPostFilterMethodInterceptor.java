@@ -0,0 +1,206 @@
+package cz.polankam.security.acl.method;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.authorization.method.AuthorizationInterceptorsOrder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Method interceptor which filters collections and arrays returned from the
+ * methods annotated with {@link AclPostFilter}. Returned elements are given to
+ * the permission evaluator in one batch. Collections are filtered in place, if
+ * the collection is unmodifiable, new collection of the same kind with allowed
+ * elements is returned, i.e. list, set, sorted set or queue.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class AclPostFilterMethodInterceptor implements MethodInterceptor, PointcutAdvisor, AopInfrastructureBean, Ordered {
+
+    /**
+     * Supplier of the evaluator, which allows lazy initialization
+     */
+    private final Supplier<AclPermissionEvaluator> permissionEvaluator;
+    /**
+     * Resolved annotations of the methods
+     */
+    private final Map<MethodClassKey, AclPostFilter> annotations = new ConcurrentHashMap<>();
+    /**
+     * Pointcut matching annotated methods
+     */
+    private final Pointcut pointcut = new StaticMethodMatcherPointcut() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return resolve(method, targetClass) != null;
+        }
+    };
+
+    private int order = AuthorizationInterceptorsOrder.POST_FILTER.getOrder();
+
+    /**
+     * Constructor.
+     *
+     * @param permissionEvaluator supplier of permission evaluator
+     */
+    public AclPostFilterMethodInterceptor(Supplier<AclPermissionEvaluator> permissionEvaluator) {
+        this.permissionEvaluator = permissionEvaluator;
+    }
+
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (result == null) {
+            return null;
+        }
+
+        Object target = invocation.getThis();
+        AclPostFilter annotation = resolve(invocation.getMethod(),
+                target != null ? AopUtils.getTargetClass(target) : invocation.getMethod().getDeclaringClass());
+        if (annotation == null) {
+            return result;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        AclPermissionEvaluator evaluator = permissionEvaluator.get();
+        if (result instanceof Collection) {
+            return filterCollection(evaluator, authentication, annotation, (Collection<?>) result,
+                    invocation.getMethod());
+        }
+        if (result instanceof Object[]) {
+            return filterArray(evaluator, authentication, annotation, (Object[]) result);
+        }
+        throw new PermissionException("Method '" + invocation.getMethod() +
+                "' annotated with AclPostFilter has to return collection or array");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object filterCollection(AclPermissionEvaluator evaluator, Authentication authentication,
+                                    AclPostFilter annotation, Collection<?> collection, Method method) {
+        List<?> allowed = evaluator.filter(authentication, collection, annotation.resource(), annotation.action());
+        if (allowed.size() == collection.size()) {
+            return collection;
+        }
+
+        try {
+            collection.clear();
+            ((Collection<Object>) collection).addAll(allowed);
+            return collection;
+        } catch (UnsupportedOperationException e) {
+            Collection<Object> copy = copyOf(collection, allowed);
+            if (!method.getReturnType().isInstance(copy)) {
+                throw new PermissionException("Method '" + method + "' annotated with AclPostFilter returned " +
+                        "unmodifiable collection, which cannot be replaced by '" + copy.getClass().getName() + "'");
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Create modifiable collection of the same kind as the original one.
+     *
+     * @param original original collection
+     * @param allowed  elements of the new collection
+     * @return new collection
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> copyOf(Collection<?> original, List<?> allowed) {
+        Collection<Object> copy;
+        if (original instanceof SortedSet) {
+            copy = new TreeSet<>((Comparator<Object>) ((SortedSet<?>) original).comparator());
+        } else if (original instanceof Set) {
+            copy = new LinkedHashSet<>();
+        } else if (original instanceof Queue) {
+            copy = new LinkedList<>();
+        } else {
+            copy = new ArrayList<>();
+        }
+        copy.addAll(allowed);
+        return copy;
+    }
+
+    private Object filterArray(AclPermissionEvaluator evaluator, Authentication authentication,
+                               AclPostFilter annotation, Object[] array) {
+        List<Object> elements = Arrays.asList(array);
+        List<?> allowed = evaluator.filter(authentication, elements, annotation.resource(), annotation.action());
+        Object result = Array.newInstance(array.getClass().getComponentType(), allowed.size());
+        for (int i = 0; i < allowed.size(); i++) {
+            Array.set(result, i, allowed.get(i));
+        }
+        return result;
+    }
+
+    private AclPostFilter resolve(Method method, Class<?> targetClass) {
+        MethodClassKey key = new MethodClassKey(method, targetClass);
+        AclPostFilter annotation = annotations.get(key);
+        if (annotation != null) {
+            return annotation;
+        }
+
+        annotation = AnnotationUtils.findAnnotation(AopUtils.getMostSpecificMethod(method, targetClass), AclPostFilter.class);
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(method, AclPostFilter.class);
+        }
+        if (annotation != null) {
+            annotations.put(key, annotation);
+        }
+        return annotation;
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return this;
+    }
+
+    @Override
+    public boolean isPerInstance() {
+        return true;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Set order of the interceptor, default is the order of post filter.
+     *
+     * @param order order
+     */
+    public void setOrder(int order) {
+        this.order = order;
+    }
+}
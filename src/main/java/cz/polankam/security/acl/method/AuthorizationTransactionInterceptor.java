@@ -0,0 +1,236 @@
+package cz.polankam.security.acl.method;
+
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.access.prepost.PreFilter;
+import org.springframework.security.authorization.method.AuthorizationInterceptorsOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Method interceptor which opens single read-only transaction for all
+ * permission checks of the secured method invocation. It is ordered before
+ * all authorization interceptors, so that all checks of the invocation join
+ * the same transaction and the same persistence context, resources are then
+ * loaded only once. If there is already active transaction, it is joined
+ * instead. The transaction opened by this interceptor is suspended for the
+ * execution of the method itself by the {@link #getSuspension() suspension}
+ * advisor, which has to be registered as well, therefore the method runs in
+ * its own transactions and only post-invocation checks use the authorization
+ * transaction again.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class AuthorizationTransactionInterceptor implements MethodInterceptor, PointcutAdvisor, AopInfrastructureBean, Ordered {
+
+    /**
+     * Annotations of the methods which are evaluated by the permission evaluator
+     */
+    private static final List<Class<? extends Annotation>> SECURED = List.of(AclPermission.class, AclPostFilter.class,
+            PreAuthorize.class, PostAuthorize.class, PreFilter.class, PostFilter.class);
+    /**
+     * True if the current invocation opened the authorization transaction
+     */
+    private static final ThreadLocal<Boolean> OWNED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * Supplier of the transaction manager, which allows lazy initialization
+     */
+    private final Supplier<PlatformTransactionManager> transactionManager;
+    /**
+     * Definition of the authorization transaction
+     */
+    private final DefaultTransactionDefinition definition;
+    /**
+     * Definition which suspends the authorization transaction
+     */
+    private final DefaultTransactionDefinition suspension =
+            new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+    /**
+     * Resolved secured methods indexed by the method and the target class
+     */
+    private final Map<MethodClassKey, Boolean> secured = new ConcurrentHashMap<>();
+    /**
+     * Pointcut matching secured methods
+     */
+    private final Pointcut pointcut = new StaticMethodMatcherPointcut() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return isSecured(method, targetClass);
+        }
+    };
+
+    private int order = AuthorizationInterceptorsOrder.PRE_FILTER.getOrder() - 1;
+
+    /**
+     * Constructor.
+     *
+     * @param transactionManager supplier of transaction manager
+     */
+    public AuthorizationTransactionInterceptor(Supplier<PlatformTransactionManager> transactionManager) {
+        this.transactionManager = transactionManager;
+        this.definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRED);
+        this.definition.setReadOnly(true);
+        this.definition.setName(AuthorizationTransactionInterceptor.class.getName());
+    }
+
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Boolean previous = OWNED.get();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // surrounding transaction is joined by all checks, it must not
+            // be suspended for the method
+            OWNED.set(Boolean.FALSE);
+            try {
+                return invocation.proceed();
+            } finally {
+                OWNED.set(previous);
+            }
+        }
+
+        PlatformTransactionManager manager = transactionManager.get();
+        TransactionStatus status = manager.getTransaction(definition);
+        OWNED.set(Boolean.TRUE);
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            manager.rollback(status);
+            throw e;
+        } finally {
+            OWNED.set(previous);
+        }
+        manager.commit(status);
+        return result;
+    }
+
+    /**
+     * Get advisor which suspends the authorization transaction for the
+     * execution of the secured method, it is ordered after all authorization
+     * interceptors.
+     *
+     * @return suspension advisor
+     */
+    public PointcutAdvisor getSuspension() {
+        return new Suspension();
+    }
+
+    private boolean isSecured(Method method, Class<?> targetClass) {
+        MethodClassKey key = new MethodClassKey(method, targetClass);
+        Boolean result = secured.get(key);
+        if (result != null) {
+            return result;
+        }
+
+        Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        result = false;
+        for (Class<? extends Annotation> annotation : SECURED) {
+            if (AnnotatedElementUtils.hasAnnotation(specificMethod, annotation) ||
+                    AnnotatedElementUtils.hasAnnotation(method, annotation) ||
+                    AnnotatedElementUtils.hasAnnotation(specificMethod.getDeclaringClass(), annotation)) {
+                result = true;
+                break;
+            }
+        }
+        secured.put(key, result);
+        return result;
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return this;
+    }
+
+    @Override
+    public boolean isPerInstance() {
+        return true;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Set order of the interceptor, default is right before the pre-filter
+     * interceptor.
+     *
+     * @param order order
+     */
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    /**
+     * Advisor which suspends the transaction opened by the interceptor for
+     * the execution of the method.
+     */
+    private final class Suspension implements MethodInterceptor, PointcutAdvisor, AopInfrastructureBean, Ordered {
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (!OWNED.get()) {
+                return invocation.proceed();
+            }
+
+            PlatformTransactionManager manager = transactionManager.get();
+            TransactionStatus status = manager.getTransaction(suspension);
+            OWNED.set(Boolean.FALSE);
+            try {
+                return invocation.proceed();
+            } finally {
+                OWNED.set(Boolean.TRUE);
+                // authorization transaction is resumed
+                manager.commit(status);
+            }
+        }
+
+        @Override
+        public Pointcut getPointcut() {
+            return pointcut;
+        }
+
+        @Override
+        public Advice getAdvice() {
+            return this;
+        }
+
+        @Override
+        public boolean isPerInstance() {
+            return true;
+        }
+
+        @Override
+        public int getOrder() {
+            return AuthorizationInterceptorsOrder.POST_FILTER.getOrder() + 1;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cz.polankam.security.acl.method;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation of the method parameter which should be filled with the resource
+ * loaded during authorization of the method, caller passes null as the value
+ * of the parameter. If the resource was not loaded during authorization, it is
+ * loaded from its repository. Resource and identification parameter default to
+ * the values of {@link AclPermission} annotation of the method.
+ * <code>
+ * &#64;AclPermission(resource = "group", action = "edit", idParam = "id")
+ * public void edit(long id, &#64;AuthorizedResource Group group)
+ * </code>
+ * <p>
+ * Resource is loaded within the read-only transaction of the authorization,
+ * therefore within the transaction of the method it is detached. Its changes
+ * are not saved unless it is merged and its lazy associations which were not
+ * initialized cannot be accessed, resource which is modified should be loaded
+ * again within the transaction of the method.
+ * <p>
+ * Handled by {@link AuthorizedResourceMethodInterceptor}.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AuthorizedResource {
+
+    /**
+     * Textual representation of the resource, if empty resource of the
+     * {@link AclPermission} annotation is used.
+     */
+    String resource() default "";
+
+    /**
+     * Name of the method parameter which contains resource identification,
+     * if empty id parameter of the {@link AclPermission} annotation is used.
+     */
+    String idParam() default "";
+}
@@ -0,0 +1,202 @@
+package cz.polankam.security.acl.method;
+
+import cz.polankam.security.acl.AuthorizedResources;
+import cz.polankam.security.acl.IPermissionsService;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.exceptions.ResourceNotFoundException;
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.authorization.method.AuthorizationInterceptorsOrder;
+import org.springframework.util.ClassUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Method interceptor which fills parameters annotated with
+ * {@link AuthorizedResource} with the resource loaded during authorization of
+ * the method. It is ordered after the authorization interceptors, resource is
+ * taken from {@link AuthorizedResources} and if it is not there, it is loaded
+ * from its repository.
+ * <p>
+ * Created by Martin Polanka
+ */
+public final class AuthorizedResourceMethodInterceptor implements MethodInterceptor, PointcutAdvisor, AopInfrastructureBean, Ordered {
+
+    private static final Binding[] NONE = new Binding[0];
+
+    /**
+     * Supplier of the permission service, which allows lazy initialization
+     */
+    private final Supplier<IPermissionsService> permissionsService;
+    /**
+     * Resolved bindings of the methods indexed by the method and the target
+     * class
+     */
+    private final Map<MethodClassKey, Binding[]> bindings = new ConcurrentHashMap<>();
+    /**
+     * Pointcut matching methods with annotated parameters
+     */
+    private final Pointcut pointcut = new StaticMethodMatcherPointcut() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return resolve(method, targetClass).length > 0;
+        }
+    };
+
+    private int order = AuthorizationInterceptorsOrder.PRE_AUTHORIZE.getOrder() + 1;
+
+    /**
+     * Constructor.
+     *
+     * @param permissionsService supplier of permission service
+     */
+    public AuthorizedResourceMethodInterceptor(Supplier<IPermissionsService> permissionsService) {
+        this.permissionsService = permissionsService;
+    }
+
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object target = invocation.getThis();
+        Binding[] methodBindings = resolve(invocation.getMethod(),
+                target != null ? AopUtils.getTargetClass(target) : invocation.getMethod().getDeclaringClass());
+
+        // arguments array of the invocation can be changed in place
+        Object[] arguments = invocation.getArguments();
+        for (Binding binding : methodBindings) {
+            Object id = arguments[binding.idIndex];
+            Optional<Object> resource = AuthorizedResources.get(binding.resource, id);
+            if (resource.isEmpty()) {
+                resource = permissionsService.get().getResource(binding.resource).findById(id);
+            }
+            if (resource.isEmpty()) {
+                throw new ResourceNotFoundException("Resource with identification '" + id + "' not found");
+            }
+            if (!ClassUtils.resolvePrimitiveIfNecessary(binding.type).isInstance(resource.get())) {
+                throw new PermissionException("Resource '" + binding.resource + "' is not assignable to parameter of type '" +
+                        binding.type.getName() + "'");
+            }
+            arguments[binding.parameterIndex] = resource.get();
+        }
+        return invocation.proceed();
+    }
+
+    private Binding[] resolve(Method method, Class<?> targetClass) {
+        MethodClassKey key = new MethodClassKey(method, targetClass);
+        Binding[] result = bindings.get(key);
+        if (result != null) {
+            return result;
+        }
+
+        Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        AclPermission permission = AnnotationUtils.findAnnotation(specificMethod, AclPermission.class);
+        if (permission == null) {
+            permission = AnnotationUtils.findAnnotation(method, AclPermission.class);
+        }
+
+        List<Binding> found = new ArrayList<>();
+        Annotation[][] specificAnnotations = specificMethod.getParameterAnnotations();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            AuthorizedResource annotation = find(specificAnnotations[i]);
+            if (annotation == null) {
+                annotation = find(annotations[i]);
+            }
+            if (annotation != null) {
+                found.add(bind(specificMethod, i, annotation, permission));
+            }
+        }
+
+        result = found.isEmpty() ? NONE : found.toArray(NONE);
+        bindings.put(key, result);
+        return result;
+    }
+
+    private static AuthorizedResource find(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof AuthorizedResource) {
+                return (AuthorizedResource) annotation;
+            }
+        }
+        return null;
+    }
+
+    private static Binding bind(Method method, int parameterIndex, AuthorizedResource annotation, AclPermission permission) {
+        String resource = annotation.resource();
+        String idParam = annotation.idParam();
+        if (permission != null) {
+            resource = resource.isEmpty() ? permission.resource() : resource;
+            idParam = idParam.isEmpty() ? permission.idParam() : idParam;
+        }
+        if (resource.isEmpty() || idParam.isEmpty()) {
+            throw new PermissionException("Resource and id parameter of the authorized resource parameter of method '" +
+                    method + "' are not specified");
+        }
+
+        int idIndex = AclPermissionAuthorizationManager.resolveIdIndex(method, idParam);
+        return new Binding(parameterIndex, method.getParameterTypes()[parameterIndex], resource, idIndex);
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return this;
+    }
+
+    @Override
+    public boolean isPerInstance() {
+        return true;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Set order of the interceptor, default is right after the pre-authorize
+     * interceptor.
+     *
+     * @param order order
+     */
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    /**
+     * Resolved annotated parameter of the method.
+     */
+    private static final class Binding {
+        private final int parameterIndex;
+        private final Class<?> type;
+        private final String resource;
+        private final int idIndex;
+
+        private Binding(int parameterIndex, Class<?> type, String resource, int idIndex) {
+            this.parameterIndex = parameterIndex;
+            this.type = type;
+            this.resource = resource;
+            this.idIndex = idIndex;
+        }
+    }
+}
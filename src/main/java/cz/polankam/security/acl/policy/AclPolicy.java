@@ -0,0 +1,28 @@
+package cz.polankam.security.acl.policy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks class with static definition of the roles, which are declared by
+ * {@link AclRole} annotations on the class. Policy is compiled by the
+ * {@link AclPolicyProcessor} at build time into the class implementing
+ * {@link StaticPolicy}, which is placed into the same package. Conditions of
+ * the rules refer to static methods of the annotated class.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface AclPolicy {
+
+    /**
+     * Simple name of the generated class, if empty name of the annotated class
+     * with <code>Policy</code> suffix is used.
+     */
+    String name() default "";
+}
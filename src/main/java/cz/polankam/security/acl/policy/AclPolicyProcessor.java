@@ -0,0 +1,412 @@
+package cz.polankam.security.acl.policy;
+
+import cz.polankam.security.acl.ResourcePath;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor which compiles classes annotated with
+ * {@link AclPolicy} into implementations of {@link StaticPolicy}. Generated
+ * class constructs all roles directly without any reflection, conditions are
+ * wired in as method references and decisions are taken by nested switches
+ * over roles, resources and actions with rules of every combination inlined
+ * in the order of evaluation.
+ * <p>
+ * Created by Martin Polanka
+ */
+@SupportedAnnotationTypes("cz.polankam.security.acl.policy.AclPolicy")
+public class AclPolicyProcessor extends AbstractProcessor {
+
+    private static final String WILDCARD = "*";
+    private static final String USER_DETAILS = "org.springframework.security.core.userdetails.UserDetails";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(AclPolicy.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "AclPolicy can be used only on classes");
+                continue;
+            }
+
+            TypeElement type = (TypeElement) element;
+            List<RoleDefinition> roles = readRoles(type);
+            if (roles == null) {
+                continue;
+            }
+
+            try {
+                write(type, roles);
+            } catch (IOException e) {
+                error(type, "Policy class could not be written: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Read and validate roles of the policy, roles are ordered so that every
+     * parent precedes its children.
+     *
+     * @return roles or null if the definition is not valid
+     */
+    private List<RoleDefinition> readRoles(TypeElement type) {
+        Map<String, RoleDefinition> roles = new LinkedHashMap<>();
+        boolean valid = true;
+        for (AclRole role : type.getAnnotationsByType(AclRole.class)) {
+            if (roles.containsKey(role.name())) {
+                error(type, "Role '" + role.name() + "' is defined multiple times");
+                valid = false;
+                continue;
+            }
+
+            RoleDefinition definition = new RoleDefinition(role.name(), role.parent());
+            for (AclRule rule : role.rules()) {
+                if (rule.resource().contains(ResourcePath.SEPARATOR)) {
+                    // generated decisions match the resources exactly, levels would not be matched
+                    error(type, "Hierarchical resource '" + rule.resource() + "' of role '" + role.name() +
+                            "' is not supported by the static policy");
+                    valid = false;
+                    continue;
+                }
+                ExecutableElement condition = null;
+                if (!rule.condition().isEmpty()) {
+                    condition = findCondition(type, rule.condition());
+                    if (condition == null) {
+                        valid = false;
+                        continue;
+                    }
+                }
+                definition.rules.add(new RuleDefinition(rule.allowed(), rule.resource(),
+                        Arrays.asList(rule.actions()), condition));
+            }
+            roles.put(role.name(), definition);
+        }
+
+        List<RoleDefinition> ordered = new ArrayList<>();
+        Set<String> visiting = new HashSet<>();
+        Set<String> failed = new HashSet<>();
+        for (RoleDefinition role : roles.values()) {
+            valid &= order(type, role, roles, visiting, failed, ordered);
+        }
+        return valid ? ordered : null;
+    }
+
+    /**
+     * Add the role to the ordered roles after its ancestors. Roles which are
+     * invalid are reported only once.
+     *
+     * @return true if the role and its ancestors are valid
+     */
+    private boolean order(TypeElement type, RoleDefinition role, Map<String, RoleDefinition> roles,
+                          Set<String> visiting, Set<String> failed, List<RoleDefinition> ordered) {
+        if (ordered.contains(role)) {
+            return true;
+        }
+        if (failed.contains(role.name)) {
+            return false;
+        }
+        if (!visiting.add(role.name)) {
+            error(type, "Role '" + role.name + "' is its own ancestor");
+            return false;
+        }
+
+        boolean valid = true;
+        if (!role.parentName.isEmpty()) {
+            role.parent = roles.get(role.parentName);
+            if (role.parent == null) {
+                error(type, "Parent '" + role.parentName + "' of role '" + role.name + "' is not defined");
+                valid = false;
+            } else {
+                valid = order(type, role.parent, roles, visiting, failed, ordered);
+            }
+        }
+        visiting.remove(role.name);
+
+        if (valid) {
+            ordered.add(role);
+        } else {
+            failed.add(role.name);
+        }
+        return valid;
+    }
+
+    private ExecutableElement findCondition(TypeElement type, String name) {
+        TypeMirror userDetails = processingEnv.getElementUtils().getTypeElement(USER_DETAILS).asType();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (!method.getSimpleName().contentEquals(name)) {
+                continue;
+            }
+
+            if (!method.getModifiers().contains(Modifier.STATIC) ||
+                    method.getModifiers().contains(Modifier.PRIVATE) ||
+                    method.getReturnType().getKind() != TypeKind.BOOLEAN ||
+                    method.getParameters().size() != 2 ||
+                    !processingEnv.getTypeUtils().isAssignable(userDetails, method.getParameters().get(0).asType()) ||
+                    method.getParameters().get(1).asType().getKind() != TypeKind.DECLARED) {
+                error(method, "Condition '" + name + "' has to be non-private static boolean method " +
+                        "taking user details and resource object");
+                return null;
+            }
+            return method;
+        }
+        error(type, "Condition '" + name + "' not found");
+        return null;
+    }
+
+    private void write(TypeElement type, List<RoleDefinition> roles) throws IOException {
+        AclPolicy policy = type.getAnnotation(AclPolicy.class);
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String simpleName = policy.name().isEmpty() ? type.getSimpleName() + "Policy" : policy.name();
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        String definition = type.getQualifiedName().toString();
+
+        // every condition method is represented by single shared instance
+        Map<ExecutableElement, String> conditions = new LinkedHashMap<>();
+        for (RoleDefinition role : roles) {
+            for (RuleDefinition rule : role.rules) {
+                if (rule.condition != null && !conditions.containsKey(rule.condition)) {
+                    conditions.put(rule.condition, "CONDITION_" + conditions.size());
+                }
+            }
+        }
+
+        StringBuilder code = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            code.append("package ").append(packageName).append(";\n\n");
+        }
+        code.append("import cz.polankam.security.acl.PermissionRule;\n")
+                .append("import cz.polankam.security.acl.Role;\n")
+                .append("import cz.polankam.security.acl.conditions.PermissionCondition;\n")
+                .append("import cz.polankam.security.acl.exceptions.PermissionException;\n")
+                .append("import org.springframework.security.core.userdetails.UserDetails;\n\n")
+                .append("import java.util.Collection;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.function.Supplier;\n\n")
+                .append("/**\n * Policy compiled from {@link ").append(definition).append("}.\n */\n")
+                .append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(simpleName)
+                .append(" implements cz.polankam.security.acl.policy.StaticPolicy {\n\n");
+
+        for (Map.Entry<ExecutableElement, String> condition : conditions.entrySet()) {
+            code.append("    private static final PermissionCondition<").append(resourceType(condition.getKey()))
+                    .append("> ").append(condition.getValue()).append(" = ")
+                    .append(definition).append("::").append(condition.getKey().getSimpleName()).append(";\n");
+        }
+        for (int i = 0; i < roles.size(); i++) {
+            RoleDefinition role = roles.get(i);
+            role.field = "ROLE_" + i;
+            code.append("    private static final Role ").append(role.field).append(" = new Role(")
+                    .append(literal(role.name)).append(role.parent != null ? ", " + role.parent.field : "").append(")");
+            for (RuleDefinition rule : role.rules) {
+                code.append("\n            .addPermissionRules(PermissionRule.intern(").append(rule.allowed).append(", ")
+                        .append(literal(rule.resource)).append(", List.of(");
+                for (int j = 0; j < rule.actions.size(); j++) {
+                    code.append(j > 0 ? ", " : "").append(literal(rule.actions.get(j)));
+                }
+                code.append("), ").append(rule.condition != null ? conditions.get(rule.condition) : "null").append("))");
+            }
+            code.append(";\n");
+        }
+        code.append("    private static final List<Role> ROLES = List.of(");
+        for (int i = 0; i < roles.size(); i++) {
+            code.append(i > 0 ? ", " : "").append(roles.get(i).field);
+        }
+        code.append(");\n\n\n");
+
+        code.append("    @Override\n    public Role getRole(String name) {\n        switch (name) {\n");
+        for (RoleDefinition role : roles) {
+            code.append("            case ").append(literal(role.name)).append(":\n                return ")
+                    .append(role.field).append(";\n");
+        }
+        code.append("            default:\n                return null;\n        }\n    }\n\n");
+
+        code.append("    @Override\n    public Collection<Role> getRoles() {\n        return ROLES;\n    }\n\n");
+
+        code.append("    @Override\n    public Boolean decide(String role, String resource, String action, UserDetails user, Supplier<?> object) {\n")
+                .append("        if (role == null || resource == null || action == null) {\n            return null;\n        }\n\n")
+                .append("        switch (role) {\n");
+        for (int i = 0; i < roles.size(); i++) {
+            code.append("            case ").append(literal(roles.get(i).name)).append(":\n                return decide")
+                    .append(i).append("(resource, action, user, object);\n");
+        }
+        code.append("            default:\n                return null;\n        }\n    }\n\n");
+
+        for (int i = 0; i < roles.size(); i++) {
+            writeDecide(code, i, roles.get(i), definition);
+        }
+
+        code.append("    private static Object load(Supplier<?> object, String resource, String action) {\n")
+                .append("        if (object == null) {\n")
+                .append("            throw new PermissionException(\"ABAC permission rule for resource '\" + resource +\n")
+                .append("                    \"' and action '\" + action + \"' was used in non-ABAC context\");\n")
+                .append("        }\n        return object.get();\n    }\n}\n");
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(code.toString());
+        }
+    }
+
+    /**
+     * Write decision method of the role, every combination of the resource
+     * and action mentioned in the rules has its own branch with applicable
+     * rules in the order of evaluation.
+     */
+    private void writeDecide(StringBuilder code, int index, RoleDefinition role, String definition) {
+        List<RuleDefinition> rules = role.effectiveRules();
+        Set<String> resources = new LinkedHashSet<>();
+        for (RuleDefinition rule : rules) {
+            if (!rule.resource.equals(WILDCARD)) {
+                resources.add(rule.resource);
+            }
+        }
+
+        code.append("    private static Boolean decide").append(index)
+                .append("(String resource, String action, UserDetails user, Supplier<?> object) {\n")
+                .append("        switch (resource) {\n");
+        for (String resource : resources) {
+            code.append("            case ").append(literal(resource)).append(":\n");
+            writeActions(code, rules, resource, definition, "                ");
+        }
+        code.append("            default:\n");
+        writeActions(code, rules, null, definition, "                ");
+        code.append("        }\n    }\n\n");
+    }
+
+    private void writeActions(StringBuilder code, List<RuleDefinition> rules, String resource,
+                              String definition, String indent) {
+        List<RuleDefinition> applicable = new ArrayList<>();
+        Set<String> actions = new LinkedHashSet<>();
+        for (RuleDefinition rule : rules) {
+            if (rule.resource.equals(WILDCARD) || rule.resource.equals(resource)) {
+                applicable.add(rule);
+                for (String action : rule.actions) {
+                    if (!action.equals(WILDCARD)) {
+                        actions.add(action);
+                    }
+                }
+            }
+        }
+
+        code.append(indent).append("switch (action) {\n");
+        for (String action : actions) {
+            code.append(indent).append("    case ").append(literal(action)).append(": {\n");
+            writeRules(code, applicable, action, definition, indent + "        ");
+            code.append(indent).append("    }\n");
+        }
+        code.append(indent).append("    default: {\n");
+        writeRules(code, applicable, null, definition, indent + "        ");
+        code.append(indent).append("    }\n").append(indent).append("}\n");
+    }
+
+    private void writeRules(StringBuilder code, List<RuleDefinition> rules, String action,
+                            String definition, String indent) {
+        boolean declared = false;
+        for (RuleDefinition rule : rules) {
+            if (!rule.actions.contains(WILDCARD) && !rule.actions.contains(action)) {
+                continue;
+            }
+
+            String decision = rule.allowed ? "Boolean.TRUE" : "Boolean.FALSE";
+            if (rule.condition == null) {
+                // unconditional rule always decides, following rules are unreachable
+                code.append(indent).append("return ").append(decision).append(";\n");
+                return;
+            }
+
+            if (!declared) {
+                code.append(indent).append("Object target = load(object, resource, action);\n");
+                declared = true;
+            }
+            code.append(indent).append("if (").append(definition).append(".").append(rule.condition.getSimpleName())
+                    .append("(user, (").append(resourceType(rule.condition)).append(") target)) {\n")
+                    .append(indent).append("    return ").append(decision).append(";\n")
+                    .append(indent).append("}\n");
+        }
+        code.append(indent).append("return null;\n");
+    }
+
+    private String resourceType(ExecutableElement condition) {
+        TypeMirror type = processingEnv.getTypeUtils().erasure(condition.getParameters().get(1).asType());
+        return type.toString();
+    }
+
+    private String literal(String value) {
+        return processingEnv.getElementUtils().getConstantExpression(value);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * Role read from the annotation.
+     */
+    private static final class RoleDefinition {
+        private final String name;
+        private final String parentName;
+        private final List<RuleDefinition> rules = new ArrayList<>();
+        private RoleDefinition parent;
+        private String field;
+
+        private RoleDefinition(String name, String parentName) {
+            this.name = name;
+            this.parentName = parentName;
+        }
+
+        private List<RuleDefinition> effectiveRules() {
+            List<RuleDefinition> result = new ArrayList<>();
+            for (RoleDefinition role = this; role != null; role = role.parent) {
+                result.addAll(role.rules);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Rule read from the annotation.
+     */
+    private static final class RuleDefinition {
+        private final boolean allowed;
+        private final String resource;
+        private final List<String> actions;
+        private final ExecutableElement condition;
+
+        private RuleDefinition(boolean allowed, String resource, List<String> actions, ExecutableElement condition) {
+            this.allowed = allowed;
+            this.resource = resource;
+            this.actions = actions;
+            this.condition = condition;
+        }
+    }
+}
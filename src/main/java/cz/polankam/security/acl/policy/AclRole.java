@@ -0,0 +1,37 @@
+package cz.polankam.security.acl.policy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Static definition of the role within the class annotated with
+ * {@link AclPolicy}. Rules of the role precede the rules of its parent.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Repeatable(AclRoles.class)
+@Documented
+public @interface AclRole {
+
+    /**
+     * Name of the role.
+     */
+    String name();
+
+    /**
+     * Name of the parent role defined in the same policy, if empty role does
+     * not have any parent.
+     */
+    String parent() default "";
+
+    /**
+     * Permission rules of the role in the order of evaluation.
+     */
+    AclRule[] rules() default {};
+}
@@ -0,0 +1,23 @@
+package cz.polankam.security.acl.policy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Container of the repeated {@link AclRole} annotations.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface AclRoles {
+
+    /**
+     * Roles of the policy.
+     */
+    AclRole[] value();
+}
@@ -0,0 +1,40 @@
+package cz.polankam.security.acl.policy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Static definition of the permission rule within {@link AclRole}.
+ * <p>
+ * Created by Martin Polanka
+ */
+@Target({})
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface AclRule {
+
+    /**
+     * Determine if the rule allows or denies the actions.
+     */
+    boolean allowed() default true;
+
+    /**
+     * Textual representation of the resource, wildcard can be used.
+     * Hierarchical resources are not supported.
+     */
+    String resource();
+
+    /**
+     * Actions on the resource, wildcard can be used.
+     */
+    String[] actions();
+
+    /**
+     * Name of the static method of the policy class, which is used as the
+     * condition of the rule. Method has to take user details and resource
+     * object and return boolean. If empty, the rule does not have condition.
+     */
+    String condition() default "";
+}
@@ -0,0 +1,83 @@
+package cz.polankam.security.acl.policy;
+
+import cz.polankam.security.acl.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Policy compiled at build time from the class annotated with
+ * {@link AclPolicy}. Roles of the policy can be returned from the permission
+ * service, or the decision can be taken directly by the generated code, which
+ * uses switch-based lookups over roles, resources and actions and calls the
+ * conditions directly.
+ * <p>
+ * Created by Martin Polanka
+ */
+public interface StaticPolicy {
+
+    /**
+     * Get role of the policy with given name.
+     *
+     * @param name name of the role
+     * @return role or null if not defined
+     */
+    Role getRole(String name);
+
+    /**
+     * Get all roles of the policy.
+     *
+     * @return unmodifiable collection of roles
+     */
+    Collection<Role> getRoles();
+
+    /**
+     * Take decision of the given role for the resource and action. The first
+     * applicable rule of the role or its parents decides.
+     *
+     * @param role     name of the role
+     * @param resource textual representation of the resource
+     * @param action   action on the resource
+     * @param user     currently logged user
+     * @param object   supplier of the resource object, if null conditional
+     *                 rules cannot be evaluated and exception is thrown
+     * @return true if allowed, false if denied, null if no rule is applicable
+     */
+    Boolean decide(String role, String resource, String action, UserDetails user, Supplier<?> object);
+
+    /**
+     * Determine if the given user can perform the action on the resource.
+     * Roles are ordered by their names and the first applicable rule decides,
+     * which is equivalent to the first-applicable algorithm of the evaluator.
+     *
+     * @param user     currently logged user
+     * @param resource textual representation of the resource
+     * @param action   action on the resource
+     * @param object   supplier of the resource object, might be null
+     * @return true if allowed
+     */
+    default boolean hasPermission(UserDetails user, String resource, String action, Supplier<?> object) {
+        if (user == null) {
+            return false;
+        }
+
+        List<String> roles = new ArrayList<>();
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        Collections.sort(roles);
+
+        for (String role : roles) {
+            Boolean decision = decide(role, resource, action, user, object);
+            if (decision != null) {
+                return decision;
+            }
+        }
+        return false;
+    }
+}
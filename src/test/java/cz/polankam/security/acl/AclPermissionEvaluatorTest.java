@@ -1,13 +1,26 @@
 package cz.polankam.security.acl;
 
+import cz.polankam.security.acl.conditions.ConditionsFactory;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.exceptions.ResourceNotFoundException;
+import cz.polankam.security.acl.exceptions.ResourceUnavailableException;
+import cz.polankam.security.acl.invalidation.InvalidationEvent;
+import cz.polankam.security.acl.test_utils.DemoGroup;
 import cz.polankam.security.acl.test_utils.DemoPermissionsService;
 import cz.polankam.security.acl.test_utils.DemoUser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class AclPermissionEvaluatorTest {
@@ -83,4 +96,367 @@ class AclPermissionEvaluatorTest {
         assertTrue(evaluator.hasPermission(authenticationMock, "instance", "non-existing"));
         assertTrue(evaluator.hasPermission(authenticationMock, 123L, "non-existing", "view"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void hasPermission_ResourcePath() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository orgRepository = mock(IResourceRepository.class);
+        IResourceRepository documentRepository = mock(IResourceRepository.class);
+        when(service.getResource("org")).thenReturn(orgRepository);
+        when(service.getResource("document")).thenReturn(documentRepository);
+        when(orgRepository.findPath(any())).thenReturn(Optional.empty());
+        when(orgRepository.findById("42")).thenReturn(Optional.of("public"));
+        when(orgRepository.findById("43")).thenReturn(Optional.of("private"));
+        when(documentRepository.findPath(any())).thenReturn(Optional.of(Arrays.asList("public", "project", "draft")));
+
+        when(service.getRole("USER")).thenReturn(RoleBuilder.create("USER")
+                .addAllowedRule("org", (UserDetails user, String org) -> org.equals("public"), "view")
+                .addDeniedRule("org/project/document", (UserDetails user, String document) -> document.equals("draft"), "view")
+                .addDeniedRule("org/project", "edit")
+                .addAllowedRule("org/*", "edit")
+                .build());
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        // inherited from the ancestor
+        assertTrue(evaluator.hasPermission(authenticationMock, ResourcePath.parse("org/42/project/7"), "view"));
+        assertFalse(evaluator.hasPermission(authenticationMock, ResourcePath.parse("org/43/project/7"), "view"));
+        // overridden by the descendant
+        assertFalse(evaluator.hasPermission(authenticationMock, ResourcePath.parse("org/42/project/7/document/3"), "view"));
+        // the first declared rule decides on the same level
+        assertTrue(evaluator.hasPermission(authenticationMock, ResourcePath.parse("org/42/team/7"), "edit"));
+        assertFalse(evaluator.hasPermission(authenticationMock, ResourcePath.parse("org/42/project/7"), "edit"));
+        assertFalse(evaluator.hasPermission(authenticationMock, ResourcePath.parse("org/42/project/7"), "delete"));
+    }
+
+    @Test
+    void hasPermission_ResourcePathBatchLoading() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository orgRepository = mock(IResourceRepository.class);
+        IResourceRepository documentRepository = mock(IResourceRepository.class);
+        when(service.getResource("org")).thenReturn(orgRepository);
+        when(service.getResource("document")).thenReturn(documentRepository);
+        when(documentRepository.findPath(any())).thenReturn(Optional.of(Arrays.asList("public", "project", "published")));
+
+        when(service.getRole("USER")).thenReturn(RoleBuilder.create("USER")
+                .addAllowedRule("org", (UserDetails user, String org) -> org.equals("public"), "view")
+                .addDeniedRule("org/project/document", (UserDetails user, String document) -> document.equals("draft"), "view")
+                .build());
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        assertTrue(evaluator.hasPermission(authenticationMock, ResourcePath.parse("org/42/project/7/document/3"), "view"));
+        verify(documentRepository, times(1)).findPath(any());
+        verify(documentRepository, never()).findById(any());
+        verifyNoInteractions(orgRepository);
+    }
+
+    @Test
+    void filter() {
+        DemoGroup member = new DemoGroup();
+        DemoGroup managed = new DemoGroup() {
+            @Override
+            public boolean isManager(DemoUser user) {
+                return true;
+            }
+        };
+        List<DemoGroup> groups = Arrays.asList(member, managed, member);
+
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        assertEquals(groups, evaluator.filter(authenticationMock, groups, "group", "view"));
+        assertEquals(Collections.singletonList(managed), evaluator.filter(authenticationMock, groups, "group", "edit"));
+        assertTrue(evaluator.filter(authenticationMock, groups, "group", "non-existing").isEmpty());
+
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("superadmin", "SUPERADMIN"));
+        assertEquals(groups, evaluator.filter(authenticationMock, groups, "group", "non-existing"));
+
+        assertTrue(evaluator.filter(null, groups, "group", "view").isEmpty());
+    }
+
+    @Test
+    void hasPermission_CombiningAlgorithms() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        when(service.getRole("READER")).thenReturn(new Role("READER")
+                .addPermissionRules(true, "document", "view"));
+        when(service.getRole("BANNED")).thenReturn(new Role("BANNED")
+                .addPermissionRules(false, "*", "view"));
+        UserDetails user = mock(UserDetails.class);
+        doReturn(Arrays.asList(new SimpleGrantedAuthority("READER"), new SimpleGrantedAuthority("BANNED")))
+                .when(user).getAuthorities();
+        when(authenticationMock.getPrincipal()).thenReturn(user);
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        // roles are ordered by their names regardless of the authorities
+        assertFalse(evaluator.hasPermission(authenticationMock, "document", "view"));
+        doReturn(Arrays.asList(new SimpleGrantedAuthority("BANNED"), new SimpleGrantedAuthority("READER")))
+                .when(user).getAuthorities();
+        assertFalse(evaluator.hasPermission(authenticationMock, "document", "view"));
+
+        evaluator.setCombiningAlgorithm(CombiningAlgorithm.PERMIT_OVERRIDES);
+        assertTrue(evaluator.hasPermission(authenticationMock, "document", "view"));
+        assertFalse(evaluator.hasPermission(authenticationMock, "group", "view"));
+
+        evaluator.setCombiningAlgorithm(CombiningAlgorithm.DENY_OVERRIDES);
+        assertFalse(evaluator.hasPermission(authenticationMock, "document", "view"));
+    }
+
+    @Test
+    void hasPermission_DenyOverridesConditions() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository repository = mock(IResourceRepository.class);
+        when(service.getResource("document")).thenReturn(repository);
+        when(repository.findById(1L)).thenReturn(Optional.of("draft"));
+        when(repository.findById(2L)).thenReturn(Optional.of("published"));
+        when(service.getRole("USER")).thenReturn(RoleBuilder.create("USER")
+                .addAllowedRule("document", "view")
+                .addDeniedRule("document", (UserDetails user, String document) -> document.equals("draft"), "view")
+                .build());
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        assertTrue(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+
+        evaluator.setCombiningAlgorithm(CombiningAlgorithm.DENY_OVERRIDES);
+        assertFalse(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+        assertTrue(evaluator.hasPermission(authenticationMock, 2L, "document", "view"));
+        assertThrows(PermissionException.class, () -> evaluator.hasPermission(authenticationMock, "document", "view"));
+    }
+
+    @Test
+    void setCombiningAlgorithm_AfterPruning() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        when(service.getRoles()).thenReturn(List.of(RoleBuilder.create("USER")
+                .addAllowedRule("document", "view")
+                .addAllowedRule("document", "view")
+                .build()));
+        evaluator = new AclPermissionEvaluator(service, null);
+        ObjectProvider<AclPermissionEvaluator> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(evaluator);
+
+        new JaclpSpringConfiguration().aclPolicyAnalysis(service, provider).afterSingletonsInstantiated();
+        evaluator.setCombiningAlgorithm(CombiningAlgorithm.FIRST_APPLICABLE);
+        assertThrows(IllegalStateException.class, () -> evaluator.setCombiningAlgorithm(CombiningAlgorithm.DENY_OVERRIDES));
+        assertEquals(CombiningAlgorithm.FIRST_APPLICABLE, evaluator.getCombiningAlgorithm());
+    }
+
+    @Test
+    void invalidate() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        when(service.getRole("USER")).thenReturn(new Role("USER"));
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        assertFalse(evaluator.hasPermission(authenticationMock, "group", "view"));
+        // role is replaced in the permission service
+        when(service.getRole("USER")).thenReturn(new Role("USER").addPermissionRules(true, "group", "view"));
+        evaluator.invalidate(Collections.singletonList(InvalidationEvent.resource("group")));
+        assertFalse(evaluator.hasPermission(authenticationMock, "group", "view"));
+        evaluator.invalidate(Collections.singletonList(InvalidationEvent.role("USER")));
+        assertTrue(evaluator.hasPermission(authenticationMock, "group", "view"));
+    }
+
+    @Test
+    void hasPermission_PreCheckSkipsRepository() {
+        Role role = new Role("USER").addPermissionRules(
+                true, "document", new String[] {"view"},
+                ConditionsFactory.and(
+                        ConditionsFactory.user(user -> user.getUsername().equals("verified")),
+                        (UserDetails user, String document) -> document.equals("public")
+                )
+        ).addPermissionRules(
+                true, "document", new String[] {"edit"},
+                ConditionsFactory.user(user -> user.getUsername().equals("verified"))
+        );
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository repository = mock(IResourceRepository.class);
+        when(service.getRole("USER")).thenReturn(role);
+        when(service.getResource("document")).thenReturn(repository);
+        when(repository.findById(1L)).thenReturn(Optional.of("public"));
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("unverified", "USER"));
+        assertFalse(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+        assertFalse(evaluator.hasPermission(authenticationMock, 1L, "document", "edit"));
+        verify(repository, never()).findById(any());
+
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("verified", "USER"));
+        assertTrue(evaluator.hasPermission(authenticationMock, 1L, "document", "edit"));
+        verify(repository, never()).findById(any());
+        assertTrue(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+        verify(repository, times(1)).findById(1L);
+
+        assertEquals(Boolean.TRUE, evaluator.decideUnconditionally(authenticationMock, "document", "edit"));
+        assertNull(evaluator.decideUnconditionally(authenticationMock, "document", "view"));
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("unverified", "USER"));
+        assertEquals(Boolean.FALSE, evaluator.decideUnconditionally(authenticationMock, "document", "view"));
+
+        // decision shared by all users with the same authorities
+        assertNull(evaluator.decideUnconditionally(new DemoUser("verified", "USER"), "document", "edit"));
+    }
+
+    @Test
+    void hasPermission_TruthyConditionLoadsResource() {
+        Role role = new Role("USER").addPermissionRules(true, "document", new String[] {"view"},
+                ConditionsFactory.truthy());
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository repository = mock(IResourceRepository.class);
+        when(service.getRole("USER")).thenReturn(role);
+        when(service.getResource("document")).thenReturn(repository);
+        when(repository.findById(1L)).thenReturn(Optional.of("public"));
+        when(repository.findById(2L)).thenReturn(Optional.empty());
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        assertTrue(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+        assertThrows(ResourceNotFoundException.class,
+                () -> evaluator.hasPermission(authenticationMock, 2L, "document", "view"));
+    }
+
+    @Test
+    void hasPermission_RoleChanged() {
+        Role user = permissionsService.getRole("USER");
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "ADMIN"));
+        assertFalse(evaluator.hasPermission(authenticationMock, "document", "view"));
+
+        // change of the parent is reflected in the policies of its descendants
+        user.addPermissionRules(true, "document", "view");
+        assertTrue(evaluator.hasPermission(authenticationMock, "document", "view"));
+    }
+
+    @Test
+    void ruleStatistics_AdaptiveOrder() {
+        PermissionRule rare = new PermissionRule(true, "document", List.of("view"),
+                (UserDetails user, String document) -> document.equals("rare"));
+        PermissionRule common = new PermissionRule(true, "document", List.of("view"),
+                (UserDetails user, String document) -> document.startsWith("common"));
+        Role role = new Role("USER").addPermissionRules(rare, common);
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository repository = mock(IResourceRepository.class);
+        when(service.getRole("USER")).thenReturn(role);
+        when(service.getResource("document")).thenReturn(repository);
+        when(repository.findById(1L)).thenReturn(Optional.of("common"));
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+        evaluator.setRuleStatistics(true);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+        }
+        assertEquals(10, role.getStatistics().getCounter(rare).getHits());
+        assertEquals(0, role.getStatistics().getCounter(rare).getDecisions());
+        assertEquals(10, role.getStatistics().getCounter(common).getDecisions());
+
+        // the most deciding rule goes first, the rare one is not reached anymore
+        evaluator.reorderRules();
+        assertTrue(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+        assertEquals(10, role.getStatistics().getCounter(rare).getHits());
+        assertEquals(11, role.getStatistics().getCounter(common).getDecisions());
+
+        role.getStatistics().reset();
+        assertEquals(0, role.getStatistics().getCounter(common).getHits());
+    }
+
+    @Test
+    void ruleStatistics_UnconditionalRulesKeepOrder() {
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "ADMIN"));
+        evaluator.setRuleStatistics(true);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(evaluator.hasPermission(authenticationMock, "instance", "join"));
+        }
+        evaluator.reorderRules();
+        assertFalse(evaluator.hasPermission(authenticationMock, "instance", "join"));
+        assertTrue(evaluator.hasPermission(authenticationMock, "instance", "view"));
+
+        Role admin = permissionsService.getRole("ADMIN");
+        PermissionRule join = admin.getPermissionRules("instance").stream()
+                .filter(rule -> rule.getActions().contains("join") && !rule.isAllowed())
+                .findFirst().orElseThrow();
+        assertEquals(6, admin.getStatistics().getCounter(join).getDecisions());
+    }
+
+    @Test
+    void invalidate_OnlyDependentPolicies() {
+        for (String role : Arrays.asList("USER", "ADMIN", "SUPERADMIN")) {
+            when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", role));
+            evaluator.hasPermission(authenticationMock, "instance", "view");
+        }
+        assertEquals(3, evaluator.getCompiledPolicyCount());
+
+        // admin descends from user
+        evaluator.invalidate("USER");
+        assertEquals(1, evaluator.getCompiledPolicyCount());
+        evaluator.invalidate(Collections.singletonList(InvalidationEvent.role("SUPERADMIN")));
+        assertEquals(0, evaluator.getCompiledPolicyCount());
+    }
+
+    @Test
+    void invalidate_RoleDefinedLater() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+        assertFalse(evaluator.hasPermission(authenticationMock, "group", "view"));
+
+        when(service.getRole("USER")).thenReturn(new Role("USER").addPermissionRules(true, "group", "view"));
+        evaluator.invalidate("USER");
+        assertTrue(evaluator.hasPermission(authenticationMock, "group", "view"));
+    }
+
+    @Test
+    void invalidate_DuringCompilation() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        Role replaced = new Role("USER");
+        Role replacement = new Role("USER").addPermissionRules(true, "group", "view");
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+        // role is replaced and invalidated right after the evaluator read it
+        when(service.getRole("USER")).thenAnswer(invocation -> {
+            doReturn(replacement).when(service).getRole("USER");
+            evaluator.invalidate("USER");
+            return replaced;
+        });
+
+        assertFalse(evaluator.hasPermission(authenticationMock, "group", "view"));
+        assertEquals(0, evaluator.getCompiledPolicyCount());
+        assertTrue(evaluator.hasPermission(authenticationMock, "group", "view"));
+    }
+
+    @Test
+    void hasPermission_ResourceUnavailable() {
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository repository = mock(IResourceRepository.class);
+        when(service.getResource("document")).thenReturn(repository);
+        when(repository.findById(1L)).thenThrow(new ResourceUnavailableException("timeout"));
+        when(service.getRole("USER")).thenReturn(RoleBuilder.create("USER")
+                .addAllowedRule("document", (UserDetails user, String document) -> true, "view")
+                .build());
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        evaluator = new AclPermissionEvaluator(service, null);
+
+        assertFalse(evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+        evaluator.setDenyOnUnavailable(false);
+        assertThrows(ResourceUnavailableException.class,
+                () -> evaluator.hasPermission(authenticationMock, 1L, "document", "view"));
+    }
+
+    @Test
+    void hasPermission_DomainObject() {
+        IResourceRepository groupRepository = mock(IResourceRepository.class);
+        evaluator = new AclPermissionEvaluator(new DemoPermissionsService(groupRepository), null);
+        DemoGroup group = new DemoGroup();
+        when(authenticationMock.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+
+        // not registered domain object
+        assertFalse(evaluator.hasPermission(authenticationMock, group, "view"));
+
+        evaluator.setResourceTypeRegistry(new ResourceTypeRegistry().register(DemoGroup.class, "group"));
+        assertTrue(evaluator.hasPermission(authenticationMock, group, "view"));
+        assertFalse(evaluator.hasPermission(authenticationMock, group, "edit"));
+        assertTrue(evaluator.hasPermission(authenticationMock, new DemoGroup() {
+            @Override
+            public boolean isManager(DemoUser user) {
+                return true;
+            }
+        }, "edit"));
+        verifyNoInteractions(groupRepository);
+    }
+}
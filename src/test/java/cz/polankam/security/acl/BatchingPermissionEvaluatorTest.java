@@ -0,0 +1,178 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.ResourceNotFoundException;
+import cz.polankam.security.acl.test_utils.DemoGroup;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchingPermissionEvaluatorTest {
+
+    private IResourceRepository groupRepository;
+    private AclPermissionEvaluator evaluator;
+    private DemoPermissionsService permissionsService;
+    private Authentication user;
+    private Authentication admin;
+
+    @BeforeEach
+    void setUp() {
+        groupRepository = mock(IResourceRepository.class);
+        when(groupRepository.findAllById(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> !id.equals(404L))
+                    .collect(Collectors.toMap(id -> id, id -> new DemoGroup()));
+        });
+        when(groupRepository.findById(1L)).thenReturn(Optional.of(new DemoGroup()));
+        permissionsService = new DemoPermissionsService(groupRepository);
+        evaluator = new AclPermissionEvaluator(permissionsService, null);
+        user = mock(Authentication.class);
+        when(user.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+        admin = mock(Authentication.class);
+        when(admin.getPrincipal()).thenReturn(new DemoUser("admin", "ADMIN"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+
+    @Test
+    void hasPermission_LoadedOncePerGroup() throws Exception {
+        try (BatchingPermissionEvaluator batching = batching(100, Duration.ofMinutes(1))) {
+            CompletableFuture<Boolean> first = batching.hasPermission(user, 1L, "group", "view");
+            CompletableFuture<Boolean> second = batching.hasPermission(user, 2L, "group", "view");
+            CompletableFuture<Boolean> third = batching.hasPermission(user, 1L, "group", "edit");
+            CompletableFuture<Boolean> instance = batching.hasPermission(admin, 3L, "instance", "view");
+            assertFalse(first.isDone());
+
+            batching.flush();
+            assertTrue(first.get());
+            assertTrue(second.get());
+            assertFalse(third.get());
+            assertTrue(instance.get());
+        }
+
+        verify(groupRepository, times(1)).findAllById(Set.of(1L, 2L));
+        verify(groupRepository, never()).findById(any());
+    }
+
+    @Test
+    void hasPermission_UnconditionalNotLoaded() throws Exception {
+        try (BatchingPermissionEvaluator batching = batching(100, Duration.ofMinutes(1))) {
+            CompletableFuture<Boolean> denied = batching.hasPermission(user, 1L, "group", "delete");
+            batching.flush();
+            assertFalse(denied.get());
+        }
+        verify(groupRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void hasPermission_FlushedWhenFull() {
+        try (BatchingPermissionEvaluator batching = batching(2, Duration.ofMinutes(1))) {
+            CompletableFuture<Boolean> first = batching.hasPermission(user, 1L, "group", "view");
+            assertFalse(first.isDone());
+            CompletableFuture<Boolean> second = batching.hasPermission(user, 2L, "group", "view");
+            assertTrue(first.isDone());
+            assertTrue(second.isDone());
+        }
+    }
+
+    @Test
+    void hasPermission_FlushedAfterDelay() throws Exception {
+        try (BatchingPermissionEvaluator batching = batching(100, Duration.ofMillis(10))) {
+            assertTrue(batching.hasPermission(user, 1L, "group", "view").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void hasPermission_NotFound() {
+        try (BatchingPermissionEvaluator batching = batching(100, Duration.ofMinutes(1))) {
+            CompletableFuture<Boolean> missing = batching.hasPermission(user, 404L, "group", "view");
+            CompletableFuture<Boolean> existing = batching.hasPermission(user, 1L, "group", "view");
+            batching.flush();
+
+            ExecutionException e = assertThrows(ExecutionException.class, missing::get);
+            assertInstanceOf(ResourceNotFoundException.class, e.getCause());
+            assertTrue(existing.join());
+        }
+    }
+
+    @Test
+    void hasPermission_GroupFailed() {
+        when(groupRepository.findAllById(anyCollection())).thenThrow(new IllegalStateException("Database down"));
+        try (BatchingPermissionEvaluator batching = batching(100, Duration.ofMinutes(1))) {
+            CompletableFuture<Boolean> group = batching.hasPermission(user, 1L, "group", "view");
+            CompletableFuture<Boolean> instance = batching.hasPermission(user, 1L, "instance", "join");
+            batching.flush();
+
+            assertTrue(group.isCompletedExceptionally());
+            assertTrue(instance.join());
+        }
+    }
+
+    @Test
+    void hasPermission_AfterClose() {
+        BatchingPermissionEvaluator batching = batching(100, Duration.ofMinutes(1));
+        batching.close();
+
+        CompletableFuture<Boolean> first = batching.hasPermission(user, 1L, "group", "view");
+        CompletableFuture<Boolean> second = batching.hasPermission(user, 2L, "group", "view");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(second.isCompletedExceptionally());
+        verify(groupRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void hasPermission_ErrorCompletesAll() {
+        when(groupRepository.findAllById(anyCollection())).thenThrow(new StackOverflowError());
+        try (BatchingPermissionEvaluator batching = batching(100, Duration.ofMinutes(1))) {
+            CompletableFuture<Boolean> group = batching.hasPermission(user, 1L, "group", "view");
+            CompletableFuture<Boolean> instance = batching.hasPermission(user, 1L, "instance", "join");
+            assertThrows(StackOverflowError.class, batching::flush);
+
+            assertTrue(group.isCompletedExceptionally());
+            assertTrue(instance.isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    void isAllowedAsync() {
+        SecurityContextHolder.getContext().setAuthentication(user);
+        try (BatchingPermissionEvaluator batching = batching(100, Duration.ofMinutes(1))) {
+            AuthorizatorService authorizator = new AuthorizatorService(evaluator, batching);
+            CompletableFuture<Boolean> result = authorizator.isAllowedAsync("group", 1L, "view");
+            assertFalse(result.isDone());
+            batching.flush();
+            assertTrue(result.join());
+        }
+
+        AuthorizatorService immediate = new AuthorizatorService(evaluator);
+        assertTrue(immediate.isAllowedAsync("group", 1L, "view").isDone());
+        verify(groupRepository, times(1)).findById(1L);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private BatchingPermissionEvaluator batching(int maxBatchSize, Duration maxDelay) {
+        return new BatchingPermissionEvaluator(evaluator, permissionsService, null, maxBatchSize, maxDelay);
+    }
+}
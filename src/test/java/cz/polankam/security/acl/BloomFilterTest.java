@@ -0,0 +1,38 @@
+package cz.polankam.security.acl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long id = 0; id < 10_000; id++) {
+            filter.put(id);
+        }
+        filter.putAll(List.of("a", "b"));
+
+        for (long id = 0; id < 10_000; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+        assertTrue(filter.mightContain("a"));
+
+        int falsePositives = 0;
+        for (long id = 10_000; id < 20_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void constructor_Invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+    }
+}
@@ -0,0 +1,82 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimsPrincipalResolverTest {
+
+    @Test
+    void resolve_CachedByToken() {
+        AtomicInteger extractions = new AtomicInteger();
+        ClaimsPrincipalResolver resolver = new ClaimsPrincipalResolver(authentication -> {
+            extractions.incrementAndGet();
+            return Map.of("tenant", "acme");
+        }, 10);
+
+        UserDetails first = resolver.resolve(token("user", "token-1", "USER", "ADMIN"));
+        UserDetails second = resolver.resolve(token("user", "token-1", "USER", "ADMIN"));
+        assertSame(first, second);
+        assertEquals(1, extractions.get());
+
+        ClaimsPrincipal principal = (ClaimsPrincipal) first;
+        assertEquals("user", principal.getUsername());
+        assertEquals("acme", principal.getClaim("tenant"));
+        assertEquals(List.of("ADMIN", "USER"), principal.getAuthorityNames());
+
+        assertNotSame(first, resolver.resolve(token("user", "token-2", "USER")));
+        assertEquals(2, extractions.get());
+    }
+
+    @Test
+    void resolve_SharedCredentials() {
+        ClaimsPrincipalResolver resolver = new ClaimsPrincipalResolver(authentication -> Map.of(), 10);
+        UserDetails alice = resolver.resolve(token("alice", "shared", "ADMIN"));
+        UserDetails bob = resolver.resolve(token("bob", "shared", "USER"));
+
+        assertEquals("bob", bob.getUsername());
+        assertEquals(List.of("USER"), ((ClaimsPrincipal) bob).getAuthorityNames());
+        assertSame(alice, resolver.resolve(token("alice", "shared", "ADMIN")));
+    }
+
+    @Test
+    void resolve_UserDetails() {
+        ClaimsPrincipalResolver resolver = new ClaimsPrincipalResolver(authentication -> Map.of(), 10);
+        DemoUser user = new DemoUser("user", "USER");
+        assertSame(user, resolver.resolve(new TestingAuthenticationToken(user, null)));
+    }
+
+    @Test
+    void resolve_NotAuthenticated() {
+        ClaimsPrincipalResolver resolver = new ClaimsPrincipalResolver(authentication -> Map.of(), 10);
+        TestingAuthenticationToken token = new TestingAuthenticationToken("user", "token");
+        token.setAuthenticated(false);
+        assertNull(resolver.resolve(token));
+    }
+
+    @Test
+    void evaluator_WithoutUserDetails() {
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(new DemoPermissionsService(), null);
+        Authentication authentication = token("user", "token-1", "ADMIN");
+        assertFalse(evaluator.hasPermission(authentication, "instance", "view"));
+
+        evaluator.setPrincipalResolver(new ClaimsPrincipalResolver(ignored -> Map.of(), 10));
+        assertTrue(evaluator.hasPermission(authentication, "instance", "view"));
+        assertFalse(evaluator.hasPermission(authentication, "instance", "join"));
+    }
+
+    private static Authentication token(String name, String token, String... authorities) {
+        TestingAuthenticationToken authentication = new TestingAuthenticationToken(name, token, authorities);
+        authentication.setAuthenticated(true);
+        return authentication;
+    }
+}
@@ -0,0 +1,161 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FieldMaskerTest {
+
+    private Role user;
+    private IPermissionsService service;
+    private AclPermissionEvaluator evaluator;
+    private FieldMasker masker;
+
+    @BeforeEach
+    void setUp() {
+        user = new Role("USER")
+                .addPermissionRules(true, "account", "view")
+                .addPermissionRules(false, "account/salary", "view")
+                .addPermissionRules(true, "account/email",
+                        (UserDetails details, AccountDto account) -> account.getName().equals(details.getUsername()), "view")
+                .addPermissionRules(false, "account/email", "view");
+        Role admin = new Role("ADMIN").addPermissionRules(true, "*", "*");
+
+        service = mock(IPermissionsService.class);
+        when(service.getRole("USER")).thenReturn(user);
+        when(service.getRole("ADMIN")).thenReturn(admin);
+        evaluator = new AclPermissionEvaluator(service, null);
+        masker = new FieldMasker(evaluator);
+    }
+
+
+    @Test
+    void maskAll_FieldRules() {
+        List<AccountDto> accounts = List.of(new AccountDto("alice"), new AccountDto("bob"));
+        assertSame(accounts, masker.maskAll(authentication("alice", "USER"), "account", accounts));
+
+        assertEquals("alice", accounts.get(0).getName());
+        assertEquals("alice@example.com", accounts.get(0).getEmail());
+        assertEquals(0, accounts.get(0).salary);
+        assertEquals("bob", accounts.get(1).getName());
+        assertNull(accounts.get(1).getEmail());
+        assertEquals(0, accounts.get(1).salary);
+    }
+
+    @Test
+    void mask_Wildcard() {
+        AccountDto account = masker.mask(authentication("admin", "ADMIN"), "account", new AccountDto("bob"));
+        assertEquals("bob@example.com", account.getEmail());
+        assertEquals(1000, account.salary);
+    }
+
+    @Test
+    void mask_NoUser() {
+        AccountDto account = masker.mask(null, "account", new AccountDto("bob"));
+        assertNull(account.getName());
+        assertNull(account.getEmail());
+        assertEquals(0, account.salary);
+    }
+
+    @Test
+    void mask_RoleWithoutRules() {
+        AccountDto account = masker.mask(authentication("guest", "GUEST"), "account", new AccountDto("bob"));
+        assertNull(account.getName());
+        assertNull(account.getEmail());
+        assertEquals(0, account.salary);
+    }
+
+    @Test
+    void mask_UndecidedConditionalField() {
+        Role guest = new Role("GUEST").addPermissionRules(true, "account/name",
+                (UserDetails details, AccountDto account) -> account.getName().equals(details.getUsername()), "view");
+        when(service.getRole("GUEST")).thenReturn(guest);
+
+        assertEquals("guest", masker.mask(authentication("guest", "GUEST"), "account", new AccountDto("guest")).getName());
+        assertNull(masker.mask(authentication("guest", "GUEST"), "account", new AccountDto("bob")).getName());
+    }
+
+    @Test
+    void mask_FinalField() {
+        assertThrows(PermissionException.class,
+                () -> masker.mask(authentication("alice", "USER"), "account", new ImmutableAccountDto()));
+    }
+
+    @Test
+    void verify_ImmutableTypes() {
+        assertSame(masker, masker.verify(AccountDto.class));
+        PermissionException e = assertThrows(PermissionException.class, () -> masker.verify(AccountRecord.class));
+        assertTrue(e.getMessage().contains("name"));
+        assertTrue(e.getMessage().contains("email"));
+        assertTrue(e.getMessage().contains("records cannot be masked"));
+    }
+
+    @Test
+    void mask_ImmutableFieldAlwaysVisible() {
+        Role reader = new Role("READER").addPermissionRules(true, "account", "view");
+        when(service.getRole("READER")).thenReturn(reader);
+        AccountRecord account = new AccountRecord("bob", "bob@example.com");
+        assertSame(account, masker.mask(authentication("reader", "READER"), "account", account));
+    }
+
+    @Test
+    void getMaskingPlan_CachedUntilRoleChanged() {
+        UserDetails alice = new DemoUser("alice", "USER");
+        FieldMaskingPlan plan = evaluator.getMaskingPlan(alice, AccountDto.class, "account", "view");
+        assertSame(plan, evaluator.getMaskingPlan(new DemoUser("bob", "USER"), AccountDto.class, "account", "view"));
+
+        user.addPermissionRules(false, "account/name", "view");
+        assertNotSame(plan, evaluator.getMaskingPlan(alice, AccountDto.class, "account", "view"));
+        assertNull(masker.mask(authentication("alice", "USER"), "account", new AccountDto("alice")).getName());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static Authentication authentication(String name, String role) {
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getPrincipal()).thenReturn(new DemoUser(name, role));
+        return authentication;
+    }
+
+    public static class AccountDto {
+        private String name;
+        private String email;
+        int salary = 1000;
+
+        AccountDto(String name) {
+            this.name = name;
+            this.email = name + "@example.com";
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+    }
+
+    record AccountRecord(String name, String email) {
+    }
+
+    static class ImmutableAccountDto {
+        private final String salary = "1000";
+    }
+}
@@ -0,0 +1,246 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.invalidation.InvalidationEvent;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoadingPermissionsServiceTest {
+
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> joinAllowed = new ConcurrentHashMap<>();
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+    private volatile Runnable duringLoad = () -> {};
+    private AtomicLong now;
+    private LoadingPermissionsService service;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        joinAllowed.put("USER", true);
+        service = new LoadingPermissionsService(this::load, Collections.emptyMap(), 3, Duration.ofMinutes(1),
+                Runnable::run, now::get);
+    }
+
+
+    @Test
+    void getRole_LoadedOnce() {
+        Role role = service.getRole("USER");
+        assertNotNull(role);
+        assertSame(role, service.getRole("USER"));
+        assertEquals(1, loads.get("USER").get());
+
+        assertFalse(service.roleExists("UNKNOWN"));
+        assertFalse(service.roleExists("UNKNOWN"));
+        assertEquals(1, loads.get("UNKNOWN").get());
+    }
+
+    @Test
+    void getRole_ParentsShared() {
+        Role first = service.getRole("ADMIN");
+        Role second = service.getRole("MANAGER");
+        assertSame(service.getRole("USER"), first.getParent());
+        assertSame(first.getParent(), second.getParent());
+        assertEquals(1, loads.get("USER").get());
+    }
+
+    @Test
+    void getRole_LeastRecentlyUsedEvicted() {
+        Role admin = service.getRole("ADMIN");
+        int revision = admin.getRevision();
+        service.getRole("MANAGER");
+        service.getRole("GUEST");
+
+        // parent is used with every child, therefore the oldest child is evicted
+        assertEquals(3, service.getRoleCount());
+        assertNotEquals(revision, admin.getRevision());
+        service.getRole("USER");
+        assertEquals(1, loads.get("USER").get());
+        assertNotSame(admin, service.getRole("ADMIN"));
+        assertEquals(2, loads.get("ADMIN").get());
+    }
+
+    @Test
+    void getRole_SingleFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        LoadingPermissionsService blocking = new LoadingPermissionsService((name, roles) -> {
+            count.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Role(name);
+        }, Collections.emptyMap(), 10, Duration.ofMinutes(1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Role> first = executor.submit(() -> blocking.getRole("USER"));
+            started.await(5, TimeUnit.SECONDS);
+            Future<Role> second = executor.submit(() -> blocking.getRole("USER"));
+            Thread.sleep(50);
+            release.countDown();
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, count.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void getRole_RefreshedAhead() {
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(service, null);
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getPrincipal()).thenReturn(new DemoUser("user", "ADMIN"));
+        assertTrue(evaluator.hasPermission(authentication, "instance", "join"));
+
+        // unchanged role is kept
+        Role user = service.getRole("USER");
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertSame(user, service.getRole("USER"));
+        assertEquals(2, loads.get("USER").get());
+        assertTrue(evaluator.hasPermission(authentication, "instance", "join"));
+
+        // changed role replaces the cached one together with its descendants
+        joinAllowed.put("USER", false);
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertSame(user, service.getRole("USER"));
+        assertNotSame(user, service.getRole("USER"));
+        assertFalse(evaluator.hasPermission(authentication, "instance", "join"));
+        assertSame(service.getRole("USER"), service.getRole("ADMIN").getParent());
+    }
+
+    @Test
+    void getRole_FailedRefreshKeepsRole() {
+        Role user = service.getRole("USER");
+        joinAllowed.remove("USER");
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertSame(user, service.getRole("USER"));
+        assertSame(user, service.getRole("USER"));
+        assertEquals(2, loads.get("USER").get());
+    }
+
+    @Test
+    void invalidate_RoleWithDescendants() {
+        Role user = service.getRole("USER");
+        Role admin = service.getRole("ADMIN");
+        service.invalidate(List.of(InvalidationEvent.role("USER")));
+        assertEquals(0, service.getRoleCount());
+        assertNotSame(admin, service.getRole("ADMIN"));
+        assertNotSame(user, service.getRole("USER"));
+
+        service.invalidate(List.of(InvalidationEvent.all()));
+        assertEquals(0, service.getRoleCount());
+    }
+
+    @Test
+    void getRole_RefreshedWithConditions() {
+        owners.put("OWNER", "alice");
+        Role owner = service.getRole("OWNER");
+        int revision = owner.getRevision();
+
+        // new instances of the same conditions keep the cached role
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertSame(owner, service.getRole("OWNER"));
+        assertSame(owner, service.getRole("OWNER"));
+        assertEquals(2, loads.get("OWNER").get());
+        assertEquals(revision, owner.getRevision());
+
+        // condition with different captured value replaces the role
+        owners.put("OWNER", "bob");
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertSame(owner, service.getRole("OWNER"));
+        assertNotSame(owner, service.getRole("OWNER"));
+    }
+
+    @Test
+    void invalidate_DuringLoad() {
+        duringLoad = () -> service.invalidate("USER");
+        Role user = service.getRole("USER");
+        assertNotNull(user);
+        assertEquals(0, service.getRoleCount());
+
+        duringLoad = () -> {};
+        assertNotSame(user, service.getRole("USER"));
+        assertEquals(1, service.getRoleCount());
+        assertEquals(2, loads.get("USER").get());
+    }
+
+    @Test
+    void invalidate_DuringRefresh() {
+        Role user = service.getRole("USER");
+        int revision = user.getRevision();
+        joinAllowed.put("USER", false);
+        duringLoad = () -> service.invalidate("ADMIN");
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        // outdated refresh is not cached
+        assertSame(user, service.getRole("USER"));
+        assertSame(user, service.getRole("USER"));
+        assertEquals(revision, user.getRevision());
+    }
+
+    @Test
+    void getRole_CycleOfParents() {
+        PermissionException e = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(PermissionException.class, () -> service.getRole("CYCLE_A")));
+        assertTrue(e.getMessage().contains("CYCLE_A"));
+        assertEquals(0, service.getRoleCount());
+    }
+
+    @Test
+    void getResource_NotDefined() {
+        assertThrows(PermissionException.class, () -> service.getResource("group"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private Role load(String name, IPermissionsService roles) {
+        loads.computeIfAbsent(name, ignored -> new AtomicInteger()).incrementAndGet();
+        duringLoad.run();
+        switch (name) {
+            case "USER":
+                Boolean allowed = joinAllowed.get(name);
+                if (allowed == null) {
+                    throw new IllegalStateException("Store is not available");
+                }
+                return new Role(name).addPermissionRules(PermissionRule.intern(allowed, "instance", List.of("join"), null));
+            case "OWNER":
+                String owner = owners.get(name);
+                return new Role(name).addPermissionRules(true, "instance",
+                        (UserDetails user, Object instance) -> owner.equals(user.getUsername()), "join");
+            case "CYCLE_A":
+                return new Role(name, roles.getRole("CYCLE_B"));
+            case "CYCLE_B":
+                return new Role(name, roles.getRole("CYCLE_A"));
+            case "ADMIN":
+            case "MANAGER":
+            case "GUEST":
+                return new Role(name, roles.getRole("USER"));
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.invalidation.FileInvalidationBus;
+import cz.polankam.security.acl.invalidation.InvalidationEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class NegativeCachingResourceRepositoryTest {
+
+    private IResourceRepository delegate;
+    private AtomicLong now;
+    private NegativeCachingResourceRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(IResourceRepository.class);
+        when(delegate.findById(any())).thenReturn(Optional.empty());
+        when(delegate.findById(1L)).thenReturn(Optional.of("group"));
+        now = new AtomicLong();
+        repository = new NegativeCachingResourceRepository(delegate, "group", Duration.ofSeconds(10), 2, now::get);
+    }
+
+
+    @Test
+    void findById_MissingIsRemembered() {
+        assertEquals(Optional.empty(), repository.findById(2L));
+        assertEquals(Optional.empty(), repository.findById(2L));
+        verify(delegate, times(1)).findById(2L);
+
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertEquals(Optional.empty(), repository.findById(2L));
+        verify(delegate, times(2)).findById(2L);
+    }
+
+    @Test
+    void findById_ExistingIsNotRemembered() {
+        assertEquals(Optional.of("group"), repository.findById(1L));
+        assertEquals(Optional.of("group"), repository.findById(1L));
+        verify(delegate, times(2)).findById(1L);
+        assertEquals(0, repository.getMissingCount());
+    }
+
+    @Test
+    void findById_Bounded() {
+        repository.findById(2L);
+        repository.findById(3L);
+        repository.findById(4L);
+        assertEquals(1, repository.getMissingCount());
+    }
+
+    @Test
+    void findById_BloomFilter() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put(1L);
+        repository.setBloomFilter(filter);
+
+        assertEquals(Optional.of("group"), repository.findById(1L));
+        assertEquals(Optional.empty(), repository.findById(12345L));
+        verify(delegate, never()).findById(12345L);
+    }
+
+    @Test
+    void findAllById_Delegated() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put(1L);
+        filter.put(2L);
+        filter.put(3L);
+        repository.setBloomFilter(filter);
+        when(delegate.findAllById(List.of(1L, 2L, 3L))).thenReturn(Map.of(1L, "group"));
+        when(delegate.findAllById(List.of(1L))).thenReturn(Map.of(1L, "group"));
+
+        assertEquals(Map.of(1L, "group"), repository.findAllById(List.of(1L, 2L, 3L, 12345L)));
+        assertEquals(2, repository.getMissingCount());
+        assertEquals(Map.of(1L, "group"), repository.findAllById(List.of(1L, 2L, 3L)));
+        verify(delegate, times(1)).findAllById(List.of(1L));
+        verify(delegate, never()).findById(any());
+    }
+
+    @Test
+    void created() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        repository.setBloomFilter(filter);
+        repository.findById(2L);
+        verify(delegate, never()).findById(2L);
+
+        repository.created(2L);
+        when(delegate.findById(2L)).thenReturn(Optional.of("created"));
+        assertEquals(Optional.of("created"), repository.findById(2L));
+    }
+
+    @Test
+    void created_DuringLookup() {
+        when(delegate.findById(2L)).thenAnswer(invocation -> {
+            repository.created(2L);
+            return Optional.empty();
+        });
+        when(delegate.findAllById(List.of(3L))).thenAnswer(invocation -> {
+            repository.created(3L);
+            return Map.of();
+        });
+
+        assertEquals(Optional.empty(), repository.findById(2L));
+        assertEquals(Map.of(), repository.findAllById(List.of(3L)));
+        assertEquals(0, repository.getMissingCount());
+    }
+
+    @Test
+    void invalidate() {
+        repository.findById(2L);
+        repository.findById(3L);
+
+        repository.invalidate(List.of(InvalidationEvent.resource("other", 2L), InvalidationEvent.resource("group", 2L)));
+        assertEquals(1, repository.getMissingCount());
+
+        repository.invalidate(List.of(InvalidationEvent.resource("group")));
+        assertEquals(0, repository.getMissingCount());
+    }
+
+    @Test
+    void invalidate_OtherNode(@TempDir Path directory) {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put(2L);
+        repository.setBloomFilter(filter);
+        repository.setIdConverter(id -> Long.valueOf(id.toString()));
+        repository.findById(2L);
+        assertEquals(1, repository.getMissingCount());
+
+        Path file = directory.resolve("invalidation.log");
+        try (FileInvalidationBus node1 = new FileInvalidationBus(file, null);
+             FileInvalidationBus node2 = new FileInvalidationBus(file, null)) {
+            node2.subscribe(repository);
+            node1.publish(List.of(InvalidationEvent.resource("group", 2L), InvalidationEvent.resource("group", 3L)));
+            node2.poll();
+        }
+
+        assertEquals(0, repository.getMissingCount());
+        when(delegate.findById(3L)).thenReturn(Optional.of("created"));
+        assertEquals(Optional.of("created"), repository.findById(3L));
+    }
+}
@@ -0,0 +1,167 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.PolicyReport.Finding;
+import cz.polankam.security.acl.PolicyReport.Kind;
+import cz.polankam.security.acl.conditions.PermissionCondition;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static cz.polankam.security.acl.conditions.ConditionsFactory.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PolicyAnalyzerTest {
+
+    private final PermissionCondition<Object> condition = (user, resource) -> true;
+
+    @Test
+    void analyze_DemoRoles() {
+        PolicyReport report = PolicyAnalyzer.analyze(new DemoPermissionsService().getRoles());
+        assertTrue(report.isEmpty());
+    }
+
+    @Test
+    void analyze_Shadowed() {
+        Role role = new Role("role")
+                .addPermissionRules(true, "*", "*")
+                .addPermissionRules(false, "group", "view")
+                .addPermissionRules(false, "org/project", "view");
+
+        List<Finding> findings = PolicyAnalyzer.analyze(role).getFindings();
+        assertEquals(1, findings.size());
+        assertEquals(Kind.SHADOWED, findings.get(0).getKind());
+        assertEquals("group", findings.get(0).getRule().getResource());
+        assertEquals("*", findings.get(0).getCause().getResource());
+        assertTrue(findings.get(0).isRemovable());
+    }
+
+    @Test
+    void analyze_ConditionalDoesNotShadow() {
+        Role role = new Role("role")
+                .addPermissionRules(true, "group", condition, "view")
+                .addPermissionRules(false, "group", "view");
+
+        assertTrue(PolicyAnalyzer.analyze(role).isEmpty());
+    }
+
+    @Test
+    void analyze_DuplicateAndUnreachable() {
+        Role role = new Role("role")
+                .addPermissionRules(true, "group", condition, "view", "edit")
+                .addPermissionRules(true, "group", condition, "edit", "view")
+                .addPermissionRules(true, "group", new String[0]);
+
+        List<Finding> findings = PolicyAnalyzer.analyze(role).getFindings();
+        assertEquals(2, findings.size());
+        assertEquals(Kind.DUPLICATE, findings.get(0).getKind());
+        assertEquals(Kind.UNREACHABLE, findings.get(1).getKind());
+    }
+
+    @Test
+    void analyze_InheritedDuplicate() {
+        Role parent = new Role("parent")
+                .addPermissionRules(true, "group", "view");
+        Role removable = new Role("removable", parent)
+                .addPermissionRules(true, "group", "view")
+                .addPermissionRules(false, "instance", "view");
+        Role kept = new Role("kept", parent)
+                .addPermissionRules(true, "group", "view")
+                .addPermissionRules(false, "*", "view");
+
+        List<Finding> findings = PolicyAnalyzer.analyze(Arrays.asList(removable, kept)).getFindings();
+        assertEquals(2, findings.size());
+        assertEquals(Kind.DUPLICATE, findings.get(0).getKind());
+        assertSame(removable, findings.get(0).getRole());
+        assertTrue(findings.get(0).isRemovable());
+        assertEquals(Kind.DUPLICATE, findings.get(1).getKind());
+        assertSame(kept, findings.get(1).getRole());
+        assertFalse(findings.get(1).isRemovable());
+    }
+
+    @Test
+    void analyze_Mergeable() {
+        Role role = new Role("role")
+                .addPermissionRules(true, "group", condition, "view")
+                .addPermissionRules(true, "group", condition, "edit");
+
+        List<Finding> findings = PolicyAnalyzer.analyze(role).getFindings();
+        assertEquals(1, findings.size());
+        assertEquals(Kind.MERGEABLE, findings.get(0).getKind());
+        assertFalse(findings.get(0).isRemovable());
+    }
+
+    @Test
+    void analyze_EqualDeclarativeConditions() {
+        Role role = new Role("role")
+                .addPermissionRules(true, "group", attributeEquals("owner", principalAttr("username")), "view")
+                .addPermissionRules(true, "group", attributeEquals("owner", principalAttr("username")), "edit")
+                .addPermissionRules(true, "group", attributeEquals("owner", principalAttr("username")), "view");
+
+        List<Finding> findings = PolicyAnalyzer.analyze(role).getFindings();
+        assertEquals(List.of(Kind.MERGEABLE, Kind.DUPLICATE),
+                Arrays.asList(findings.get(0).getKind(), findings.get(1).getKind()));
+    }
+
+    @Test
+    void prune() {
+        Role role = new Role("role")
+                .addPermissionRules(false, "org/project", "edit")
+                .addPermissionRules(true, "org/*", "edit")
+                .addPermissionRules(true, "org/project", "edit", "view")
+                .addPermissionRules(false, "org/project", "edit");
+
+        PolicyReport report = PolicyAnalyzer.prune(Collections.singletonList(role));
+        assertEquals(1, report.getRemovable().size());
+        assertEquals(3, role.getPermissionRules().size());
+        assertEquals(2, role.getPermissionRules("org/project").size());
+
+        List<List<PermissionRule>> levels = role.getPermissionRulesOnPath(new String[]{"org", "project"});
+        assertEquals(3, levels.get(1).size());
+        assertFalse(levels.get(1).get(0).isAllowed());
+        assertEquals("org/*", levels.get(1).get(1).getResource());
+    }
+
+    @Test
+    void prune_DecisionsUnchangedForAlgorithms() {
+        for (CombiningAlgorithm algorithm : CombiningAlgorithm.values()) {
+            Role role = new Role("USER")
+                    .addPermissionRules(true, "*", "*")
+                    .addPermissionRules(false, "group", "delete")
+                    .addPermissionRules(true, "group", condition, "view")
+                    .addPermissionRules(false, "group", "view");
+            IPermissionsService service = mock(IPermissionsService.class);
+            when(service.getRole("USER")).thenReturn(role);
+            AclPermissionEvaluator evaluator = new AclPermissionEvaluator(service, null);
+            evaluator.setCombiningAlgorithm(algorithm);
+            Authentication authentication = mock(Authentication.class);
+            when(authentication.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+
+            boolean delete = evaluator.hasPermission(authentication, "group", "delete");
+            boolean edit = evaluator.hasPermission(authentication, "group", "edit");
+            PolicyAnalyzer.prune(Collections.singletonList(role), algorithm);
+            evaluator.invalidate();
+
+            assertEquals(delete, evaluator.hasPermission(authentication, "group", "delete"), algorithm.name());
+            assertEquals(edit, evaluator.hasPermission(authentication, "group", "edit"), algorithm.name());
+        }
+    }
+
+    @Test
+    void analyze_ShadowedDependsOnAlgorithm() {
+        Role role = new Role("role")
+                .addPermissionRules(true, "*", "*")
+                .addPermissionRules(false, "group", "delete");
+
+        assertEquals(1, PolicyAnalyzer.analyze(List.of(role), CombiningAlgorithm.FIRST_APPLICABLE).getRemovable().size());
+        assertTrue(PolicyAnalyzer.analyze(List.of(role), CombiningAlgorithm.DENY_OVERRIDES).isEmpty());
+
+        // permit overrides evaluates the allow rule first as well
+        assertEquals(1, PolicyAnalyzer.analyze(List.of(role), CombiningAlgorithm.PERMIT_OVERRIDES).getRemovable().size());
+    }
+}
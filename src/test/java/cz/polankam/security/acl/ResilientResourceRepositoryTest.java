@@ -0,0 +1,150 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.ResourceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ResilientResourceRepositoryTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    void findById_SingleFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        IResourceRepository slow = id -> {
+            calls.incrementAndGet();
+            await(release);
+            return Optional.of("entity " + id);
+        };
+        ResilientResourceRepository repository = new ResilientResourceRepository(slow, Duration.ofSeconds(10), 4);
+
+        List<Future<Optional<Object>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> repository.findById(1L)));
+        }
+        while (calls.get() == 0) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+        release.countDown();
+
+        for (Future<Optional<Object>> result : results) {
+            assertEquals(Optional.of("entity 1"), result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, repository.getInFlightCount());
+    }
+
+    @Test
+    void findById_Timeout() {
+        CountDownLatch release = new CountDownLatch(1);
+        IResourceRepository slow = id -> {
+            await(release);
+            return Optional.of("entity");
+        };
+        ResilientResourceRepository repository =
+                new ResilientResourceRepository(slow, Duration.ofMillis(50), 4, executor);
+
+        assertThrows(ResourceUnavailableException.class, () -> repository.findById(1L));
+        release.countDown();
+    }
+
+    @Test
+    void findById_Bulkhead() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IResourceRepository slow = id -> {
+            started.countDown();
+            await(release);
+            return Optional.of("entity " + id);
+        };
+        ResilientResourceRepository repository = new ResilientResourceRepository(slow, Duration.ofMillis(200), 1);
+
+        Future<Optional<Object>> first = executor.submit(() -> repository.findById(1L));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertThrows(ResourceUnavailableException.class, () -> repository.findById(2L));
+
+        release.countDown();
+        assertEquals(Optional.of("entity 1"), first.get(10, TimeUnit.SECONDS));
+        assertEquals(Optional.of("entity 2"), repository.findById(2L));
+    }
+
+    @Test
+    void findById_Exception() {
+        IResourceRepository failing = id -> {
+            throw new IllegalStateException("failure");
+        };
+        ResilientResourceRepository repository =
+                new ResilientResourceRepository(failing, Duration.ofSeconds(1), 1, executor);
+
+        assertThrows(IllegalStateException.class, () -> repository.findById(1L));
+        assertEquals(0, repository.getInFlightCount());
+    }
+
+    @Test
+    void findById_Error() {
+        AtomicInteger calls = new AtomicInteger();
+        IResourceRepository failing = id -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new StackOverflowError();
+            }
+            return Optional.of("resource");
+        };
+        ResilientResourceRepository repository = new ResilientResourceRepository(failing, Duration.ofSeconds(1), 1);
+
+        assertThrows(StackOverflowError.class, () -> repository.findById(1L));
+        assertEquals(0, repository.getInFlightCount());
+        assertEquals(Optional.of("resource"), repository.findById(1L));
+    }
+
+    @Test
+    void findById_NullIdentification() {
+        IResourceRepository delegate = mock(IResourceRepository.class);
+        when(delegate.findById(null)).thenReturn(Optional.empty());
+        ResilientResourceRepository repository = new ResilientResourceRepository(delegate, Duration.ofSeconds(1), 1);
+
+        assertEquals(Optional.empty(), repository.findById(null));
+        verify(delegate, times(1)).findById(null);
+    }
+
+    @Test
+    void findAllById_Delegated() {
+        IResourceRepository delegate = mock(IResourceRepository.class);
+        when(delegate.findAllById(List.of(1L, 2L))).thenReturn(Map.of(1L, "entity 1"));
+        ResilientResourceRepository repository = new ResilientResourceRepository(delegate, Duration.ofSeconds(1), 1);
+
+        assertEquals(Map.of(1L, "entity 1"), repository.findAllById(List.of(1L, 2L)));
+        verify(delegate, never()).findById(any());
+        assertEquals(0, repository.getInFlightCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
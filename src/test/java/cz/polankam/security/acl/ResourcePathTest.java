@@ -0,0 +1,41 @@
+package cz.polankam.security.acl;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourcePathTest {
+
+    @Test
+    void parse() {
+        ResourcePath path = ResourcePath.parse("org/42/project/7/document/3");
+
+        assertEquals(3, path.getDepth());
+        assertEquals("org", path.getType(0));
+        assertEquals("42", path.getId(0));
+        assertEquals("project", path.getType(1));
+        assertEquals("7", path.getId(1));
+        assertEquals("document", path.getResource());
+        assertEquals("3", path.getId());
+        assertEquals("org/project/document", path.getTypePath());
+        assertEquals("org/42/project/7/document/3", path.toString());
+    }
+
+    @Test
+    void parse_Invalid() {
+        assertThrows(PermissionException.class, () -> ResourcePath.parse(""));
+        assertThrows(PermissionException.class, () -> ResourcePath.parse("org/42/project"));
+    }
+
+    @Test
+    void childAndPrefix() {
+        ResourcePath path = ResourcePath.of("org", 42L).child("project", 7L);
+
+        assertEquals(2, path.getDepth());
+        assertEquals(7L, path.getId());
+        assertEquals(ResourcePath.of("org", 42L), path.prefix(0));
+        assertSame(path, path.prefix(1));
+        assertNotEquals(ResourcePath.parse("org/42/project/7"), path);
+    }
+}
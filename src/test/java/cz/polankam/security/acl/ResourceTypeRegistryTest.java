@@ -0,0 +1,35 @@
+package cz.polankam.security.acl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceTypeRegistryTest {
+
+    @Test
+    void resolve() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry()
+                .register(Number.class, "number")
+                .register(Serializable.class, "serializable")
+                .register(Long.class, "long");
+
+        assertEquals(Optional.of("long"), registry.resolve(42L));
+        assertEquals(Optional.of("number"), registry.resolve(42));
+        assertEquals(Optional.of("serializable"), registry.resolve(new ArrayList<>()));
+        assertEquals(Optional.empty(), registry.resolve(new Object()));
+        assertEquals(Optional.empty(), registry.resolve((Object) null));
+    }
+
+    @Test
+    void register_ClearsResolved() {
+        ResourceTypeRegistry registry = new ResourceTypeRegistry().register(Number.class, "number");
+        assertEquals(Optional.of("number"), registry.resolve(42));
+
+        registry.register(Integer.class, "integer");
+        assertEquals(Optional.of("integer"), registry.resolve(42));
+    }
+}
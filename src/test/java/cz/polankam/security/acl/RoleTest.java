@@ -177,4 +177,29 @@ class RoleTest {
         assertEquals(1, rule2.getActions().size());
         assertEquals("action3", rule2.getActions().get(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPermissionRulesOnPath() {
+        Role parent = new Role("parent");
+        parent.addPermissionRules(true, "org", "view");
+
+        Role role = new Role("role", parent);
+        role.addPermissionRules(false, "org/project", "view");
+        role.addPermissionRules(true, "org/*/document", "edit");
+        role.addPermissionRules(true, "*", "list");
+
+        List<List<PermissionRule>> levels = role.getPermissionRulesOnPath(
+                new String[]{"org", "project", "document"});
+        assertEquals(3, levels.size());
+
+        assertEquals(2, levels.get(0).size());
+        assertEquals("*", levels.get(0).get(0).getResource());
+        assertEquals("org", levels.get(0).get(1).getResource());
+
+        assertEquals(1, levels.get(1).size());
+        assertEquals("org/project", levels.get(1).get(0).getResource());
+
+        assertEquals(1, levels.get(2).size());
+        assertEquals("org/*/document", levels.get(2).get(0).getResource());
+    }
+}
@@ -0,0 +1,170 @@
+package cz.polankam.security.acl.audit;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.IResourceRepository;
+import cz.polankam.security.acl.exceptions.ResourceNotFoundException;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AsyncAuditLogTest {
+
+    private final Authentication authentication =
+            new TestingAuthenticationToken(new DemoUser("user", "USER"), null);
+
+    @Test
+    void log_DeniedAlwaysAllowedSampled() throws Exception {
+        List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditLog auditLog = new AsyncAuditLog(records::addAll, 16, AsyncAuditLog.OverflowPolicy.BLOCK, 0);
+
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(new DemoPermissionsService(), null);
+        evaluator.setAuditLog(auditLog);
+        assertTrue(evaluator.hasPermission(authentication, "instance", "join"));
+        assertFalse(evaluator.hasPermission(authentication, "instance", "view"));
+        assertFalse(evaluator.hasPermission(authentication, 123L, "group", "edit"));
+        assertFalse(evaluator.hasPermission(authentication, 123L, "file", "view"));
+        auditLog.close();
+
+        assertEquals(3, records.size());
+        AuditRecord view = records.get(0);
+        assertEquals("user", view.getPrincipal());
+        assertEquals("instance", view.getResource());
+        assertNull(view.getId());
+        assertEquals("view", view.getAction());
+        assertFalse(view.isAllowed());
+        assertEquals("instance", view.getRule().getResource());
+
+        AuditRecord edit = records.get(1);
+        assertEquals(123L, edit.getId());
+        assertNull(edit.getRule());
+        assertEquals(0, auditLog.getDroppedCount());
+    }
+
+    @Test
+    void log_AllowedAlways() throws Exception {
+        List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditLog auditLog = new AsyncAuditLog(records::addAll, 16, AsyncAuditLog.OverflowPolicy.BLOCK, 1);
+        for (int i = 0; i < 100; i++) {
+            auditLog.log(authentication, "group", i, "view", true, null);
+        }
+        auditLog.close();
+
+        assertEquals(100, records.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, records.get(i).getId());
+        }
+    }
+
+    @Test
+    void log_NotFoundDenied() throws Exception {
+        List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditLog auditLog = new AsyncAuditLog(records::addAll, 16, AsyncAuditLog.OverflowPolicy.BLOCK, 0);
+        IResourceRepository groupRepository = mock(IResourceRepository.class);
+        when(groupRepository.findById(404L)).thenReturn(Optional.empty());
+
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(new DemoPermissionsService(groupRepository), null);
+        evaluator.setAuditLog(auditLog);
+        assertThrows(ResourceNotFoundException.class, () -> evaluator.hasPermission(authentication, 404L, "group", "view"));
+        auditLog.close();
+
+        assertEquals(1, records.size());
+        assertFalse(records.get(0).isAllowed());
+        assertEquals(404L, records.get(0).getId());
+        assertNull(records.get(0).getRule());
+    }
+
+    @Test
+    void log_AfterClose() throws Exception {
+        List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditLog auditLog = new AsyncAuditLog(records::addAll, 16, AsyncAuditLog.OverflowPolicy.BLOCK, 1);
+        auditLog.close();
+
+        auditLog.log(authentication, "group", 1L, "view", false, null);
+        assertTrue(records.isEmpty());
+        assertEquals(1, auditLog.getDroppedCount());
+    }
+
+    @Test
+    void toString_Escaped() {
+        AuditRecord record = new AuditRecord(0, "user\tALLOW", "group", "1\n1970-01-01T00:00:00Z", "view", false, null);
+        assertEquals("1970-01-01T00:00:00Z\tDENY\tuser\\tALLOW\tgroup\t1\\n1970-01-01T00:00:00Z\tview\t-",
+                record.toString());
+    }
+
+    @Test
+    void close_Interrupted() throws Exception {
+        List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditLog auditLog = new AsyncAuditLog(records::addAll, 16, AsyncAuditLog.OverflowPolicy.BLOCK, 1);
+        for (int i = 0; i < 100; i++) {
+            auditLog.log(authentication, "group", i, "view", true, null);
+        }
+
+        Thread.currentThread().interrupt();
+        try {
+            auditLog.close();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(100, records.size());
+    }
+
+    @Test
+    void log_DropWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditLog auditLog = new AsyncAuditLog(batch -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            records.addAll(batch);
+        }, 4, AsyncAuditLog.OverflowPolicy.DROP, 1);
+
+        for (int i = 0; i < 100; i++) {
+            auditLog.log(authentication, "group", i, "view", false, null);
+        }
+        release.countDown();
+        auditLog.close();
+
+        assertTrue(auditLog.getDroppedCount() > 0);
+        assertEquals(100, records.size() + auditLog.getDroppedCount());
+    }
+
+    @Test
+    void log_ConcurrentProducers() throws Exception {
+        List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditLog auditLog = new AsyncAuditLog(records::addAll, 64, AsyncAuditLog.OverflowPolicy.BLOCK, 1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    auditLog.log(authentication, "group", i, "view", false, null);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        auditLog.close();
+
+        assertEquals(40_000, records.size());
+        assertEquals(0, auditLog.getDroppedCount());
+    }
+}
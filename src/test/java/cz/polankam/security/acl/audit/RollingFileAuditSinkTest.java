@@ -0,0 +1,52 @@
+package cz.polankam.security.acl.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingFileAuditSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void write_Rolling() throws Exception {
+        Path file = directory.resolve("audit.log");
+        List<AuditRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            records.add(new AuditRecord(0, "user", "group", i, "view", false, null));
+        }
+        long lineLength = (records.get(0) + "\n").length();
+
+        try (RollingFileAuditSink sink = new RollingFileAuditSink(file, lineLength * 4, 2)) {
+            sink.write(records);
+        }
+
+        // 10 lines, 4 lines per file, only two backups are kept
+        assertEquals(2, Files.readAllLines(file).size());
+        assertEquals(4, Files.readAllLines(directory.resolve("audit.log.1")).size());
+        assertEquals(4, Files.readAllLines(directory.resolve("audit.log.2")).size());
+        assertFalse(Files.exists(directory.resolve("audit.log.3")));
+        assertTrue(Files.readAllLines(file).get(1).contains("DENY\tuser\tgroup\t9\tview"));
+    }
+
+    @Test
+    void write_Append() throws Exception {
+        Path file = directory.resolve("audit.log");
+        List<AuditRecord> records = List.of(new AuditRecord(0, "user", "group", 1, "view", true, null));
+        try (RollingFileAuditSink sink = new RollingFileAuditSink(file, 1024, 1)) {
+            sink.write(records);
+        }
+        try (RollingFileAuditSink sink = new RollingFileAuditSink(file, 1024, 1)) {
+            sink.write(records);
+        }
+
+        assertEquals(2, Files.readAllLines(file).size());
+    }
+}
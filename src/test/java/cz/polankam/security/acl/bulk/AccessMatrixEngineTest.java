@@ -0,0 +1,183 @@
+package cz.polankam.security.acl.bulk;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.IPermissionsService;
+import cz.polankam.security.acl.IResourceRepository;
+import cz.polankam.security.acl.Role;
+import cz.polankam.security.acl.conditions.ConditionsFactory;
+import cz.polankam.security.acl.test_utils.DemoGroup;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccessMatrixEngineTest {
+
+    private AtomicInteger batchLoads;
+    private DemoPermissionsService permissionsService;
+    private AclPermissionEvaluator evaluator;
+
+    @BeforeEach
+    void setUp() {
+        batchLoads = new AtomicInteger();
+        permissionsService = new DemoPermissionsService(new IResourceRepository() {
+            @Override
+            public Optional<Object> findById(Object id) {
+                return (Long) id % 10 == 0 ? Optional.empty() : Optional.of(new DemoGroup());
+            }
+
+            @Override
+            public Map<Object, Object> findAllById(Collection<?> ids) {
+                batchLoads.incrementAndGet();
+                Map<Object, Object> result = new HashMap<>();
+                for (Object id : ids) {
+                    findById(id).ifPresent(group -> result.put(id, group));
+                }
+                return result;
+            }
+        });
+        evaluator = new AclPermissionEvaluator(permissionsService, null);
+    }
+
+
+    @Test
+    void evaluate_SameAsEvaluator() {
+        List<UserDetails> users = new ArrayList<>();
+        for (String role : List.of("USER", "ADMIN", "SUPERADMIN")) {
+            users.add(new DemoUser("user", role));
+            users.add(new DemoUser("manager", role));
+        }
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 25; id++) {
+            ids.add(id);
+        }
+        List<String> actions = List.of("view", "edit", "delete");
+
+        Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+        AccessMatrixEngine engine = new AccessMatrixEngine(evaluator, permissionsService, new ForkJoinPool(4));
+        engine.setBatchSize(10);
+        engine.evaluate(users, "group", ids, actions, (user, resource, id, action, allowed) ->
+                assertNull(decisions.put(user.getUsername() + user.getAuthorities() + id + action, allowed)));
+
+        assertEquals(users.size() * ids.size() * actions.size(), decisions.size());
+        // superadmin group does not need any entity
+        assertEquals(3, batchLoads.get());
+        for (UserDetails user : users) {
+            UsernamePasswordAuthenticationToken authentication =
+                    UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+            for (Long id : ids) {
+                for (String action : actions) {
+                    boolean expected = id % 10 != 0 ?
+                            evaluator.hasPermission(authentication, id, "group", action) :
+                            Boolean.TRUE.equals(evaluator.decideUnconditionally(user, "group", action));
+                    assertEquals(expected, decisions.get(user.getUsername() + user.getAuthorities() + id + action),
+                            user.getUsername() + user.getAuthorities() + " " + id + " " + action);
+                }
+            }
+        }
+    }
+
+    @Test
+    void evaluate_UnconditionalOnly() {
+        List<UserDetails> users = List.of(new DemoUser("a", "SUPERADMIN"), new DemoUser("b", "SUPERADMIN"));
+        AtomicInteger allowed = new AtomicInteger();
+        new AccessMatrixEngine(evaluator, permissionsService).evaluate(users, "group", List.of(1L, 2L, 10L),
+                List.of("view"), (user, resource, id, action, decision) -> {
+                    if (decision) {
+                        allowed.incrementAndGet();
+                    }
+                });
+
+        assertEquals(6, allowed.get());
+        assertEquals(0, batchLoads.get());
+    }
+
+    @Test
+    void evaluate_UserOnlyConditionPerUser() {
+        Role role = new Role("USER").addPermissionRules(true, "group", new String[] {"view"},
+                ConditionsFactory.user(user -> user.getUsername().equals("verified")));
+        IPermissionsService service = mock(IPermissionsService.class);
+        when(service.getRole("USER")).thenReturn(role);
+        when(service.getResource("group")).thenReturn(permissionsService.getResource("group"));
+        AclPermissionEvaluator userEvaluator = new AclPermissionEvaluator(service, null);
+
+        List<UserDetails> users = List.of(new DemoUser("verified", "USER"), new DemoUser("unverified", "USER"));
+        Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+        new AccessMatrixEngine(userEvaluator, service, new ForkJoinPool(2)).evaluate(users, "group", List.of(1L),
+                List.of("view"), (user, resource, id, action, allowed) -> decisions.put(user.getUsername(), allowed));
+
+        assertEquals(Map.of("verified", true, "unverified", false), decisions);
+    }
+
+    @Test
+    void evaluate_WithinTransaction() {
+        List<Boolean> activeTransactions = Collections.synchronizedList(new ArrayList<>());
+        Role role = new Role("USER").addPermissionRules(true, "group", new String[] {"view"},
+                (UserDetails user, DemoGroup group) ->
+                        activeTransactions.add(TransactionSynchronizationManager.isActualTransactionActive()));
+        IResourceRepository recording = new IResourceRepository() {
+            @Override
+            public Optional<Object> findById(Object id) {
+                return Optional.of(new DemoGroup());
+            }
+
+            @Override
+            public Map<Object, Object> findAllById(Collection<?> ids) {
+                activeTransactions.add(TransactionSynchronizationManager.isActualTransactionActive());
+                return IResourceRepository.super.findAllById(ids);
+            }
+        };
+        IPermissionsService service = mock(IPermissionsService.class);
+        when(service.getRole("USER")).thenReturn(role);
+        when(service.getResource("group")).thenReturn(recording);
+        AtomicInteger transactions = new AtomicInteger();
+        AclPermissionEvaluator transactional = new AclPermissionEvaluator(service, new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+                transactions.incrementAndGet();
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        });
+
+        AccessMatrixEngine engine = new AccessMatrixEngine(transactional, service, new ForkJoinPool(2));
+        engine.setBatchSize(2);
+        engine.evaluate(List.of(new DemoUser("user", "USER")), "group", List.of(1L, 2L, 3L), List.of("view"),
+                (user, resource, id, action, allowed) -> assertTrue(allowed));
+
+        assertEquals(2, transactions.get());
+        // one load per batch and one condition per entity
+        assertEquals(List.of(true, true, true, true, true), activeTransactions);
+    }
+}
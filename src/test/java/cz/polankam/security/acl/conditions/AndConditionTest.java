@@ -51,4 +51,16 @@ class AndConditionTest {
         AndCondition<String> condition = new AndCondition<>(pCondition1, pCondition2, pCondition3);
         assertFalse(condition.test(null, "resource"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void preCheck() {
+        PermissionCondition<String> resourceCondition = (user, res) -> res.equals("resource");
+        PermissionCondition<String> allowed = new UserCondition<>(user -> true);
+        PermissionCondition<String> denied = new UserCondition<>(user -> false);
+
+        assertNull(new AndCondition<>(allowed, resourceCondition).preCheck(null));
+        assertEquals(Boolean.FALSE, new AndCondition<>(resourceCondition, denied).preCheck(null));
+        assertEquals(Boolean.TRUE, new AndCondition<>(allowed, allowed).preCheck(null));
+        assertNull(new AndCondition<>(allowed, new TrueCondition<>()).preCheck(null));
+    }
+}
@@ -0,0 +1,96 @@
+package cz.polankam.security.acl.conditions;
+
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static cz.polankam.security.acl.conditions.ConditionsFactory.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributeConditionTest {
+
+    private final DemoUser user = new DemoUser("alice", "USER");
+
+    @Test
+    void test_EqualsPrincipal() {
+        PermissionCondition<Document> condition = attributeEquals("owner", principalAttr("username"));
+        assertTrue(condition.test(user, new Document("alice", 1, true)));
+        assertFalse(condition.test(user, new Document("bob", 1, true)));
+        assertFalse(condition.test(user, new Document(null, 1, true)));
+        assertFalse(condition.test(user, null));
+    }
+
+    @Test
+    void test_EqualsNested() {
+        PermissionCondition<Document> condition = attributeEquals("owner.length", value(5L));
+        assertTrue(condition.test(user, new Document("alice", 1, true)));
+        assertFalse(condition.test(user, new Document("bob", 1, true)));
+        assertFalse(condition.test(user, new Document(null, 1, true)));
+    }
+
+    @Test
+    void test_In() {
+        PermissionCondition<Document> condition = attributeIn("groupId", value(Arrays.asList(1L, 2L)));
+        assertTrue(condition.test(user, new Document("alice", 2, true)));
+        assertFalse(condition.test(user, new Document("alice", 3, true)));
+    }
+
+    @Test
+    void test_True() {
+        PermissionCondition<Document> condition = attributeTrue("published");
+        assertTrue(condition.test(user, new Document("alice", 1, true)));
+        assertFalse(condition.test(user, new Document("alice", 1, false)));
+    }
+
+    @Test
+    void test_MissingAttribute() {
+        PermissionCondition<Document> condition = attributeTrue("missing");
+        assertThrows(PermissionException.class, () -> condition.test(user, new Document("alice", 1, true)));
+    }
+
+    @Test
+    void equalsAndToString() {
+        PermissionCondition<Object> first = attributeEquals("owner", principalAttr("username"));
+        PermissionCondition<Object> second = attributeEquals("owner", principalAttr("username"));
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, attributeEquals("owner", value("username")));
+        assertEquals("owner == principal.username", first.toString());
+
+        List<Object> operands = Arrays.asList(((AttributeCondition) first).getOperand().getKind(),
+                ((AttributeCondition) first).getOperand().getValue());
+        assertEquals(Arrays.asList(AttributeOperand.Kind.PRINCIPAL, "username"), operands);
+    }
+
+    @Test
+    void create_MissingOperand() {
+        assertThrows(NullPointerException.class, () -> attributeEquals("owner", null));
+        assertThrows(NullPointerException.class, () -> attributeIn("owner", null));
+        assertNotNull(attributeTrue("published"));
+    }
+
+
+    public static class Document {
+
+        private final String owner;
+        private final int groupId;
+        public final boolean published;
+
+        public Document(String owner, int groupId, boolean published) {
+            this.owner = owner;
+            this.groupId = groupId;
+            this.published = published;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public int getGroupId() {
+            return groupId;
+        }
+    }
+}
@@ -51,4 +51,15 @@ class OrConditionTest {
         OrCondition<String> condition = new OrCondition<>(pCondition1, pCondition2, pCondition3);
         assertFalse(condition.test(null, "resource"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void preCheck() {
+        PermissionCondition<String> resourceCondition = (user, res) -> res.equals("resource");
+        PermissionCondition<String> allowed = new UserCondition<>(user -> true);
+        PermissionCondition<String> denied = new UserCondition<>(user -> false);
+
+        assertNull(new OrCondition<>(denied, resourceCondition).preCheck(null));
+        assertEquals(Boolean.TRUE, new OrCondition<>(resourceCondition, allowed).preCheck(null));
+        assertEquals(Boolean.FALSE, new OrCondition<>(denied, denied).preCheck(null));
+    }
+}
@@ -11,4 +11,11 @@ class TrueConditionTest {
         TrueCondition<String> condition = new TrueCondition<>();
         assertTrue(condition.test(null, null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void preCheck() {
+        // resource has to be loaded, e.g. to find out it does not exist
+        TrueCondition<String> condition = new TrueCondition<>();
+        assertNull(condition.preCheck(null));
+    }
+}
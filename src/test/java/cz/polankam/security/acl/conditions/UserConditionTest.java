@@ -0,0 +1,29 @@
+package cz.polankam.security.acl.conditions;
+
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserConditionTest {
+
+    @Test
+    void test_ResourceIgnored() {
+        UserCondition<String> condition = new UserCondition<>(user -> user.getUsername().equals("admin"));
+        assertTrue(condition.test(new DemoUser("admin", "USER"), null));
+        assertFalse(condition.test(new DemoUser("user", "USER"), "resource"));
+    }
+
+    @Test
+    void preCheck() {
+        UserCondition<String> condition = new UserCondition<>(user -> user.getUsername().equals("admin"));
+        assertEquals(Boolean.TRUE, condition.preCheck(new DemoUser("admin", "USER")));
+        assertEquals(Boolean.FALSE, condition.preCheck(new DemoUser("user", "USER")));
+    }
+
+    @Test
+    void lambda_NotPreChecked() {
+        PermissionCondition<String> condition = (user, resource) -> true;
+        assertNull(condition.preCheck(null));
+    }
+}
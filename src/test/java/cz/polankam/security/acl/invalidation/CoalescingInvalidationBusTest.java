@@ -0,0 +1,53 @@
+package cz.polankam.security.acl.invalidation;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingInvalidationBusTest {
+
+    @Test
+    void publish_FlushOnBatchSize() {
+        List<Collection<InvalidationEvent>> batches = new ArrayList<>();
+        try (CoalescingInvalidationBus bus = new CoalescingInvalidationBus(new LocalInvalidationBus(), 3, Duration.ofHours(1))) {
+            bus.subscribe(batches::add);
+
+            bus.publish(InvalidationEvent.role("USER"));
+            bus.publish(InvalidationEvent.role("USER"));
+            assertTrue(batches.isEmpty());
+
+            bus.publish(InvalidationEvent.resource("group", 1L));
+            assertEquals(1, batches.size());
+            assertEquals(List.of(InvalidationEvent.role("USER"), InvalidationEvent.resource("group", 1L)),
+                    List.copyOf(batches.get(0)));
+        }
+    }
+
+    @Test
+    void publish_FlushAfterDelay() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        try (CoalescingInvalidationBus bus = new CoalescingInvalidationBus(new LocalInvalidationBus(), 100, Duration.ofMillis(10))) {
+            bus.subscribe(events -> delivered.countDown());
+            bus.publish(InvalidationEvent.all());
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void close_Flushes() {
+        List<Collection<InvalidationEvent>> batches = new ArrayList<>();
+        CoalescingInvalidationBus bus = new CoalescingInvalidationBus(new LocalInvalidationBus(), 100, Duration.ofHours(1));
+        bus.subscribe(batches::add);
+        bus.publish(InvalidationEvent.role("USER"));
+        bus.close();
+
+        assertEquals(1, batches.size());
+    }
+}
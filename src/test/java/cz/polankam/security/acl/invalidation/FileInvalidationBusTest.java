@@ -0,0 +1,104 @@
+package cz.polankam.security.acl.invalidation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileInvalidationBusTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void publishAndPoll() {
+        Path file = directory.resolve("invalidation.log");
+        List<InvalidationEvent> first = new ArrayList<>();
+        List<InvalidationEvent> second = new ArrayList<>();
+
+        try (FileInvalidationBus node1 = new FileInvalidationBus(file, null);
+             FileInvalidationBus node2 = new FileInvalidationBus(file, null)) {
+            node1.subscribe(first::addAll);
+            node2.subscribe(second::addAll);
+
+            node1.publish(List.of(InvalidationEvent.role("USER"), InvalidationEvent.resource("group", "a\tb")));
+            // local listeners are notified immediately
+            assertEquals(2, first.size());
+            assertTrue(second.isEmpty());
+
+            node2.poll();
+            node1.poll();
+            assertEquals(List.of(InvalidationEvent.role("USER"), InvalidationEvent.resource("group", "a\tb")), second);
+            // own events are not delivered twice
+            assertEquals(2, first.size());
+
+            node2.publish(InvalidationEvent.all());
+            node1.poll();
+            assertEquals(InvalidationEvent.all(), first.get(2));
+        }
+    }
+
+    @Test
+    void existingEventsSkipped() {
+        Path file = directory.resolve("invalidation.log");
+        try (FileInvalidationBus node1 = new FileInvalidationBus(file, null)) {
+            node1.publish(InvalidationEvent.role("USER"));
+        }
+
+        List<InvalidationEvent> events = new ArrayList<>();
+        try (FileInvalidationBus node2 = new FileInvalidationBus(file, null)) {
+            node2.subscribe(events::addAll);
+            node2.poll();
+        }
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void pollLargerThanChunk() {
+        Path file = directory.resolve("invalidation.log");
+        List<InvalidationEvent> published = new ArrayList<>();
+        String padding = "x".repeat(1000);
+        for (int i = 0; i < 2000; i++) {
+            published.add(InvalidationEvent.resource("group", padding + i));
+        }
+
+        List<InvalidationEvent> events = new ArrayList<>();
+        try (FileInvalidationBus node1 = new FileInvalidationBus(file, null);
+             FileInvalidationBus node2 = new FileInvalidationBus(file, null)) {
+            node2.subscribe(events::addAll);
+            node1.publish(published);
+            node2.poll();
+        }
+        assertEquals(published, events);
+    }
+
+    @Test
+    void pollMalformedLineAndFailingListener() throws Exception {
+        Path file = directory.resolve("invalidation.log");
+        List<InvalidationEvent> events = new ArrayList<>();
+
+        try (FileInvalidationBus node1 = new FileInvalidationBus(file, null);
+             FileInvalidationBus node2 = new FileInvalidationBus(file, null)) {
+            node2.subscribe(ignored -> {
+                throw new IllegalStateException("Listener failed");
+            });
+            node2.subscribe(events::addAll);
+
+            Files.writeString(file, "node\tUNKNOWN\t=USER\t\n", StandardOpenOption.APPEND);
+            node1.publish(InvalidationEvent.role("USER"));
+            node2.poll();
+            assertEquals(List.of(InvalidationEvent.role("USER")), events);
+
+            // malformed line is not read again
+            node1.publish(InvalidationEvent.role("ADMIN"));
+            node2.poll();
+            assertEquals(List.of(InvalidationEvent.role("USER"), InvalidationEvent.role("ADMIN")), events);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package cz.polankam.security.acl.invalidation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidationEventTest {
+
+    @Test
+    void coalesce_Duplicates() {
+        Set<InvalidationEvent> events = InvalidationEvent.coalesce(Arrays.asList(
+                InvalidationEvent.role("USER"),
+                InvalidationEvent.resource("group", 1L),
+                InvalidationEvent.role("USER"),
+                InvalidationEvent.resource("group", 1L)
+        ));
+
+        assertEquals(List.of(InvalidationEvent.role("USER"), InvalidationEvent.resource("group", 1L)),
+                List.copyOf(events));
+    }
+
+    @Test
+    void coalesce_WholeResource() {
+        Set<InvalidationEvent> events = InvalidationEvent.coalesce(Arrays.asList(
+                InvalidationEvent.resource("group", 1L),
+                InvalidationEvent.resource("file", 1L),
+                InvalidationEvent.resource("group"),
+                InvalidationEvent.resource("group", 2L)
+        ));
+
+        assertEquals(List.of(InvalidationEvent.resource("file", 1L), InvalidationEvent.resource("group")),
+                List.copyOf(events));
+    }
+
+    @Test
+    void coalesce_All() {
+        Set<InvalidationEvent> events = InvalidationEvent.coalesce(Arrays.asList(
+                InvalidationEvent.role("USER"),
+                InvalidationEvent.all(),
+                InvalidationEvent.resource("group", 2L)
+        ));
+
+        assertEquals(Set.of(InvalidationEvent.all()), events);
+    }
+
+    @Test
+    void covers() {
+        assertTrue(InvalidationEvent.all().covers(InvalidationEvent.role("USER")));
+        assertTrue(InvalidationEvent.resource("group").covers(InvalidationEvent.resource("group", 1L)));
+        assertFalse(InvalidationEvent.resource("group", 1L).covers(InvalidationEvent.resource("group")));
+        assertFalse(InvalidationEvent.role("USER").covers(InvalidationEvent.role("ADMIN")));
+    }
+}
@@ -0,0 +1,133 @@
+package cz.polankam.security.acl.jfr;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.IPermissionsService;
+import cz.polankam.security.acl.IResourceRepository;
+import cz.polankam.security.acl.ResourcePath;
+import cz.polankam.security.acl.RoleBuilder;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FlightRecorderEventsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void hasPermission_RecordsEvents() throws Exception {
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(new DemoPermissionsService(), null);
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+
+        Path file = directory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jaclp.PermissionCheck");
+            recording.enable("jaclp.ResourceLoad");
+            recording.enable("jaclp.ConditionEvaluation");
+            recording.start();
+
+            assertTrue(evaluator.hasPermission(authentication, 123L, "group", "view"));
+            assertFalse(evaluator.hasPermission(authentication, 123L, "group", "edit"));
+            assertTrue(evaluator.hasPermission(authentication, "instance", "join"));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> checks = ofType(events, "jaclp.PermissionCheck");
+        assertEquals(3, checks.size());
+        assertEquals("group", checks.get(0).getString("resource"));
+        assertEquals("view", checks.get(0).getString("action"));
+        assertTrue(checks.get(0).getBoolean("allowed"));
+        assertEquals(0, checks.get(0).getInt("ruleIndex"));
+        assertFalse(checks.get(1).getBoolean("allowed"));
+        assertEquals(-1, checks.get(1).getInt("ruleIndex"));
+        assertEquals(1, checks.get(2).getInt("ruleIndex"));
+
+        List<RecordedEvent> loads = ofType(events, "jaclp.ResourceLoad");
+        assertEquals(2, loads.size());
+        assertEquals("123", loads.get(0).getString("id"));
+        assertTrue(loads.get(0).getBoolean("found"));
+
+        List<RecordedEvent> conditions = ofType(events, "jaclp.ConditionEvaluation");
+        assertEquals(2, conditions.size());
+        assertTrue(conditions.get(0).getBoolean("result"));
+        assertEquals(1, conditions.get(1).getInt("ruleIndex"));
+        assertFalse(conditions.get(1).getBoolean("result"));
+    }
+
+    @Test
+    void hasPermission_PathRuleIndexAndFailedLoad() throws Exception {
+        IPermissionsService service = mock(IPermissionsService.class);
+        IResourceRepository orgRepository = mock(IResourceRepository.class);
+        IResourceRepository projectRepository = mock(IResourceRepository.class);
+        when(service.getResource("org")).thenReturn(orgRepository);
+        when(service.getResource("project")).thenReturn(projectRepository);
+        when(projectRepository.findPath(any())).thenReturn(Optional.empty());
+        when(orgRepository.findById("42")).thenReturn(Optional.of("public"));
+        when(orgRepository.findById("500")).thenThrow(new IllegalStateException("Database down"));
+        when(projectRepository.findById("7")).thenReturn(Optional.of("normal"));
+        when(service.getRole("USER")).thenReturn(RoleBuilder.create("USER")
+                .addAllowedRule("org", (UserDetails user, String org) -> org.equals("public"), "view")
+                .addDeniedRule("org/project", (UserDetails user, String project) -> project.equals("secret"), "view")
+                .build());
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(service, null);
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getPrincipal()).thenReturn(new DemoUser("user", "USER"));
+
+        Path file = directory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jaclp.PermissionCheck");
+            recording.enable("jaclp.ResourceLoad");
+            recording.enable("jaclp.ConditionEvaluation");
+            recording.start();
+
+            assertTrue(evaluator.hasPermission(authentication, ResourcePath.parse("org/42/project/7"), "view"));
+            assertThrows(IllegalStateException.class,
+                    () -> evaluator.hasPermission(authentication, "500", "org", "view"));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        // rule of the project goes first, the one of the organization decides
+        List<RecordedEvent> conditions = ofType(events, "jaclp.ConditionEvaluation");
+        assertEquals(2, conditions.size());
+        assertEquals(0, conditions.get(0).getInt("ruleIndex"));
+        assertEquals(1, conditions.get(1).getInt("ruleIndex"));
+        List<RecordedEvent> checks = ofType(events, "jaclp.PermissionCheck");
+        assertEquals(1, checks.get(0).getInt("ruleIndex"));
+
+        List<RecordedEvent> failed = ofType(events, "jaclp.ResourceLoad").stream()
+                .filter(event -> event.getString("id").equals("500"))
+                .collect(Collectors.toList());
+        assertEquals(1, failed.size());
+        assertTrue(failed.get(0).getBoolean("failed"));
+        assertFalse(failed.get(0).getBoolean("found"));
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .sorted((first, second) -> first.getStartTime().compareTo(second.getStartTime()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,146 @@
+package cz.polankam.security.acl.method;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AclPermissionAuthorizationManagerTest {
+
+    private GroupService service;
+
+    @BeforeEach
+    void setUp() {
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(new DemoPermissionsService(), null);
+        ProxyFactory factory = new ProxyFactory(new GroupService());
+        factory.setProxyTargetClass(true);
+        factory.addAdvisor(AclPermissionAuthorizationManager.interceptor(() -> evaluator));
+        service = (GroupService) factory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private void login(String username, String role) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(new DemoUser(username, role), null));
+    }
+
+
+    @Test
+    void check_WithIdentification() {
+        login("user", "USER");
+        assertEquals("view 123", service.view(123L));
+        assertThrows(AccessDeniedException.class, () -> service.edit(123L));
+
+        login("manager", "USER");
+        assertEquals("edit 123", service.edit(123L));
+    }
+
+    @Test
+    void check_WithoutIdentification() {
+        login("user", "USER");
+        assertEquals("join", service.join());
+
+        login("manager", "ADMIN");
+        assertThrows(AccessDeniedException.class, () -> service.join());
+    }
+
+    @Test
+    void check_NullIdentification() {
+        login("manager", "USER");
+        assertThrows(AccessDeniedException.class, () -> service.edit(null));
+    }
+
+    @Test
+    void check_AnnotationPerTargetClass() {
+        login("user", "USER");
+        AuthorizationManagerBeforeMethodInterceptor interceptor = AclPermissionAuthorizationManager.interceptor(
+                () -> new AclPermissionEvaluator(new DemoPermissionsService(), null));
+        assertEquals("1", proxy(new ViewGroup(), interceptor).run(1L));
+        assertThrows(AccessDeniedException.class, () -> proxy(new EditGroup(), interceptor).run(1L));
+    }
+
+    @Test
+    void check_NotAnnotated() {
+        SecurityContextHolder.clearContext();
+        assertEquals("public", service.publicMethod());
+    }
+
+    @Test
+    void pointcut_InvalidParameter() {
+        AclPermissionAuthorizationManager manager = new AclPermissionAuthorizationManager(() -> null);
+        assertThrows(PermissionException.class, () ->
+                manager.pointcut().getMethodMatcher().matches(
+                        InvalidService.class.getMethod("view", long.class), InvalidService.class));
+    }
+
+
+    public static class GroupService {
+
+        @AclPermission(resource = "group", action = "view", idParam = "id")
+        public String view(long id) {
+            return "view " + id;
+        }
+
+        @AclPermission(resource = "group", action = "edit", idParam = "id")
+        public String edit(Long id) {
+            return "edit " + id;
+        }
+
+        @AclPermission(resource = "instance", action = "join")
+        public String join() {
+            return "join";
+        }
+
+        public String publicMethod() {
+            return "public";
+        }
+    }
+
+    public interface GroupAction {
+        String run(Long id);
+    }
+
+    public static class ViewGroup implements GroupAction {
+        @Override
+        @AclPermission(resource = "group", action = "view", idParam = "id")
+        public String run(Long id) {
+            return id.toString();
+        }
+    }
+
+    public static class EditGroup implements GroupAction {
+        @Override
+        @AclPermission(resource = "group", action = "edit", idParam = "id")
+        public String run(Long id) {
+            return id.toString();
+        }
+    }
+
+    private static GroupAction proxy(GroupAction target, AuthorizationManagerBeforeMethodInterceptor interceptor) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addAdvisor(interceptor);
+        return (GroupAction) factory.getProxy();
+    }
+
+    public static class InvalidService {
+
+        @AclPermission(resource = "group", action = "view", idParam = "groupId")
+        public String view(long id) {
+            return "view " + id;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cz.polankam.security.acl.method;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.test_utils.DemoGroup;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AclPostFilterMethodInterceptorTest {
+
+    private static final DemoGroup MEMBER = new DemoGroup();
+    private static final DemoGroup MANAGED = new DemoGroup() {
+        @Override
+        public boolean isManager(DemoUser user) {
+            return true;
+        }
+    };
+
+    private GroupService service;
+
+    @BeforeEach
+    void setUp() {
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(new DemoPermissionsService(), null);
+        ProxyFactory factory = new ProxyFactory(new GroupService());
+        factory.setProxyTargetClass(true);
+        factory.addAdvisor(new AclPostFilterMethodInterceptor(() -> evaluator));
+        service = (GroupService) factory.getProxy();
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(new DemoUser("user", "USER"), null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+
+    @Test
+    void filter_ModifiableList() {
+        List<DemoGroup> result = service.editable();
+        assertEquals(1, result.size());
+        assertSame(MANAGED, result.get(0));
+    }
+
+    @Test
+    void filter_UnmodifiableList() {
+        assertEquals(List.of(MANAGED), service.editableUnmodifiable());
+    }
+
+    @Test
+    void filter_UnmodifiableSet() {
+        assertEquals(Set.of(MANAGED), service.editableSet());
+    }
+
+    @Test
+    void filter_AnnotationPerTargetClass() {
+        AclPostFilterMethodInterceptor interceptor = new AclPostFilterMethodInterceptor(
+                () -> new AclPermissionEvaluator(new DemoPermissionsService(), null));
+        assertEquals(List.of(MANAGED), proxy(new EditableGroups(), interceptor).groups());
+        assertEquals(3, proxy(new ViewableGroups(), interceptor).groups().size());
+    }
+
+    @Test
+    void filter_Array() {
+        assertArrayEquals(new DemoGroup[]{MANAGED}, service.editableArray());
+    }
+
+    @Test
+    void filter_AllAllowed() {
+        assertEquals(3, service.viewable().size());
+    }
+
+
+    public static class GroupService {
+
+        @AclPostFilter(resource = "group", action = "edit")
+        public List<DemoGroup> editable() {
+            return new ArrayList<>(Arrays.asList(MEMBER, MANAGED, MEMBER));
+        }
+
+        @AclPostFilter(resource = "group", action = "edit")
+        public List<DemoGroup> editableUnmodifiable() {
+            return List.of(MEMBER, MANAGED, MEMBER);
+        }
+
+        @AclPostFilter(resource = "group", action = "edit")
+        public Set<DemoGroup> editableSet() {
+            return Set.of(MEMBER, MANAGED);
+        }
+
+        @AclPostFilter(resource = "group", action = "edit")
+        public DemoGroup[] editableArray() {
+            return new DemoGroup[]{MEMBER, MANAGED, MEMBER};
+        }
+
+        @AclPostFilter(resource = "group", action = "view")
+        public List<DemoGroup> viewable() {
+            return List.of(MEMBER, MANAGED, MEMBER);
+        }
+    }
+
+    public interface Groups {
+        List<DemoGroup> groups();
+    }
+
+    public static class EditableGroups implements Groups {
+        @Override
+        @AclPostFilter(resource = "group", action = "edit")
+        public List<DemoGroup> groups() {
+            return List.of(MEMBER, MANAGED, MEMBER);
+        }
+    }
+
+    public static class ViewableGroups implements Groups {
+        @Override
+        @AclPostFilter(resource = "group", action = "view")
+        public List<DemoGroup> groups() {
+            return List.of(MEMBER, MANAGED, MEMBER);
+        }
+    }
+
+    private static Groups proxy(Groups target, AclPostFilterMethodInterceptor interceptor) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addAdvisor(interceptor);
+        return (Groups) factory.getProxy();
+    }
+}
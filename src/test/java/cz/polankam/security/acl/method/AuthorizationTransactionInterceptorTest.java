@@ -0,0 +1,233 @@
+package cz.polankam.security.acl.method;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.IResourceRepository;
+import cz.polankam.security.acl.test_utils.DemoGroup;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthorizationTransactionInterceptorTest {
+
+    private CountingTransactionManager transactionManager;
+    private IResourceRepository groupRepository;
+    private List<String> loadedIn;
+    private AclPermissionEvaluator evaluator;
+    private DemoPermissionsService permissionsService;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new CountingTransactionManager();
+        loadedIn = new ArrayList<>();
+        groupRepository = mock(IResourceRepository.class);
+        when(groupRepository.findById(any())).thenAnswer(invocation -> {
+            loadedIn.add(TransactionSynchronizationManager.getCurrentTransactionName());
+            return Optional.of(new DemoGroup());
+        });
+        permissionsService = new DemoPermissionsService(groupRepository);
+        evaluator = new AclPermissionEvaluator(permissionsService, transactionManager);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(new DemoUser("user", "USER"), null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+
+    @Test
+    void invoke_TransactionPerCheck() {
+        GroupService service = proxy(false);
+
+        assertEquals(1, service.members(123L, null).size());
+        // pre-authorization check and post filter
+        assertEquals(2, transactionManager.begun);
+        assertFalse(service.isTransactionActive());
+    }
+
+    @Test
+    void invoke_SingleTransaction() {
+        GroupService service = proxy(true);
+
+        assertEquals(1, service.members(123L, null).size());
+        assertEquals(1, transactionManager.begun);
+        assertEquals(2, loadedIn.size());
+        assertEquals(AuthorizationTransactionInterceptor.class.getName(), loadedIn.get(0));
+        assertEquals(loadedIn.get(0), loadedIn.get(1));
+        // method itself is executed without authorization transaction
+        assertFalse(service.isTransactionActive());
+        assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+    }
+
+    @Test
+    void invoke_JoinsSurroundingTransaction() {
+        GroupService service = proxy(true);
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setName("outer");
+
+        template.executeWithoutResult(status -> assertEquals(1, service.members(123L, null).size()));
+        assertEquals(1, transactionManager.begun);
+        assertEquals(List.of("outer", "outer"), loadedIn);
+        assertTrue(service.isTransactionActive());
+    }
+
+    @Test
+    void invoke_RollbackOnException() {
+        GroupService service = proxy(true);
+
+        assertThrows(IllegalStateException.class, () -> service.fail(123L));
+        assertEquals(1, transactionManager.begun);
+        assertEquals(1, transactionManager.rolledBack);
+        assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+    }
+
+    @Test
+    void pointcut_NotSecured() throws NoSuchMethodException {
+        AuthorizationTransactionInterceptor interceptor = new AuthorizationTransactionInterceptor(() -> transactionManager);
+        assertFalse(interceptor.getPointcut().getMethodMatcher().matches(
+                GroupService.class.getMethod("plain"), GroupService.class));
+        assertTrue(interceptor.getPointcut().getMethodMatcher().matches(
+                GroupService.class.getMethod("fail", long.class), GroupService.class));
+    }
+
+    @Test
+    void pointcut_PerTargetClass() throws NoSuchMethodException {
+        AuthorizationTransactionInterceptor interceptor = new AuthorizationTransactionInterceptor(() -> transactionManager);
+        Method method = GroupAction.class.getMethod("run");
+        assertTrue(interceptor.getPointcut().getMethodMatcher().matches(method, SecuredGroupAction.class));
+        assertFalse(interceptor.getPointcut().getMethodMatcher().matches(method, PlainGroupAction.class));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private GroupService proxy(boolean singleTransaction) {
+        List<Advisor> advisors = new ArrayList<>();
+        if (singleTransaction) {
+            AuthorizationTransactionInterceptor interceptor = new AuthorizationTransactionInterceptor(() -> transactionManager);
+            advisors.add(interceptor);
+            advisors.add(interceptor.getSuspension());
+        }
+        advisors.add(AclPermissionAuthorizationManager.interceptor(() -> evaluator));
+        advisors.add(new AuthorizedResourceMethodInterceptor(() -> permissionsService));
+        advisors.add(new AclPostFilterMethodInterceptor(() -> evaluator));
+        // advisors are applied in their order as they would be by spring
+        AnnotationAwareOrderComparator.sort(advisors);
+
+        ProxyFactory factory = new ProxyFactory(new GroupService());
+        factory.setProxyTargetClass(true);
+        advisors.forEach(factory::addAdvisor);
+        return (GroupService) factory.getProxy();
+    }
+
+    public static class GroupService {
+
+        private boolean transactionActive;
+
+        @AclPermission(resource = "group", action = "view", idParam = "id")
+        @AclPostFilter(resource = "group", action = "view")
+        public List<DemoGroup> members(long id, @AuthorizedResource DemoGroup group) {
+            transactionActive = TransactionSynchronizationManager.isActualTransactionActive();
+            return new ArrayList<>(List.of(group));
+        }
+
+        @AclPermission(resource = "instance", action = "join")
+        public void fail(long id) {
+            throw new IllegalStateException();
+        }
+
+        public void plain() {
+        }
+
+        public boolean isTransactionActive() {
+            return transactionActive;
+        }
+    }
+
+    public interface GroupAction {
+        void run();
+    }
+
+    public static class SecuredGroupAction implements GroupAction {
+        @Override
+        @AclPermission(resource = "instance", action = "join")
+        public void run() {
+        }
+    }
+
+    public static class PlainGroupAction implements GroupAction {
+        @Override
+        public void run() {
+        }
+    }
+
+    /**
+     * Transaction manager which only counts begun transactions.
+     */
+    private static final class CountingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private int begun;
+        private int rolledBack;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new boolean[]{TransactionSynchronizationManager.hasResource(this)};
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return ((boolean[]) transaction)[0];
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            begun++;
+            TransactionSynchronizationManager.bindResource(this, definition);
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            return TransactionSynchronizationManager.unbindResource(this);
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+            TransactionSynchronizationManager.bindResource(this, suspendedResources);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rolledBack++;
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            TransactionSynchronizationManager.unbindResource(this);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package cz.polankam.security.acl.method;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.IResourceRepository;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.test_utils.DemoGroup;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import cz.polankam.security.acl.test_utils.MapRequestAttributes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthorizedResourceMethodInterceptorTest {
+
+    private IResourceRepository groupRepository;
+    private AclPermissionEvaluator evaluator;
+    private GroupService service;
+
+    @BeforeEach
+    void setUp() {
+        groupRepository = mock(IResourceRepository.class);
+        when(groupRepository.findById(any())).thenAnswer(invocation -> Optional.of(new DemoGroup()));
+        DemoPermissionsService permissionsService = new DemoPermissionsService(groupRepository);
+        evaluator = new AclPermissionEvaluator(permissionsService, null);
+        evaluator.setPublishLoadedResources(true);
+
+        ProxyFactory factory = new ProxyFactory(new GroupService());
+        factory.setProxyTargetClass(true);
+        factory.addAdvisor(AclPermissionAuthorizationManager.interceptor(() -> evaluator));
+        factory.addAdvisor(new AuthorizedResourceMethodInterceptor(() -> permissionsService));
+        service = (GroupService) factory.getProxy();
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(new DemoUser("user", "USER"), null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+
+    @Test
+    void invoke_ReusesLoadedResource() {
+        RequestContextHolder.setRequestAttributes(new MapRequestAttributes());
+
+        assertNotNull(service.view(123L, null));
+        verify(groupRepository, times(1)).findById(123L);
+    }
+
+    @Test
+    void invoke_OutsideRequest() {
+        assertNotNull(service.view(123L, null));
+        verify(groupRepository, times(2)).findById(123L);
+    }
+
+    @Test
+    void invoke_ExplicitResource() {
+        RequestContextHolder.setRequestAttributes(new MapRequestAttributes());
+
+        assertNotNull(service.join(123L, null));
+        verify(groupRepository, times(1)).findById(123L);
+    }
+
+    @Test
+    void invoke_BindingsPerTargetClass() {
+        AuthorizedResourceMethodInterceptor interceptor =
+                new AuthorizedResourceMethodInterceptor(() -> new DemoPermissionsService(groupRepository));
+        assertNotNull(proxy(new LoadingGroupLookup(), interceptor).find(123L, null));
+        assertNull(proxy(new PlainGroupLookup(), interceptor).find(123L, null));
+    }
+
+    @Test
+    void pointcut_Unspecified() {
+        AuthorizedResourceMethodInterceptor interceptor = new AuthorizedResourceMethodInterceptor(() -> null);
+        assertThrows(PermissionException.class, () ->
+                interceptor.getPointcut().getMethodMatcher().matches(
+                        InvalidService.class.getMethod("view", long.class, DemoGroup.class), InvalidService.class));
+    }
+
+
+    public static class GroupService {
+
+        @AclPermission(resource = "group", action = "view", idParam = "id")
+        public DemoGroup view(long id, @AuthorizedResource DemoGroup group) {
+            return group;
+        }
+
+        public DemoGroup join(long id, @AuthorizedResource(resource = "group", idParam = "id") DemoGroup group) {
+            return group;
+        }
+    }
+
+    public interface GroupLookup {
+        DemoGroup find(Long id, DemoGroup group);
+    }
+
+    public static class LoadingGroupLookup implements GroupLookup {
+        @Override
+        public DemoGroup find(Long id, @AuthorizedResource(resource = "group", idParam = "id") DemoGroup group) {
+            return group;
+        }
+    }
+
+    public static class PlainGroupLookup implements GroupLookup {
+        @Override
+        public DemoGroup find(Long id, DemoGroup group) {
+            return group;
+        }
+    }
+
+    private static GroupLookup proxy(GroupLookup target, AuthorizedResourceMethodInterceptor interceptor) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addAdvisor(interceptor);
+        return (GroupLookup) factory.getProxy();
+    }
+
+    public static class InvalidService {
+
+        public DemoGroup view(long id, @AuthorizedResource DemoGroup group) {
+            return group;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cz.polankam.security.acl.policy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AclPolicyProcessorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void process_HierarchicalResource() {
+        List<String> errors = process("@AclRole(name = \"USER\", rules = @AclRule(resource = \"org/*/document\", actions = \"view\"))");
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("org/*/document"));
+    }
+
+    @Test
+    void process_UndefinedParentReportedOnce() {
+        List<String> errors = process("@AclRole(name = \"USER\", parent = \"MISSING\")\n" +
+                "@AclRole(name = \"ADMIN\", parent = \"USER\")\n" +
+                "@AclRole(name = \"SUPERADMIN\", parent = \"ADMIN\")");
+        assertEquals(List.of("Parent 'MISSING' of role 'USER' is not defined"), errors);
+    }
+
+    @Test
+    void process_Cycle() {
+        List<String> errors = process("@AclRole(name = \"USER\", parent = \"ADMIN\")\n" +
+                "@AclRole(name = \"ADMIN\", parent = \"USER\")");
+        assertEquals(List.of("Role 'USER' is its own ancestor"), errors);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private List<String> process(String roles) {
+        String source = "package test;\n\n" +
+                "import cz.polankam.security.acl.policy.*;\n\n" +
+                "@AclPolicy\n" + roles + "\n" +
+                "public class Policies {\n}\n";
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///test/Policies.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                List.of("-proc:only", "-classpath", System.getProperty("java.class.path"), "-s", directory.toString()),
+                null, List.of(file));
+        task.setProcessors(List.of(new AclPolicyProcessor()));
+        task.call();
+
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+}
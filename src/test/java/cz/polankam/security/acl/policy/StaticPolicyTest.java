@@ -0,0 +1,70 @@
+package cz.polankam.security.acl.policy;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.Role;
+import cz.polankam.security.acl.exceptions.PermissionException;
+import cz.polankam.security.acl.test_utils.DemoGroup;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoPolicy;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticPolicyTest {
+
+    private final StaticPolicy policy = new DemoPolicy();
+
+    @Test
+    void getRole() {
+        Role admin = policy.getRole("ADMIN");
+        assertNotNull(admin);
+        assertSame(policy.getRole("USER"), admin.getParent());
+        assertEquals(6, admin.getPermissionRules().size());
+        assertNull(policy.getRole("UNKNOWN"));
+        assertEquals(3, policy.getRoles().size());
+    }
+
+    @Test
+    void decide() {
+        DemoUser manager = new DemoUser("manager", "USER");
+        assertEquals(Boolean.TRUE, policy.decide("USER", "group", "view", manager, DemoGroup::new));
+        assertEquals(Boolean.TRUE, policy.decide("USER", "group", "edit", manager, DemoGroup::new));
+        assertNull(policy.decide("USER", "group", "edit", new DemoUser("user", "USER"), DemoGroup::new));
+        assertNull(policy.decide("USER", "group", "delete", manager, DemoGroup::new));
+        assertEquals(Boolean.FALSE, policy.decide("USER", "instance", "view", manager, null));
+        assertEquals(Boolean.TRUE, policy.decide("ADMIN", "instance", "view", manager, null));
+        assertEquals(Boolean.FALSE, policy.decide("ADMIN", "instance", "join", manager, null));
+        assertEquals(Boolean.TRUE, policy.decide("SUPERADMIN", "anything", "whatever", manager, null));
+        assertNull(policy.decide("UNKNOWN", "instance", "view", manager, null));
+        assertNull(policy.decide("USER", null, "view", manager, null));
+    }
+
+    @Test
+    void decide_ConditionWithoutObject() {
+        DemoUser user = new DemoUser("user", "USER");
+        assertThrows(PermissionException.class, () -> policy.decide("USER", "group", "view", user, null));
+    }
+
+    @Test
+    void hasPermission_SameAsEvaluator() {
+        AclPermissionEvaluator evaluator = new AclPermissionEvaluator(new DemoPermissionsService(), null);
+        for (String role : List.of("USER", "ADMIN", "SUPERADMIN")) {
+            for (String username : List.of("user", "manager")) {
+                DemoUser user = new DemoUser(username, role);
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                for (String resource : List.of("group", "instance", "other")) {
+                    for (String action : List.of("view", "edit", "join", "delete")) {
+                        assertEquals(evaluator.hasPermission(authentication, 1L, resource, action),
+                                policy.hasPermission(user, resource, action, DemoGroup::new),
+                                role + " " + username + " " + resource + " " + action);
+                    }
+                }
+            }
+        }
+    }
+}
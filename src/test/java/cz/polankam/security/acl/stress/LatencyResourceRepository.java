@@ -0,0 +1,28 @@
+package cz.polankam.security.acl.stress;
+
+import cz.polankam.security.acl.IResourceRepository;
+import cz.polankam.security.acl.test_utils.DemoGroup;
+
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory resource repository which simulates latency of the backing store.
+ */
+public class LatencyResourceRepository implements IResourceRepository {
+
+    private final long latencyNanos;
+
+    public LatencyResourceRepository(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+
+    @Override
+    public Optional<Object> findById(Object id) {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+        return Optional.of(new DemoGroup());
+    }
+}
@@ -0,0 +1,92 @@
+package cz.polankam.security.acl.stress;
+
+import cz.polankam.security.acl.PermissionRule;
+import cz.polankam.security.acl.Role;
+import cz.polankam.security.acl.RoleBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Memory footprint of large multi-tenant role sets. Tenant roles built as
+ * small overlays of the shared base role with interned rules are compared
+ * with tenant roles which hold their own copies of all rules. By default only
+ * sharing of the rules is checked on a small role set, heap is measured only
+ * in the full run enabled by <code>jaclp.stress.full</code> property, which is
+ * set by the <code>stress</code> maven profile.
+ */
+class RoleFootprintTest {
+
+    private static final int BASE_RULES = 20;
+
+    @Test
+    void overlayRoles() {
+        boolean full = Boolean.getBoolean("jaclp.stress.full");
+        int roles = full ? 100_000 : 1_000;
+
+        Role base = new Role("tenant-base");
+        for (int i = 0; i < BASE_RULES; i++) {
+            base.addPermissionRules(true, "resource" + i, "view", "edit");
+        }
+
+        long before = full ? usedHeap() : 0;
+        List<Role> overlays = new ArrayList<>(roles);
+        for (int i = 0; i < roles; i++) {
+            overlays.add(RoleBuilder.create("tenant-" + i)
+                    .parent(base)
+                    .addDeniedRule("billing", "edit")
+                    .build());
+        }
+        long overlayBytes = full ? (usedHeap() - before) / roles : 0;
+
+        before = full ? usedHeap() : 0;
+        List<Role> copies = new ArrayList<>(roles);
+        for (int i = 0; i < roles; i++) {
+            Role role = new Role("tenant-" + i);
+            for (int j = 0; j < BASE_RULES; j++) {
+                role.addPermissionRules(new PermissionRule(true, "resource" + j,
+                        new ArrayList<>(Arrays.asList("view", "edit")), null));
+            }
+            role.addPermissionRules(new PermissionRule(false, "billing",
+                    new ArrayList<>(Arrays.asList("edit")), null));
+            copies.add(role);
+        }
+        long copyBytes = full ? (usedHeap() - before) / roles : 0;
+
+        // the same rule definitions share one instance
+        Role first = overlays.get(0);
+        Role last = overlays.get(roles - 1);
+        for (int i = 0; i < BASE_RULES + 1; i++) {
+            assertSame(first.getPermissionRules().get(i), last.getPermissionRules().get(i));
+        }
+        assertEquals(BASE_RULES + 1, last.getPermissionRules().size());
+        assertEquals(BASE_RULES + 1, copies.get(roles - 1).getPermissionRules().size());
+        assertNotSame(copies.get(0).getPermissionRules().get(0), copies.get(roles - 1).getPermissionRules().get(0));
+        if (!full) {
+            return;
+        }
+
+        System.out.println("Bytes per role, overlay: " + overlayBytes + ", copies: " + copyBytes);
+        assertTrue(overlayBytes * 5 < copyBytes,
+                "overlay roles take " + overlayBytes + " bytes, copies " + copyBytes + " bytes");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
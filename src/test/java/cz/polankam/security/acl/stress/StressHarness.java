@@ -0,0 +1,356 @@
+package cz.polankam.security.acl.stress;
+
+import cz.polankam.security.acl.AclPermissionEvaluator;
+import cz.polankam.security.acl.AuthorizatorService;
+import cz.polankam.security.acl.IResourceRepository;
+import cz.polankam.security.acl.test_utils.DemoPermissionsService;
+import cz.polankam.security.acl.test_utils.DemoUser;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded load harness which drives {@link AclPermissionEvaluator} and
+ * {@link AuthorizatorService} with a mix of ACL and ABAC checks from the
+ * increasing number of platform or virtual threads. For every thread count it
+ * reports throughput and its scaling against single thread, tail latencies and
+ * allocation rate per check. Shared state bottlenecks show up as flattening
+ * throughput and growing tail latencies.
+ * <p>
+ * Virtual threads are used only if the runtime supports them (Java 21+), the
+ * library itself targets Java 17, therefore they are created reflectively.
+ * <p>
+ * Configuration is taken from system properties, see {@link Config#fromSystemProperties()},
+ * full run is available through <code>mvn test -Pstress</code>.
+ */
+public final class StressHarness {
+
+    /**
+     * Kind of threads which drive the load.
+     */
+    public enum ThreadKind {
+        PLATFORM, VIRTUAL
+    }
+
+    private static final Authentication[] AUTHENTICATIONS = {
+            new TestingAuthenticationToken(new DemoUser("user", "USER"), null),
+            new TestingAuthenticationToken(new DemoUser("manager", "USER"), null),
+            new TestingAuthenticationToken(new DemoUser("manager", "ADMIN"), null),
+            new TestingAuthenticationToken(new DemoUser("superadmin", "SUPERADMIN"), null)
+    };
+
+    private final Config config;
+    private final AclPermissionEvaluator evaluator;
+    private final AuthorizatorService authorizator;
+
+    public StressHarness(Config config) {
+        this.config = config;
+        IResourceRepository repository = new LatencyResourceRepository(config.repositoryLatency.toNanos());
+        this.evaluator = new AclPermissionEvaluator(new DemoPermissionsService(repository), null);
+        this.authorizator = new AuthorizatorService(evaluator);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = Config.fromSystemProperties();
+        List<Result> results = new StressHarness(config).run();
+        System.out.println(Result.header());
+        results.forEach(System.out::println);
+    }
+
+
+    /**
+     * Run the load for all configured thread kinds and counts.
+     *
+     * @return one result for every thread kind and count
+     */
+    public List<Result> run() throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (ThreadKind kind : config.threadKinds) {
+            if (kind == ThreadKind.VIRTUAL && !virtualThreadsSupported()) {
+                continue;
+            }
+
+            double baseline = 0;
+            for (int threads : config.threadCounts) {
+                // warm up the code paths and possible caches with the same setup
+                runOnce(kind, threads, config.warmup);
+                Result result = runOnce(kind, threads, config.duration);
+                if (baseline == 0) {
+                    baseline = result.throughput / threads;
+                }
+                result.scaling = baseline == 0 ? 0 : result.throughput / baseline / threads;
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private Result runOnce(ThreadKind kind, int threads, Duration duration) throws Exception {
+        ExecutorService executor = createExecutor(kind, threads);
+        try {
+            CountDownLatch ready = new CountDownLatch(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Worker>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    Worker worker = new Worker();
+                    ready.countDown();
+                    start.await();
+                    worker.run(duration.toNanos());
+                    return worker;
+                }));
+            }
+
+            ready.await();
+            long begin = System.nanoTime();
+            start.countDown();
+
+            Histogram latencies = new Histogram();
+            long operations = 0;
+            long allocated = 0;
+            boolean allocationKnown = true;
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                operations += worker.operations;
+                latencies.add(worker.latencies);
+                if (worker.allocatedBytes < 0) {
+                    allocationKnown = false;
+                } else {
+                    allocated += worker.allocatedBytes;
+                }
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            Result result = new Result(kind, threads);
+            result.operations = operations;
+            result.throughput = operations * 1e9 / elapsed;
+            result.p50 = latencies.percentile(0.5);
+            result.p99 = latencies.percentile(0.99);
+            result.p999 = latencies.percentile(0.999);
+            result.max = latencies.max();
+            result.bytesPerOperation = allocationKnown && operations > 0 ? (double) allocated / operations : -1;
+            return result;
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ExecutorService createExecutor(ThreadKind kind, int threads) throws Exception {
+        if (kind == ThreadKind.VIRTUAL) {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    private static boolean virtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Load generated by a single thread.
+     */
+    private final class Worker {
+
+        private final Histogram latencies = new Histogram();
+        private long operations;
+        private long allocatedBytes;
+
+        private void run(long durationNanos) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long allocatedBefore = currentThreadAllocatedBytes();
+            long deadline = System.nanoTime() + durationNanos;
+            long now = System.nanoTime();
+            while (now < deadline) {
+                Authentication authentication = AUTHENTICATIONS[random.nextInt(AUTHENTICATIONS.length)];
+                long id = random.nextLong(config.resourceIds);
+                int mix = random.nextInt(100);
+
+                long begin = now;
+                if (mix < config.aclPercent) {
+                    evaluator.hasPermission(authentication, "instance", random.nextBoolean() ? "view" : "join");
+                } else if (random.nextBoolean()) {
+                    evaluator.hasPermission(authentication, id, "group", random.nextBoolean() ? "view" : "edit");
+                } else {
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    authorizator.isAllowed("group", id, "edit");
+                    SecurityContextHolder.clearContext();
+                }
+                now = System.nanoTime();
+
+                latencies.record(now - begin);
+                operations++;
+            }
+
+            long allocatedAfter = currentThreadAllocatedBytes();
+            allocatedBytes = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+        }
+    }
+
+    /**
+     * Allocation free log-linear histogram of latencies in nanoseconds with
+     * sixteen sub-buckets for every power of two.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long total;
+        private long max;
+
+        void record(long value) {
+            counts[index(Math.max(value, 0))]++;
+            total++;
+            max = Math.max(max, value);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        long percentile(double percentile) {
+            long threshold = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= threshold && seen > 0) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        long max() {
+            return max;
+        }
+
+        private static int index(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int subBucket = index % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+
+    /**
+     * Measured result for one thread kind and count.
+     */
+    public static final class Result {
+
+        public final ThreadKind kind;
+        public final int threads;
+        public long operations;
+        public double throughput;
+        public double scaling;
+        public long p50;
+        public long p99;
+        public long p999;
+        public long max;
+        public double bytesPerOperation;
+
+        private Result(ThreadKind kind, int threads) {
+            this.kind = kind;
+            this.threads = threads;
+        }
+
+        static String header() {
+            return String.format(Locale.ROOT, "%-8s %7s %14s %8s %10s %10s %10s %10s %10s",
+                    "kind", "threads", "ops/s", "scaling", "p50[us]", "p99[us]", "p99.9[us]", "max[us]", "B/op");
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-8s %7d %14.0f %8.2f %10.1f %10.1f %10.1f %10.1f %10s",
+                    kind, threads, throughput, scaling, p50 / 1e3, p99 / 1e3, p999 / 1e3, max / 1e3,
+                    bytesPerOperation < 0 ? "n/a" : String.format(Locale.ROOT, "%.0f", bytesPerOperation));
+        }
+    }
+
+    /**
+     * Configuration of the harness.
+     */
+    public static final class Config {
+
+        public List<ThreadKind> threadKinds = List.of(ThreadKind.PLATFORM, ThreadKind.VIRTUAL);
+        public int[] threadCounts = {1, 2, 4, 8};
+        public Duration warmup = Duration.ofSeconds(2);
+        public Duration duration = Duration.ofSeconds(5);
+        public Duration repositoryLatency = Duration.ZERO;
+        public int aclPercent = 50;
+        public long resourceIds = 10_000;
+
+        /**
+         * Create configuration from <code>jaclp.stress.*</code> system
+         * properties: <code>threads</code> (comma separated counts),
+         * <code>kinds</code>, <code>warmupMs</code>, <code>durationMs</code>,
+         * <code>latencyMicros</code>, <code>aclPercent</code> and
+         * <code>resourceIds</code>.
+         */
+        public static Config fromSystemProperties() {
+            Config config = new Config();
+            String threads = System.getProperty("jaclp.stress.threads");
+            if (threads != null) {
+                config.threadCounts = java.util.Arrays.stream(threads.split(","))
+                        .map(String::trim).mapToInt(Integer::parseInt).toArray();
+            }
+            String kinds = System.getProperty("jaclp.stress.kinds");
+            if (kinds != null) {
+                List<ThreadKind> parsed = new ArrayList<>();
+                for (String kind : kinds.split(",")) {
+                    parsed.add(ThreadKind.valueOf(kind.trim().toUpperCase(Locale.ROOT)));
+                }
+                config.threadKinds = parsed;
+            }
+            config.warmup = Duration.ofMillis(Long.getLong("jaclp.stress.warmupMs", config.warmup.toMillis()));
+            config.duration = Duration.ofMillis(Long.getLong("jaclp.stress.durationMs", config.duration.toMillis()));
+            config.repositoryLatency = Duration.ofNanos(1000 * Long.getLong("jaclp.stress.latencyMicros", 0));
+            config.aclPercent = Integer.getInteger("jaclp.stress.aclPercent", config.aclPercent);
+            config.resourceIds = Long.getLong("jaclp.stress.resourceIds", config.resourceIds);
+            return config;
+        }
+    }
+}
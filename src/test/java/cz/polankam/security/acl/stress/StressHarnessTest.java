@@ -0,0 +1,56 @@
+package cz.polankam.security.acl.stress;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Short smoke run of the stress harness, full run with the configuration from
+ * system properties is enabled by <code>jaclp.stress.full</code> property,
+ * which is set by the <code>stress</code> maven profile.
+ */
+class StressHarnessTest {
+
+    @Test
+    void run() throws Exception {
+        StressHarness.Config config;
+        if (Boolean.getBoolean("jaclp.stress.full")) {
+            config = StressHarness.Config.fromSystemProperties();
+        } else {
+            config = new StressHarness.Config();
+            config.threadCounts = new int[]{1, 2};
+            config.warmup = Duration.ofMillis(20);
+            config.duration = Duration.ofMillis(50);
+        }
+
+        List<StressHarness.Result> results = new StressHarness(config).run();
+        assertFalse(results.isEmpty());
+        for (StressHarness.Result result : results) {
+            assertTrue(result.operations > 0);
+            assertTrue(result.p50 <= result.p99);
+            assertTrue(result.p99 <= result.p999);
+            assertTrue(result.p999 <= result.max);
+        }
+
+        if (Boolean.getBoolean("jaclp.stress.full")) {
+            System.out.println(StressHarness.Result.header());
+            results.forEach(System.out::println);
+        }
+    }
+
+    @Test
+    void histogramPercentiles() {
+        StressHarness.Histogram histogram = new StressHarness.Histogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(1_000_000, histogram.max());
+        // log-linear buckets have relative error bounded by 1/16
+        assertEquals(500_000, histogram.percentile(0.5), 500_000 / 16.0);
+        assertEquals(990_000, histogram.percentile(0.99), 990_000 / 16.0);
+    }
+}
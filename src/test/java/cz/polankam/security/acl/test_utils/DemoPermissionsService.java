@@ -6,6 +6,7 @@ import cz.polankam.security.acl.Role;
 import cz.polankam.security.acl.conditions.ConditionsFactory;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,6 +23,13 @@ public class DemoPermissionsService implements IPermissionsService {
      * application and assign permission rules to them.
      */
     public DemoPermissionsService() {
+        this(new DemoGroupRepository());
+    }
+
+    /**
+     * Constructor which uses given repository for the group resource.
+     */
+    public DemoPermissionsService(IResourceRepository groupRepository) {
         Role user = new Role("USER");
         Role admin = new Role("ADMIN", user);
         Role superadmin = new Role("SUPERADMIN");
@@ -69,13 +77,17 @@ public class DemoPermissionsService implements IPermissionsService {
         roles.put(user.getName(), user);
         roles.put(admin.getName(), admin);
         roles.put(superadmin.getName(), superadmin);
-        resources.put("group", new DemoGroupRepository());
+        resources.put("group", groupRepository);
     }
 
     public boolean roleExists(String role) {
         return roles.containsKey(role);
     }
 
+    public Collection<Role> getRoles() {
+        return roles.values();
+    }
+
     public Role getRole(String roleString) {
         Role role = roles.get(roleString);
         if (role == null) {
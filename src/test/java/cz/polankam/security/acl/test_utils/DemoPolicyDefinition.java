@@ -0,0 +1,35 @@
+package cz.polankam.security.acl.test_utils;
+
+import cz.polankam.security.acl.policy.AclPolicy;
+import cz.polankam.security.acl.policy.AclRole;
+import cz.polankam.security.acl.policy.AclRule;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Demo policy compiled at build time, equivalent to the roles of
+ * {@link DemoPermissionsService}.
+ */
+@AclPolicy(name = "DemoPolicy")
+@AclRole(name = "USER", rules = {
+        @AclRule(resource = "group", actions = "view", condition = "isMember"),
+        @AclRule(resource = "group", actions = "edit", condition = "isManager"),
+        @AclRule(allowed = false, resource = "instance", actions = {"view", "edit"}),
+        @AclRule(resource = "instance", actions = "join")
+})
+@AclRole(name = "ADMIN", parent = "USER", rules = {
+        @AclRule(resource = "instance", actions = {"view", "edit"}),
+        @AclRule(allowed = false, resource = "instance", actions = "join")
+})
+@AclRole(name = "SUPERADMIN", rules = {
+        @AclRule(resource = "*", actions = "*")
+})
+public class DemoPolicyDefinition {
+
+    static boolean isMember(UserDetails user, DemoGroup group) {
+        return DemoGroupConditions.isMember(user, group);
+    }
+
+    static boolean isManager(UserDetails user, DemoGroup group) {
+        return DemoGroupConditions.isManager(user, group);
+    }
+}